@@ -0,0 +1,262 @@
+package client;
+
+import rmi.OpResult;
+import rmi.ResultCode;
+import rmi.Student;
+import rmi.StudentBatch;
+import rmi.StudentDBInterface;
+import rmi.StudentDBInterfaceV2;
+import rmi.StudentPage;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AsyncStudentDB wraps the RMI stub so the GUI never blocks on a remote call.
+ * Calls run on virtual threads, at most maxInFlight at a time, and each returns a
+ * CompletableFuture that fails with a TimeoutException if the server is too slow.
+ * Concurrent selects for the same id share one remote call, and read calls can be
+ * cancelled when the user moves to another screen.
+ *
+ * Against a v2 server, select results are kept in a {@link NearCache} that the servers
+ * keep up to date by pushing invalidations; set rpc.nearCache.maxSize=0 to turn it off.
+ */
+public class AsyncStudentDB {
+
+    /**
+     * A blocking call against the remote interface.
+     */
+    @FunctionalInterface
+    public interface RemoteCall<T> {
+        T call(StudentDBInterface db) throws Exception;
+    }
+
+    private final StudentDBInterface db;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits;
+    private final long timeoutMillis;
+
+    // Calls that have not finished yet; the flag marks reads, which cancelReads() may cancel
+    private final Map<CompletableFuture<?>, Boolean> inFlight = new ConcurrentHashMap<>();
+    // Shared results of in-flight deduplicated calls, keyed by operation and argument
+    private final Map<String, CompletableFuture<?>> shared = new ConcurrentHashMap<>();
+    private final NearCache nearCache; // null when disabled
+
+    public AsyncStudentDB(StudentDBInterface db) {
+        this(db, Integer.getInteger("rpc.maxInFlight", 8), Long.getLong("rpc.timeoutMillis", 30_000L));
+    }
+
+    public AsyncStudentDB(StudentDBInterface db, int maxInFlight, long timeoutMillis) {
+        this.db = db;
+        this.permits = new Semaphore(Math.max(1, maxInFlight));
+        this.timeoutMillis = timeoutMillis;
+        boolean cached = Integer.getInteger("rpc.nearCache.maxSize", 10_000) > 0;
+        this.nearCache = (cached && db instanceof StudentDBInterfaceV2 v2) ? new NearCache(v2) : null;
+    }
+
+    public CompletableFuture<String> registerUser(String username, String password) {
+        return submit(d -> d.registerUser(username, password), false);
+    }
+
+    /**
+     * Typed login. Falls back to the string API when the server has no v2 interface.
+     */
+    public CompletableFuture<OpResult> login(String username, String password) {
+        return submit(d -> {
+            if (d instanceof StudentDBInterfaceV2 v2) {
+                return v2.login(username, password);
+            }
+            String response = d.loginUser(username, password);
+            return response.toLowerCase().contains("successful")
+                    ? OpResult.ok(1)
+                    : OpResult.of(ResultCode.FAILED, response);
+        }, false);
+    }
+
+    public CompletableFuture<String> insert(String id, String name, String course) {
+        return write(id, d -> d.insert(id, name, course));
+    }
+
+    /**
+     * Looks up a student. Clicking search again while a lookup for the same id is
+     * still running returns the result of that lookup instead of a second call.
+     * Students in the near cache are returned without a call.
+     */
+    public CompletableFuture<String> select(String id) {
+        if (nearCache == null) {
+            return dedupe("select:" + id, d -> d.select(id));
+        }
+        return dedupe("select:" + id, d -> nearCache.get(id, () -> d.select(id), AsyncStudentDB::isSelectResult));
+    }
+
+    public CompletableFuture<String> update(String id, String newName, String newCourse) {
+        return write(id, d -> d.update(id, newName, newCourse));
+    }
+
+    public CompletableFuture<String> delete(String id) {
+        return write(id, d -> d.delete(id));
+    }
+
+    // The server pushes the change too, but this client should not wait for it to see its own write
+    private CompletableFuture<String> write(String id, RemoteCall<String> call) {
+        CompletableFuture<String> future = submit(call, false);
+        if (nearCache != null) {
+            future.whenComplete((result, error) -> nearCache.invalidate(id));
+        }
+        return future;
+    }
+
+    // A student or "not found"; error messages are not worth keeping
+    private static boolean isSelectResult(String response) {
+        return response != null && (response.startsWith("ID: ") || response.startsWith("No student found with ID "));
+    }
+
+    /**
+     * Near cache counters (hit ratio, invalidations, push lag), or a note that it is off.
+     */
+    public String getNearCacheStats() {
+        return (nearCache == null) ? "Near cache disabled" : nearCache.getStats();
+    }
+
+    /**
+     * Students taking course, a page at a time; see StudentDBInterfaceV2 for paging.
+     */
+    public CompletableFuture<StudentBatch> findByCourse(String course, String afterId, int limit) {
+        return submit(d -> v2(d).findStudentsByCourse(course, afterId, limit), true);
+    }
+
+    public CompletableFuture<StudentBatch> findByNamePrefix(String prefix, String afterId, int limit) {
+        return submit(d -> v2(d).findStudentsByNamePrefix(prefix, afterId, limit), true);
+    }
+
+    public CompletableFuture<StudentBatch> findByName(String text, String afterId, int limit) {
+        return submit(d -> v2(d).findStudentsByName(text, afterId, limit), true);
+    }
+
+    /**
+     * A page of all students in the given order; see StudentDBInterfaceV2 for paging.
+     */
+    public CompletableFuture<StudentBatch> listStudents(String orderBy, boolean descending, Student after,
+                                                        int offset, int limit) {
+        return submit(d -> v2(d).listStudents(orderBy, descending, after, offset, limit), true);
+    }
+
+    public CompletableFuture<Long> countStudents() {
+        return submit(d -> v2(d).countStudents(), true);
+    }
+
+    // Calls with no string-API equivalent need a server that offers the v2 interface
+    private static StudentDBInterfaceV2 v2(StudentDBInterface d) {
+        if (d instanceof StudentDBInterfaceV2 v2) return v2;
+        throw new UnsupportedOperationException("The server does not support this operation.");
+    }
+
+    public CompletableFuture<Long> openStudentCursor(int fetchSize) {
+        return submit(d -> d.openStudentCursor(fetchSize), true);
+    }
+
+    public CompletableFuture<StudentPage> fetchStudents(long cursorId) {
+        return submit(d -> d.fetchStudents(cursorId), true);
+    }
+
+    public CompletableFuture<Void> closeStudentCursor(long cursorId) {
+        return submit(d -> {
+            d.closeStudentCursor(cursorId);
+            return null;
+        }, false);
+    }
+
+    /**
+     * Cancels all pending read calls, e.g. when the user switches tabs.
+     */
+    public void cancelReads() {
+        inFlight.forEach((future, read) -> {
+            if (read) future.cancel(true);
+        });
+    }
+
+    /**
+     * True if an async call was cancelled, e.g. because the user moved to another tab.
+     */
+    public static boolean isCancelled(Throwable ex) {
+        return ex instanceof CancellationException
+                || (ex instanceof CompletionException && ex.getCause() instanceof CancellationException);
+    }
+
+    /**
+     * Cancels every pending call, e.g. on logout. Writes already sent may still be applied by the server.
+     */
+    public void cancelAll() {
+        inFlight.keySet().forEach(future -> future.cancel(true));
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    public void shutdown() {
+        cancelAll();
+        executor.shutdownNow();
+        if (nearCache != null) {
+            System.out.println(nearCache.getStats());
+            nearCache.close();
+        }
+        LoadBalancedStudentDB balancer = LoadBalancedStudentDB.of(db);
+        if (balancer != null) balancer.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> dedupe(String key, RemoteCall<T> call) {
+        CompletableFuture<T> gate = new CompletableFuture<>();
+        CompletableFuture<T> existing = (CompletableFuture<T>) shared.putIfAbsent(key, gate);
+        if (existing != null) {
+            // Callers get a copy so one of them cancelling does not cancel the others
+            return existing.copy();
+        }
+        submit(call, true).whenComplete((result, error) -> {
+            shared.remove(key, gate);
+            if (error != null) {
+                gate.completeExceptionally(error);
+            } else {
+                gate.complete(result);
+            }
+        });
+        inFlight.put(gate, true);
+        gate.whenComplete((result, error) -> inFlight.remove(gate));
+        return gate.copy();
+    }
+
+    private <T> CompletableFuture<T> submit(RemoteCall<T> call, boolean read) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                future.cancel(false);
+                return;
+            }
+            try {
+                future.complete(call.call(db));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                permits.release();
+            }
+        });
+        inFlight.put(future, read);
+        future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        future.whenComplete((result, error) -> {
+            inFlight.remove(future);
+            task.cancel(true); // no-op if the call already finished
+        });
+        return future;
+    }
+}
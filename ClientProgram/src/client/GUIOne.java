@@ -1,9 +1,21 @@
 package client;
 
 import client.utils.PDFGenerator;
+import client.utils.RemoteStudentPages;
+import client.utils.ServerReports;
+import client.utils.StudentPages;
+import rmi.OpResult;
+import rmi.ReportInfo;
+import rmi.Student;
+import rmi.StudentBatch;
 import rmi.StudentDBInterface;
+import rmi.StudentDBInterfaceV2;
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -18,8 +30,13 @@ import javafx.scene.text.FontWeight;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import java.io.File;
-import java.rmi.Naming;
-import java.rmi.RemoteException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import javafx.event.ActionEvent;
 
 /**
@@ -29,15 +46,28 @@ import javafx.event.ActionEvent;
  */
 public class GUIOne extends Application {
 
+    private static final int REPORT_FETCH_SIZE = 500; // Students per page when loading the report
+    private static final int REPORT_CACHED_PAGES = 20; // Report pages kept while scrolling
+    private static final double REPORT_ROW_HEIGHT = 24;
+    private static final int SEARCH_PAGE_SIZE = 50;   // Students per page of search results
+    private static final int PDF_PARALLELISM = 4;     // Report sections rendered at once
+
+    private static final String SEARCH_BY_ID = "Student ID";
+    private static final String SEARCH_BY_COURSE = "Course";
+    private static final String SEARCH_BY_NAME_PREFIX = "Name starts with";
+    private static final String SEARCH_BY_NAME = "Name contains";
+
     private StudentDBInterface studentDB; // RMI Remote Interface
+    private AsyncStudentDB rpc;           // Non-blocking wrapper used by all button handlers
     private TabPane tabPane;
     private Tab crudTab;  // Dashboard tab containing CRUD functionalities
 
     @Override
     public void start(Stage primaryStage) {
-        // Connect to the RMI server
+        // Connect to the RMI servers listed in rpc.servers (default: the local one)
         try {
-            studentDB = (StudentDBInterface) Naming.lookup("rmi://localhost:1099/StudentDBService");
+            studentDB = LoadBalancedStudentDB.connect();
+            rpc = new AsyncStudentDB(studentDB);
         } catch (Exception e) {
             showErrorDialog("Connection Error", "Failed to connect to RMI server.\nMake sure the server is running.");
             return;
@@ -120,6 +150,8 @@ public class GUIOne extends Application {
         Tab deleteTab = createTab("Delete", createDeletePane());
         Tab reportTab = createReportTab();
         crudPane.getTabs().addAll(insertTab, searchTab, updateTab, deleteTab, reportTab);
+        // Results of searches and report loads are no longer wanted once the user leaves the tab
+        crudPane.getSelectionModel().selectedItemProperty().addListener((obs, oldTab, newTab) -> rpc.cancelReads());
 
         VBox dashboard = new VBox(10);
         dashboard.setAlignment(Pos.CENTER);
@@ -137,6 +169,7 @@ public class GUIOne extends Application {
      * Logs out the current user by resetting the UI to show only Register and Login tabs.
      */
     private void logout() {
+        rpc.cancelAll();
         Platform.runLater(() -> {
             tabPane.getTabs().clear();
             Tab registerTab = createTab("Register", createRegisterPane());
@@ -180,22 +213,17 @@ public class GUIOne extends Application {
                 resultLabel.setTextFill(Color.RED);
             } else {
                 loader.setVisible(true);
-                new Thread(() -> {
-                    try {
-                        String response = studentDB.registerUser(username, password);
-                        Platform.runLater(() -> {
-                            loader.setVisible(false);
-                            resultLabel.setText(response);
-                            resultLabel.setTextFill(Color.DARKBLUE);
-                        });
-                    } catch (RemoteException ex) {
-                        Platform.runLater(() -> {
-                            loader.setVisible(false);
-                            resultLabel.setText("Error registering user.");
-                            resultLabel.setTextFill(Color.RED);
-                        });
+                rpc.registerUser(username, password).whenComplete((response, ex) -> Platform.runLater(() -> {
+                    loader.setVisible(false);
+                    if (AsyncStudentDB.isCancelled(ex)) return;
+                    if (ex == null) {
+                        resultLabel.setText(response);
+                        resultLabel.setTextFill(Color.DARKBLUE);
+                    } else {
+                        resultLabel.setText("Error registering user.");
+                        resultLabel.setTextFill(Color.RED);
                     }
-                }).start();
+                }));
             }
         });
 
@@ -232,25 +260,20 @@ public class GUIOne extends Application {
                 resultLabel.setTextFill(Color.RED);
             } else {
                 loader.setVisible(true);
-                new Thread(() -> {
-                    try {
-                        String response = studentDB.loginUser(username, password);
-                        Platform.runLater(() -> {
-                            loader.setVisible(false);
-                            resultLabel.setText(response);
-                            resultLabel.setTextFill(response.toLowerCase().contains("successful") ? Color.DARKBLUE : Color.RED);
-                            if (response.toLowerCase().contains("successful")) {
-                                unlockCRUDTabs();
-                            }
-                        });
-                    } catch (RemoteException ex) {
-                        Platform.runLater(() -> {
-                            loader.setVisible(false);
-                            resultLabel.setText("Error during login.");
-                            resultLabel.setTextFill(Color.RED);
-                        });
+                rpc.login(username, password).whenComplete((result, ex) -> Platform.runLater(() -> {
+                    loader.setVisible(false);
+                    if (AsyncStudentDB.isCancelled(ex)) return;
+                    if (ex == null) {
+                        resultLabel.setText(loginMessage(result));
+                        resultLabel.setTextFill(result.isOk() ? Color.DARKBLUE : Color.RED);
+                        if (result.isOk()) {
+                            unlockCRUDTabs();
+                        }
+                    } else {
+                        resultLabel.setText("Error during login.");
+                        resultLabel.setTextFill(Color.RED);
                     }
-                }).start();
+                }));
             }
         });
 
@@ -288,20 +311,16 @@ public class GUIOne extends Application {
                 resultLabel.setText("Please fill in all fields.");
                 resultLabel.setTextFill(Color.RED);
             } else {
-                new Thread(() -> {
-                    try {
-                        String response = studentDB.insert(id, name, course);
-                        Platform.runLater(() -> {
-                            resultLabel.setText(response);
-                            resultLabel.setTextFill(Color.DARKBLUE);
-                        });
-                    } catch (RemoteException ex) {
-                        Platform.runLater(() -> {
-                            resultLabel.setText("Error inserting student.");
-                            resultLabel.setTextFill(Color.RED);
-                        });
+                rpc.insert(id, name, course).whenComplete((response, ex) -> Platform.runLater(() -> {
+                    if (AsyncStudentDB.isCancelled(ex)) return;
+                    if (ex == null) {
+                        resultLabel.setText(response);
+                        resultLabel.setTextFill(Color.DARKBLUE);
+                    } else {
+                        resultLabel.setText("Error inserting student.");
+                        resultLabel.setTextFill(Color.RED);
                     }
-                }).start();
+                }));
             }
         });
 
@@ -318,40 +337,92 @@ public class GUIOne extends Application {
         title.setFont(Font.font("Segoe UI", FontWeight.BOLD, 20));
         title.setTextFill(Color.DARKGREEN);
 
+        ChoiceBox<String> modeBox = new ChoiceBox<>();
+        modeBox.getItems().addAll(SEARCH_BY_ID, SEARCH_BY_COURSE, SEARCH_BY_NAME_PREFIX, SEARCH_BY_NAME);
+        modeBox.setValue(SEARCH_BY_ID);
+
         TextField idField = new TextField();
         idField.setPromptText("Student ID");
+        modeBox.setOnAction(e -> idField.setPromptText(
+                SEARCH_BY_ID.equals(modeBox.getValue()) ? "Student ID" : modeBox.getValue()));
 
         Button searchBtn = new Button("Search");
         searchBtn.setStyle("-fx-background-color: darkblue; -fx-text-fill: white;");
+        Button moreBtn = new Button("More results");
+        moreBtn.setVisible(false);
         Label resultLabel = new Label();
 
+        // Search results; each page is appended and More fetches the page after the last id shown
+        TextArea resultsArea = new TextArea();
+        resultsArea.setEditable(false);
+        resultsArea.setPrefRowCount(10);
+        resultsArea.setVisible(false);
+        String[] lastId = new String[1];
+
         searchBtn.setOnAction(e -> {
-            String id = idField.getText().trim();
-            if (id.isEmpty()) {
-                resultLabel.setText("Please enter a student ID.");
+            String text = idField.getText().trim();
+            String mode = modeBox.getValue();
+            moreBtn.setVisible(false);
+            if (text.isEmpty()) {
+                resultLabel.setText(SEARCH_BY_ID.equals(mode) ? "Please enter a student ID." : "Please enter search text.");
                 resultLabel.setTextFill(Color.RED);
-            } else {
-                new Thread(() -> {
-                    try {
-                        String response = studentDB.select(id);
-                        Platform.runLater(() -> {
-                            resultLabel.setText(response);
-                            resultLabel.setTextFill(Color.DARKBLUE);
-                        });
-                    } catch (RemoteException ex) {
-                        Platform.runLater(() -> {
-                            resultLabel.setText("Student not found.");
-                            resultLabel.setTextFill(Color.RED);
-                        });
+            } else if (SEARCH_BY_ID.equals(mode)) {
+                resultsArea.setVisible(false);
+                rpc.select(text).whenComplete((response, ex) -> Platform.runLater(() -> {
+                    if (AsyncStudentDB.isCancelled(ex)) return;
+                    if (ex == null) {
+                        resultLabel.setText(response);
+                        resultLabel.setTextFill(Color.DARKBLUE);
+                    } else {
+                        resultLabel.setText("Student not found.");
+                        resultLabel.setTextFill(Color.RED);
                     }
-                }).start();
+                }));
+            } else {
+                resultsArea.clear();
+                resultsArea.setVisible(true);
+                lastId[0] = null;
+                searchPage(mode, text, resultsArea, resultLabel, moreBtn, lastId);
             }
         });
 
-        searchBox.getChildren().addAll(title, idField, searchBtn, resultLabel);
+        moreBtn.setOnAction(e -> searchPage(modeBox.getValue(), idField.getText().trim(),
+                resultsArea, resultLabel, moreBtn, lastId));
+
+        searchBox.getChildren().addAll(title, modeBox, idField, searchBtn, resultLabel, resultsArea, moreBtn);
         return searchBox;
     }
 
+    /**
+     * Fetches the page of search results after lastId[0] and appends it to the results area.
+     */
+    private void searchPage(String mode, String text, TextArea resultsArea, Label resultLabel,
+                            Button moreBtn, String[] lastId) {
+        CompletableFuture<StudentBatch> page = switch (mode) {
+            case SEARCH_BY_COURSE -> rpc.findByCourse(text, lastId[0], SEARCH_PAGE_SIZE);
+            case SEARCH_BY_NAME_PREFIX -> rpc.findByNamePrefix(text, lastId[0], SEARCH_PAGE_SIZE);
+            default -> rpc.findByName(text, lastId[0], SEARCH_PAGE_SIZE);
+        };
+        moreBtn.setDisable(true);
+        page.whenComplete((batch, ex) -> Platform.runLater(() -> {
+            moreBtn.setDisable(false);
+            if (AsyncStudentDB.isCancelled(ex)) return;
+            if (ex != null) {
+                resultLabel.setText("Search failed.");
+                resultLabel.setTextFill(Color.RED);
+                return;
+            }
+            for (Student s : batch.students()) {
+                resultsArea.appendText("ID: " + s.id() + ", Name: " + s.name() + ", Course: " + s.course() + "\n");
+                lastId[0] = s.id();
+            }
+            int shown = resultsArea.getParagraphs().size() - 1;
+            resultLabel.setText(shown == 0 ? "No matching students." : shown + (batch.hasMore() ? "+" : "") + " students found.");
+            resultLabel.setTextFill(shown == 0 ? Color.RED : Color.DARKBLUE);
+            moreBtn.setVisible(batch.hasMore());
+        }));
+    }
+
     private Pane createUpdatePane() {
         VBox updateBox = new VBox(10);
         updateBox.setAlignment(Pos.CENTER);
@@ -375,20 +446,16 @@ public class GUIOne extends Application {
         Label resultLabel = new Label();
 
         updateBtn.setOnAction(e -> {
-            new Thread(() -> {
-                try {
-                    String response = studentDB.update(idField.getText(), nameField.getText(), courseField.getText());
-                    Platform.runLater(() -> {
-                        resultLabel.setText(response);
-                        resultLabel.setTextFill(Color.DARKBLUE);
-                    });
-                } catch (RemoteException ex) {
-                    Platform.runLater(() -> {
-                        resultLabel.setText("Error updating student.");
-                        resultLabel.setTextFill(Color.RED);
-                    });
+            rpc.update(idField.getText(), nameField.getText(), courseField.getText()).whenComplete((response, ex) -> Platform.runLater(() -> {
+                if (AsyncStudentDB.isCancelled(ex)) return;
+                if (ex == null) {
+                    resultLabel.setText(response);
+                    resultLabel.setTextFill(Color.DARKBLUE);
+                } else {
+                    resultLabel.setText("Error updating student.");
+                    resultLabel.setTextFill(Color.RED);
                 }
-            }).start();
+            }));
         });
 
         updateBox.getChildren().addAll(title, idField, nameField, courseField, updateBtn, resultLabel);
@@ -412,20 +479,16 @@ public class GUIOne extends Application {
         Label resultLabel = new Label();
 
         deleteBtn.setOnAction(e -> {
-            new Thread(() -> {
-                try {
-                    String response = studentDB.delete(idField.getText());
-                    Platform.runLater(() -> {
-                        resultLabel.setText(response);
-                        resultLabel.setTextFill(Color.DARKBLUE);
-                    });
-                } catch (RemoteException ex) {
-                    Platform.runLater(() -> {
-                        resultLabel.setText("Error deleting student.");
-                        resultLabel.setTextFill(Color.RED);
-                    });
+            rpc.delete(idField.getText()).whenComplete((response, ex) -> Platform.runLater(() -> {
+                if (AsyncStudentDB.isCancelled(ex)) return;
+                if (ex == null) {
+                    resultLabel.setText(response);
+                    resultLabel.setTextFill(Color.DARKBLUE);
+                } else {
+                    resultLabel.setText("Error deleting student.");
+                    resultLabel.setTextFill(Color.RED);
                 }
-            }).start();
+            }));
         });
 
         deleteBox.getChildren().addAll(title, idField, deleteBtn, resultLabel);
@@ -446,32 +509,61 @@ public class GUIOne extends Application {
         Button generateBtn = new Button("Generate Report");
         generateBtn.setStyle("-fx-background-color: purple; -fx-text-fill: white;");
 
-        TextArea reportArea = new TextArea();
-        reportArea.setEditable(false);
-        reportArea.setWrapText(true);
-        reportArea.setPrefHeight(300);
+        // Only the rows on screen are rendered, and only the pages around them are held
+        TableView<Student> reportTable = new TableView<>();
+        reportTable.getColumns().add(reportColumn("ID", "id", Student::id));
+        reportTable.getColumns().add(reportColumn("Name", "name", Student::name));
+        reportTable.getColumns().add(reportColumn("Course", "course", Student::course));
+        reportTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY_FLEX_LAST_COLUMN);
+        reportTable.setFixedCellSize(REPORT_ROW_HEIGHT);
+        reportTable.setPrefHeight(300);
+        reportTable.setPlaceholder(new Label("No students loaded."));
+        Label countLabel = new Label();
 
         Button exportPDFBtn = new Button("Export to PDF");
         exportPDFBtn.setDisable(true); // Enable only after data is loaded
         exportPDFBtn.setStyle("-fx-background-color: darkblue; -fx-text-fill: white;");
+        CheckBox byCourseBox = new CheckBox("One section per course");
+
+        PagedStudentList reportRows = new PagedStudentList(rpc, REPORT_FETCH_SIZE, REPORT_CACHED_PAGES);
+        reportRows.setOnError(ex -> reportFailed(ex, generateBtn));
+        reportRows.addListener((ListChangeListener<Student>) c -> {
+            countLabel.setText(reportRows.size() + " students");
+            generateBtn.setDisable(false);
+            exportPDFBtn.setDisable(false);
+        });
+        // Clicking a column header asks the server for that order instead of sorting loaded rows
+        reportTable.setSortPolicy(table -> {
+            if (table.getItems() != reportRows) return TableView.DEFAULT_SORT_POLICY.call(table);
+            TableColumn<Student, ?> column = table.getSortOrder().isEmpty() ? null : table.getSortOrder().get(0);
+            reportRows.sortBy(column == null ? "id" : column.getId(),
+                    column != null && column.getSortType() == TableColumn.SortType.DESCENDING);
+            return true;
+        });
+        // Page loads cancelled by leaving the tab are requested again when its rows are shown
+        reportTab.setOnSelectionChanged(e -> {
+            if (reportTab.isSelected()) reportTable.refresh();
+        });
 
         generateBtn.setOnAction(e -> {
             generateBtn.setDisable(true);
-            new Thread(() -> {
-                try {
-                    String reportData = studentDB.getAllStudents(); // Remote RMI call
-                    Platform.runLater(() -> {
-                        reportArea.setText(reportData);
-                        exportPDFBtn.setDisable(false);
-                        generateBtn.setDisable(false);
-                    });
-                } catch (RemoteException ex) {
-                    Platform.runLater(() -> {
-                        showErrorDialog("Error", "Failed to retrieve student records.");
-                        generateBtn.setDisable(false);
-                    });
+            exportPDFBtn.setDisable(true);
+            if (studentDB instanceof StudentDBInterfaceV2) {
+                reportTable.setItems(reportRows);
+                reportRows.reload();
+                return;
+            }
+            // Servers without paged listing: page through a cursor, keeping every row
+            ObservableList<Student> rows = FXCollections.observableArrayList();
+            reportTable.setItems(rows);
+            countLabel.setText("");
+            rpc.openStudentCursor(REPORT_FETCH_SIZE).whenComplete((cursorId, ex) -> {
+                if (ex == null) {
+                    loadReportPages(cursorId, rows, countLabel, generateBtn, exportPDFBtn);
+                } else {
+                    Platform.runLater(() -> reportFailed(ex, generateBtn));
                 }
-            }).start();
+            });
         });
 
         exportPDFBtn.setOnAction(e -> {
@@ -480,20 +572,159 @@ public class GUIOne extends Application {
             fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("PDF Files", "*.pdf"));
             File file = fileChooser.showSaveDialog(null);
             if (file != null) {
-                try {
-                    PDFGenerator.generateReport(reportArea.getText(), file.getAbsolutePath());
-                    showInfoDialog("Success", "PDF report saved to: " + file.getAbsolutePath());
-                } catch (Exception ex) {
-                    showErrorDialog("PDF Error", "Failed to generate PDF: " + ex.getMessage());
+                if (byCourseBox.isSelected()) {
+                    exportReport(file, true, exportPDFBtn);
+                } else {
+                    downloadReport(file, "pdf", exportPDFBtn);
                 }
             }
         });
 
-        reportBox.getChildren().addAll(title, generateBtn, reportArea, exportPDFBtn);
+        // Rendered by the server from its own data, so it needs no report loaded here
+        Button exportCSVBtn = new Button("Export to CSV");
+        exportCSVBtn.setStyle("-fx-background-color: darkslategray; -fx-text-fill: white;");
+        exportCSVBtn.setOnAction(e -> {
+            FileChooser fileChooser = new FileChooser();
+            fileChooser.setTitle("Save CSV Report");
+            fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV Files", "*.csv"));
+            File file = fileChooser.showSaveDialog(null);
+            if (file != null) {
+                downloadReport(file, "csv", exportCSVBtn);
+            }
+        });
+
+        HBox exportBox = new HBox(10, exportPDFBtn, byCourseBox, exportCSVBtn);
+        exportBox.setAlignment(Pos.CENTER);
+        reportBox.getChildren().addAll(title, generateBtn, reportTable, countLabel, exportBox);
         reportTab.setContent(reportBox);
         return reportTab;
     }
 
+    // A report column; its id is the order the server is asked for when sorting by it
+    private static TableColumn<Student, String> reportColumn(String title, String orderBy,
+                                                             Function<Student, String> value) {
+        TableColumn<Student, String> column = new TableColumn<>(title);
+        column.setId(orderBy);
+        // Rows whose page has not arrived yet are null
+        column.setCellValueFactory(cell -> new ReadOnlyStringWrapper(
+                cell.getValue() == null ? "..." : value.apply(cell.getValue())));
+        return column;
+    }
+
+    /**
+     * Downloads the all-students report rendered by the server in the background. Servers
+     * render it once per change to the data, however many clients ask.
+     */
+    private void downloadReport(File file, String format, Button exportBtn) {
+        if (!(studentDB instanceof StudentDBInterfaceV2 v2)) {
+            exportReport(file, false, exportBtn);
+            return;
+        }
+        Task<ReportInfo> download = new Task<>() {
+            @Override
+            protected ReportInfo call() throws Exception {
+                return ServerReports.download(v2, "students", format, file.toPath());
+            }
+        };
+        download.setOnSucceeded(ev -> {
+            exportBtn.setDisable(false);
+            showInfoDialog("Success", "Report saved to: " + file.getAbsolutePath());
+        });
+        download.setOnFailed(ev -> {
+            exportBtn.setDisable(false);
+            showErrorDialog("Report Error", "Failed to get the report: " + download.getException().getMessage());
+        });
+        exportBtn.setDisable(true);
+        Thread.ofVirtual().name("report-download").start(download);
+    }
+
+    /**
+     * Streams the students from the server into a PDF in the background, in one section
+     * or one section per course rendered in parallel.
+     */
+    private void exportReport(File file, boolean byCourse, Button exportPDFBtn) {
+        String path = file.getAbsolutePath();
+        Task<Long> export = new Task<>() {
+            @Override
+            protected Long call() throws Exception {
+                List<PDFGenerator.Section> sections = new ArrayList<>();
+                if (byCourse && studentDB instanceof StudentDBInterfaceV2 v2) {
+                    for (String course : reportCourses()) {
+                        sections.add(new PDFGenerator.Section(course, RemoteStudentPages.byCourse(v2, course, REPORT_FETCH_SIZE)));
+                    }
+                } else {
+                    sections.add(new PDFGenerator.Section("Student Report", RemoteStudentPages.allStudents(studentDB, REPORT_FETCH_SIZE)));
+                }
+                return PDFGenerator.generateReport(sections, path, PDF_PARALLELISM);
+            }
+        };
+        export.setOnSucceeded(ev -> {
+            exportPDFBtn.setDisable(false);
+            showInfoDialog("Success", export.getValue() + " students saved to: " + path);
+        });
+        export.setOnFailed(ev -> {
+            exportPDFBtn.setDisable(false);
+            showErrorDialog("PDF Error", "Failed to generate PDF: " + export.getException().getMessage());
+        });
+        exportPDFBtn.setDisable(true);
+        Thread.ofVirtual().name("pdf-export").start(export);
+    }
+
+    // The courses taken by any student, read through a cursor since the table holds only some rows
+    private Set<String> reportCourses() throws IOException {
+        Set<String> courses = new TreeSet<>();
+        StudentPages all = RemoteStudentPages.allStudents(studentDB, REPORT_FETCH_SIZE);
+        for (List<Student> page = all.next(); !page.isEmpty(); page = all.next()) {
+            for (Student s : page) {
+                if (s.course() != null) courses.add(s.course());
+            }
+        }
+        return courses;
+    }
+
+    /**
+     * Appends the next page of the report, then requests the following one until the cursor is exhausted.
+     */
+    private void loadReportPages(long cursorId, ObservableList<Student> rows, Label countLabel,
+                                 Button generateBtn, Button exportPDFBtn) {
+        rpc.fetchStudents(cursorId).whenComplete((page, ex) -> {
+            if (ex != null) {
+                rpc.closeStudentCursor(cursorId); // The server also closes abandoned cursors after its idle timeout
+                Platform.runLater(() -> reportFailed(ex, generateBtn));
+                return;
+            }
+            Platform.runLater(() -> {
+                rows.addAll(page.students());
+                countLabel.setText(rows.size() + " students");
+                if (!page.hasMore()) {
+                    exportPDFBtn.setDisable(false);
+                    generateBtn.setDisable(false);
+                }
+            });
+            if (page.hasMore()) {
+                loadReportPages(cursorId, rows, countLabel, generateBtn, exportPDFBtn);
+            }
+        });
+    }
+
+    private void reportFailed(Throwable ex, Button generateBtn) {
+        generateBtn.setDisable(false);
+        if (!AsyncStudentDB.isCancelled(ex)) {
+            showErrorDialog("Error", "Failed to retrieve student records.");
+        }
+    }
+
+    // Text shown for the outcome of a login
+    private static String loginMessage(OpResult result) {
+        return switch (result.code()) {
+            case OK -> "Login successful.";
+            case NOT_FOUND -> "User not found.";
+            case INVALID_CREDENTIALS -> "Incorrect password. Attempt " + result.count();
+            case LOCKED -> "Account locked after " + result.count() + " failed attempts. Try again later.";
+            default -> result.detail() != null ? result.detail() : "Login failed.";
+        };
+    }
+
     private void showErrorDialog(String title, String message) {
         Alert alert = new Alert(Alert.AlertType.ERROR);
         alert.setTitle(title);
@@ -510,6 +741,13 @@ public class GUIOne extends Application {
         alert.showAndWait();
     }
 
+    @Override
+    public void stop() {
+        if (rpc != null) {
+            rpc.shutdown();
+        }
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
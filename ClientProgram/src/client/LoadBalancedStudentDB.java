@@ -0,0 +1,581 @@
+package client;
+
+import rmi.ChangeBatch;
+import rmi.InvalidationListener;
+import rmi.ReportInfo;
+import rmi.StudentBatch;
+import rmi.StudentChange;
+import rmi.StudentDBInterface;
+import rmi.StudentDBInterfaceV2;
+import rmi.StudentPage;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
+import java.rmi.Naming;
+import java.rmi.NoSuchObjectException;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.ServerError;
+import java.rmi.ServerException;
+import java.rmi.StubNotFoundException;
+import java.rmi.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LoadBalancedStudentDB spreads remote calls over several StudentDBService nodes.
+ * It is a proxy implementing the remote interfaces, so it drops in wherever a stub
+ * from Naming.lookup was used.
+ *
+ * Each call goes to the less busy of two randomly picked healthy nodes (power of two
+ * choices on outstanding calls). A background task pings every node and takes
+ * unhealthy ones out of rotation until they answer again. A call that fails with a
+ * RemoteException is retried on another node when that is safe: always if the call
+ * never reached the server (connection refused, stale stub), otherwise only for reads.
+ * Student cursors and server-rendered reports live on the node that opened them, so
+ * their calls stick to it.
+ *
+ * Unless rpc.readYourWrites is false, calls go through a session opened on each node,
+ * so reads see this client's earlier writes even when the node serves them from a
+ * read replica. An expired session fails like a stale stub and is replaced.
+ *
+ * Each node has a change feed with only the writes made through it, so fetchChanges
+ * reads every node's feed from a cursor of its own and merges what it gets, by write
+ * time, into one feed with sequences of the balancer's. The merged feed keeps the last
+ * rpc.changeFeed.capacity changes. When some node's changes may have been missed (its
+ * feed restarted or has a gap, or it was unreachable for a while) the merged feed gets
+ * a new feedId, so consumers reload as they would after a server restart.
+ *
+ * Invalidation listeners are subscribed on every node, and again on a node whenever
+ * it is looked up anew, since a restarted node knows no subscriptions.
+ */
+public class LoadBalancedStudentDB implements InvocationHandler {
+
+    public static final String DEFAULT_SERVERS = "rmi://localhost:1099/StudentDBService";
+
+    // Calls that change nothing on the server and can be retried elsewhere after any failure
+    private static final Set<String> READ_METHODS = Set.of(
+            "select", "findStudent", "getAllStudents", "findStudentsByCourse",
+            "findStudentsByNamePrefix", "findStudentsByName", "listStudents", "countStudents",
+            "getServerStats", "ping");
+
+    /**
+     * One server node.
+     */
+    private static final class Node {
+        final String url;
+        final AtomicInteger outstanding = new AtomicInteger();
+        final AtomicBoolean checking = new AtomicBoolean();
+        final LongAdder calls = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        volatile StudentDBInterface stub; // null until looked up, and again after a failure
+        volatile boolean healthy;
+
+        Node(String url) {
+            this.url = url;
+        }
+    }
+
+    // A cursor as the caller knows it, and where it really lives
+    private record CursorRoute(Node node, long serverCursorId) {
+    }
+
+    // A report as the caller knows it, where its file is, and how long it is
+    private record ReportRoute(Node node, String serverReportId, long size) {
+    }
+
+    private final List<Node> nodes = new ArrayList<>();
+    private final Map<Long, CursorRoute> cursors = new ConcurrentHashMap<>();
+    private final AtomicLong nextCursorId = new AtomicLong(1);
+    private final Map<String, ReportRoute> reports = new ConcurrentHashMap<>();
+    private final AtomicLong nextReportId = new AtomicLong(1);
+    private final Set<InvalidationListener> listeners = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService healthChecker;
+    private final ExecutorService checks = Executors.newVirtualThreadPerTaskExecutor();
+    private final boolean readYourWrites = Boolean.parseBoolean(System.getProperty("rpc.readYourWrites", "true"));
+
+    // Most changes returned by one fetchChanges call, like the server's changefeed.maxBatch
+    private static final int FEED_BATCH = 1000;
+
+    // How far the merged feed has read one node's feed
+    private record FeedCursor(String feedId, long afterSequence) {
+    }
+
+    private final Map<Node, FeedCursor> feedCursors = new HashMap<>(); // guarded by the ring
+    private final StudentChange[] feedRing = new StudentChange[Math.max(1,
+            Integer.getInteger("rpc.changeFeed.capacity", 100_000))];
+    private String feedId = UUID.randomUUID().toString();               // guarded by the ring
+    private long feedHead;                                               // guarded by the ring
+    private boolean feedRead;                                            // guarded by the ring
+
+    private LoadBalancedStudentDB(List<String> urls, long healthIntervalMillis) {
+        for (String url : urls) {
+            nodes.add(new Node(url));
+        }
+        healthChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "rmi-health-check");
+            t.setDaemon(true);
+            return t;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkAll, healthIntervalMillis, healthIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Connects to the nodes listed in the rpc.servers system property, a comma-separated
+     * list of RMI URLs, defaulting to the single local server.
+     */
+    public static StudentDBInterface connect() throws RemoteException {
+        List<String> urls = Arrays.stream(System.getProperty("rpc.servers", DEFAULT_SERVERS).split(","))
+                .map(String::trim)
+                .filter(url -> !url.isEmpty())
+                .toList();
+        return connect(urls, Long.getLong("rpc.healthIntervalMillis", 2_000L));
+    }
+
+    /**
+     * Connects to the given nodes, checking each once before returning.
+     * @throws RemoteException if none of them can be reached.
+     */
+    public static StudentDBInterface connect(List<String> urls, long healthIntervalMillis) throws RemoteException {
+        LoadBalancedStudentDB balancer = new LoadBalancedStudentDB(urls, healthIntervalMillis);
+        for (Node node : balancer.nodes) {
+            balancer.check(node);
+        }
+        if (balancer.nodes.stream().noneMatch(n -> n.healthy)) {
+            balancer.close();
+            throw new ConnectException("No server reachable at " + urls);
+        }
+        return (StudentDBInterface) Proxy.newProxyInstance(
+                LoadBalancedStudentDB.class.getClassLoader(),
+                new Class<?>[]{StudentDBInterface.class, StudentDBInterfaceV2.class},
+                balancer);
+    }
+
+    /**
+     * The balancer behind a proxy returned by connect, or null for any other stub.
+     */
+    public static LoadBalancedStudentDB of(Object stub) {
+        if (Proxy.isProxyClass(stub.getClass())
+                && Proxy.getInvocationHandler(stub) instanceof LoadBalancedStudentDB balancer) {
+            return balancer;
+        }
+        return null;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "LoadBalancedStudentDB" + getStats();
+            }
+        }
+
+        switch (method.getName()) {
+            case "openStudentCursor":
+                return openCursor(method, args);
+            case "fetchStudents":
+            case "fetchStudentBatch":
+            case "closeStudentCursor":
+                return onCursor(method, args);
+            case "openReport":
+                return openReport(method, args);
+            case "readReport":
+                return onReport(method, args);
+            case "fetchChanges":
+                return fetchChanges(method, args);
+            case "subscribeInvalidations":
+            case "unsubscribeInvalidations":
+                return onAllNodes(method, args);
+            default:
+                return call(method, args, READ_METHODS.contains(method.getName()));
+        }
+    }
+
+    private Object call(Method method, Object[] args, boolean read) throws Throwable {
+        Set<Node> tried = new HashSet<>();
+        RemoteException lastFailure = null;
+        Node node;
+        while ((node = choose(tried)) != null) {
+            tried.add(node);
+            try {
+                return invokeOn(node, method, args);
+            } catch (RemoteException e) {
+                if (isApplicationError(e)) throw e;
+                lastFailure = e;
+                markDown(node, e);
+                if (!read && !neverReachedServer(e)) throw e;
+            }
+        }
+        throw (lastFailure != null) ? lastFailure : new ConnectException("No server available.");
+    }
+
+    // Cursor ids are only unique per node, so callers get ids of our own
+    private Object openCursor(Method method, Object[] args) throws Throwable {
+        Set<Node> tried = new HashSet<>();
+        RemoteException lastFailure = null;
+        Node node;
+        while ((node = choose(tried)) != null) {
+            tried.add(node);
+            try {
+                long serverCursorId = (Long) invokeOn(node, method, args);
+                long id = nextCursorId.getAndIncrement();
+                cursors.put(id, new CursorRoute(node, serverCursorId));
+                return id;
+            } catch (RemoteException e) {
+                if (isApplicationError(e)) throw e;
+                lastFailure = e;
+                markDown(node, e);
+            }
+        }
+        throw (lastFailure != null) ? lastFailure : new ConnectException("No server available.");
+    }
+
+    // A cursor cannot move: if its node fails, the cursor is gone and the caller has to start over
+    private Object onCursor(Method method, Object[] args) throws Throwable {
+        long id = (Long) args[0];
+        boolean closing = method.getName().equals("closeStudentCursor");
+        CursorRoute route = closing ? cursors.remove(id) : cursors.get(id);
+        if (route == null) {
+            if (closing) return null;
+            throw new RemoteException("Unknown or expired cursor " + id);
+        }
+        Object[] routed = args.clone();
+        routed[0] = route.serverCursorId();
+        try {
+            Object result = invokeOn(route.node(), method, routed);
+            // The server closes an exhausted cursor by itself
+            if (result instanceof StudentPage page && !page.hasMore()
+                    || result instanceof StudentBatch batch && !batch.hasMore()) {
+                cursors.remove(id);
+            }
+            return result;
+        } catch (RemoteException e) {
+            if (!isApplicationError(e)) {
+                cursors.remove(id);
+                markDown(route.node(), e);
+            }
+            throw e;
+        }
+    }
+
+    // Report ids are only unique per node, like cursor ids
+    private Object openReport(Method method, Object[] args) throws Throwable {
+        Set<Node> tried = new HashSet<>();
+        RemoteException lastFailure = null;
+        Node node;
+        while ((node = choose(tried)) != null) {
+            tried.add(node);
+            try {
+                ReportInfo info = (ReportInfo) invokeOn(node, method, args);
+                String id = "r" + nextReportId.getAndIncrement();
+                reports.put(id, new ReportRoute(node, info.reportId(), info.size()));
+                return new ReportInfo(id, info.report(), info.format(), info.size(),
+                        info.dataVersion(), info.renderedAtMillis());
+            } catch (RemoteException e) {
+                if (isApplicationError(e)) throw e;
+                lastFailure = e;
+                markDown(node, e);
+            }
+        }
+        throw (lastFailure != null) ? lastFailure : new ConnectException("No server available.");
+    }
+
+    // Forgotten once read to the end; if its node fails the report has to be opened again
+    private Object onReport(Method method, Object[] args) throws Throwable {
+        String id = (String) args[0];
+        ReportRoute route = reports.get(id);
+        if (route == null) {
+            throw new RemoteException("Unknown or expired report " + id);
+        }
+        Object[] routed = args.clone();
+        routed[0] = route.serverReportId();
+        try {
+            byte[] chunk = (byte[]) invokeOn(route.node(), method, routed);
+            if ((Long) args[1] + chunk.length >= route.size()) {
+                reports.remove(id);
+            }
+            return chunk;
+        } catch (RemoteException e) {
+            if (!isApplicationError(e)) {
+                reports.remove(id);
+                markDown(route.node(), e);
+            }
+            throw e;
+        }
+    }
+
+    // Sequences only mean something on the node that gave them out, so the balancer hands out its own
+    private Object fetchChanges(Method method, Object[] args) throws Throwable {
+        long after = (Long) args[0];
+        int max = (Integer) args[1];
+        int n = (max <= 0) ? FEED_BATCH : Math.min(max, FEED_BATCH);
+        synchronized (feedRing) {
+            if (after >= feedHead) {
+                readFeeds(method, n);
+            }
+            long oldest = Math.max(1, feedHead - feedRing.length + 1);
+            if (after < oldest - 1 || after > feedHead) {
+                return new ChangeBatch(feedId, List.of(), feedHead, true);
+            }
+            long last = Math.min(feedHead, after + n);
+            List<StudentChange> changes = new ArrayList<>((int) (last - after));
+            for (long s = after + 1; s <= last; s++) {
+                changes.add(feedRing[(int) (s % feedRing.length)]);
+            }
+            return new ChangeBatch(feedId, changes, feedHead, false);
+        }
+    }
+
+    /**
+     * Reads up to maxChanges from every healthy node's feed and appends them to the ring.
+     * A node is read from where the merged feed left it; one seen for the first time, or
+     * whose feed changed, is only followed from its current head.
+     */
+    private void readFeeds(Method method, int maxChanges) throws Throwable {
+        List<List<StudentChange>> read = new ArrayList<>(nodes.size());
+        boolean missed = false;
+        for (Node node : nodes) {
+            FeedCursor cursor = feedCursors.get(node);
+            if (!node.healthy) {
+                // It may take writes we cannot read, so it starts over when it is back
+                feedCursors.remove(node);
+                continue;
+            }
+            ChangeBatch batch;
+            try {
+                long from = (cursor != null) ? cursor.afterSequence() : 0;
+                batch = (ChangeBatch) invokeOn(node, method, new Object[]{from, maxChanges});
+            } catch (RemoteException e) {
+                if (isApplicationError(e)) throw e;
+                markDown(node, e);
+                feedCursors.remove(node);
+                continue;
+            }
+            if (cursor == null || batch.gap() || !batch.feedId().equals(cursor.feedId())) {
+                // Writes before the head were missed, unless nobody has read the merged feed yet
+                missed |= feedRead;
+                feedCursors.put(node, new FeedCursor(batch.feedId(), batch.headSequence()));
+                continue;
+            }
+            List<StudentChange> changes = batch.changes();
+            if (!changes.isEmpty()) {
+                read.add(changes);
+                feedCursors.put(node, new FeedCursor(cursor.feedId(), changes.get(changes.size() - 1).sequence()));
+            }
+        }
+        feedRead = true;
+        if (missed) {
+            feedId = UUID.randomUUID().toString();
+        }
+
+        // Each node's changes stay in their order; between nodes the earlier write goes first
+        int[] next = new int[read.size()];
+        while (true) {
+            int pick = -1;
+            for (int i = 0; i < read.size(); i++) {
+                if (next[i] < read.get(i).size() && (pick < 0
+                        || read.get(i).get(next[i]).timeMillis() < read.get(pick).get(next[pick]).timeMillis())) {
+                    pick = i;
+                }
+            }
+            if (pick < 0) return;
+            StudentChange c = read.get(pick).get(next[pick]++);
+            feedHead++;
+            feedRing[(int) (feedHead % feedRing.length)] = new StudentChange(feedHead, c.type(), c.studentId(),
+                    c.name(), c.course(), c.timeMillis());
+        }
+    }
+
+    // Subscriptions are per node: a listener must hear of writes made through any of them
+    private Object onAllNodes(Method method, Object[] args) throws Throwable {
+        InvalidationListener listener = (InvalidationListener) args[0];
+        boolean subscribing = method.getName().equals("subscribeInvalidations");
+        if (subscribing) {
+            listeners.add(listener);
+        } else {
+            listeners.remove(listener);
+        }
+        RemoteException lastFailure = null;
+        boolean reached = false;
+        for (Node node : nodes) {
+            if (!node.healthy && subscribing) continue; // subscribed when it is looked up again
+            try {
+                if (subscribing && node.stub == null) {
+                    lookup(node); // subscribes every listener
+                } else {
+                    invokeOn(node, method, args);
+                }
+                reached = true;
+            } catch (RemoteException e) {
+                if (isApplicationError(e)) throw e;
+                lastFailure = e;
+                markDown(node, e);
+            }
+        }
+        if (subscribing && !reached) {
+            throw (lastFailure != null) ? lastFailure : new ConnectException("No server available.");
+        }
+        return null;
+    }
+
+    private Object invokeOn(Node node, Method method, Object[] args) throws Throwable {
+        StudentDBInterface stub = node.stub;
+        if (stub == null) {
+            stub = lookup(node);
+        }
+        node.outstanding.incrementAndGet();
+        node.calls.increment();
+        try {
+            return method.invoke(stub, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        } finally {
+            node.outstanding.decrementAndGet();
+        }
+    }
+
+    /**
+     * Picks the less loaded of two random healthy nodes not tried yet. If no node is
+     * known to be healthy, untried unhealthy ones are tried too, since the last
+     * health check may be out of date.
+     */
+    private Node choose(Set<Node> tried) {
+        List<Node> candidates = new ArrayList<>(nodes.size());
+        for (Node n : nodes) {
+            if (n.healthy && !tried.contains(n)) candidates.add(n);
+        }
+        if (candidates.isEmpty()) {
+            for (Node n : nodes) {
+                if (!tried.contains(n)) candidates.add(n);
+            }
+        }
+        if (candidates.isEmpty()) return null;
+        if (candidates.size() == 1) return candidates.get(0);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(candidates.size());
+        int j = random.nextInt(candidates.size() - 1);
+        if (j >= i) j++;
+        Node a = candidates.get(i);
+        Node b = candidates.get(j);
+        return (b.outstanding.get() < a.outstanding.get()) ? b : a;
+    }
+
+    private StudentDBInterface lookup(Node node) throws RemoteException {
+        try {
+            StudentDBInterface stub = (StudentDBInterface) Naming.lookup(node.url);
+            if (readYourWrites && stub instanceof StudentDBInterfaceV2 v2) {
+                stub = (StudentDBInterface) v2.openSession(true);
+            }
+            if (stub instanceof StudentDBInterfaceV2 v2) {
+                for (InvalidationListener listener : listeners) {
+                    v2.subscribeInvalidations(listener);
+                }
+            }
+            node.stub = stub;
+            return stub;
+        } catch (NotBoundException | MalformedURLException e) {
+            throw new ConnectException("No StudentDBService at " + node.url, e);
+        }
+    }
+
+    private void markDown(Node node, RemoteException e) {
+        node.failures.increment();
+        if (node.healthy) {
+            System.err.println("Server " + node.url + " failed, taking it out of rotation: " + e.getMessage());
+        }
+        node.healthy = false;
+        node.stub = null; // a restarted server has a new stub
+    }
+
+    private void checkAll() {
+        for (Node node : nodes) {
+            // A node that hangs only delays its own next check
+            if (node.checking.compareAndSet(false, true)) {
+                checks.submit(() -> {
+                    try {
+                        check(node);
+                    } finally {
+                        node.checking.set(false);
+                    }
+                });
+            }
+        }
+    }
+
+    private void check(Node node) {
+        try {
+            StudentDBInterface stub = (node.stub != null) ? node.stub : lookup(node);
+            boolean ok = !(stub instanceof StudentDBInterfaceV2 v2) || v2.ping().isOk();
+            if (ok && !node.healthy) {
+                System.out.println("Server " + node.url + " is available.");
+            }
+            node.healthy = ok;
+        } catch (RemoteException e) {
+            node.healthy = false;
+            node.stub = null;
+        }
+    }
+
+    // The server ran the call and threw; another node would do the same
+    private static boolean isApplicationError(RemoteException e) {
+        return e instanceof ServerException || e instanceof ServerError;
+    }
+
+    // Failures that happen before the request is sent, so the call is safe to repeat
+    private static boolean neverReachedServer(RemoteException e) {
+        return e instanceof ConnectException
+                || e instanceof ConnectIOException
+                || e instanceof NoSuchObjectException
+                || e instanceof StubNotFoundException
+                || e instanceof UnknownHostException;
+    }
+
+    /**
+     * One-line summary per node, useful for logging.
+     */
+    public String getStats() {
+        StringBuilder out = new StringBuilder("[");
+        for (Node n : nodes) {
+            if (out.length() > 1) out.append(", ");
+            out.append(String.format("%s(%s, outstanding=%d, calls=%d, failures=%d)",
+                    n.url, n.healthy ? "up" : "down", n.outstanding.get(), n.calls.sum(), n.failures.sum()));
+        }
+        return out.append("]").toString();
+    }
+
+    /**
+     * Stops the health checks.
+     */
+    public void close() {
+        healthChecker.shutdownNow();
+        checks.shutdownNow();
+    }
+}
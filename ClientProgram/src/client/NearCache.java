@@ -0,0 +1,256 @@
+package client;
+
+import rmi.InvalidationBatch;
+import rmi.InvalidationListener;
+import rmi.StudentDBInterfaceV2;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * NearCache keeps select results on the client and drops them when the servers say the
+ * student changed. It is exported as an RMI callback and subscribed to every server
+ * node; each node pushes the ids written through it in batches (see
+ * StudentDBInterfaceV2.subscribeInvalidations).
+ *
+ * When a batch may have been missed (a gap in a node's sequence numbers, a node seen
+ * for the first time or restarted) everything is dropped. A node that has sent
+ * nothing, not even a heartbeat, for rpc.nearCache.leaseMillis is presumed to have lost
+ * the subscription: everything is dropped and the client subscribes again. Nothing is
+ * cached until a server has been heard from. Entries also expire after
+ * rpc.nearCache.ttlMillis, which bounds staleness if a push is lost some other way.
+ */
+public class NearCache implements InvalidationListener {
+
+    private record Entry(String value, long expiresAt) {
+    }
+
+    // The last batch heard from one server subscription
+    private static final class Source {
+        long sequence;
+        volatile long lastHeard = System.currentTimeMillis();
+    }
+
+    private final StudentDBInterfaceV2 db;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final long leaseMillis;
+    private final Map<String, Entry> entries;               // guarded by this, least recently used first
+    private final Map<String, Source> sources = new ConcurrentHashMap<>();
+    // Bumped by every invalidation, so a select that raced with one is not cached
+    private final AtomicLong generation = new AtomicLong();
+    private volatile boolean subscribed;
+    private volatile long subscribedAt;
+    private volatile InvalidationListener exported;
+    private final ScheduledExecutorService leases;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidated = new LongAdder();
+    private final LongAdder clears = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder lagTotal = new LongAdder();
+    private final LongAdder lagCount = new LongAdder();
+    private final LongAccumulator lagMax = new LongAccumulator(Math::max, 0);
+
+    public NearCache(StudentDBInterfaceV2 db) {
+        this(db, Integer.getInteger("rpc.nearCache.maxSize", 10_000),
+                Long.getLong("rpc.nearCache.ttlMillis", 30_000L),
+                Long.getLong("rpc.nearCache.leaseMillis", 15_000L));
+    }
+
+    public NearCache(StudentDBInterfaceV2 db, int maxSize, long ttlMillis, long leaseMillis) {
+        this.db = db;
+        this.maxSize = Math.max(1, maxSize);
+        this.ttlMillis = ttlMillis;
+        this.leaseMillis = leaseMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > NearCache.this.maxSize;
+            }
+        };
+        leases = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "near-cache-lease");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(100L, leaseMillis / 3);
+        leases.scheduleWithFixedDelay(this::checkLeases, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The cached value for key, or loads it. The loaded value is kept unless an
+     * invalidation arrived while it loaded, or cacheable rejects it.
+     */
+    public <E extends Exception> String get(String key, Loader<E> loader, Predicate<String> cacheable) throws E {
+        long now = System.currentTimeMillis();
+        boolean usable = isUsable();
+        if (usable) {
+            synchronized (this) {
+                Entry entry = entries.get(key);
+                if (entry != null && entry.expiresAt() > now) {
+                    hits.increment();
+                    return entry.value();
+                }
+                if (entry != null) entries.remove(key);
+            }
+        }
+        misses.increment();
+        long startGeneration = generation.get();
+        String value = loader.load();
+        if (usable && cacheable.test(value)) {
+            synchronized (this) {
+                if (generation.get() == startGeneration) {
+                    entries.put(key, new Entry(value, System.currentTimeMillis() + ttlMillis));
+                }
+            }
+        }
+        return value;
+    }
+
+    /**
+     * A call that loads a value from the server.
+     */
+    @FunctionalInterface
+    public interface Loader<E extends Exception> {
+        String load() throws E;
+    }
+
+    /**
+     * Drops one key, e.g. after this client changed the student.
+     */
+    public void invalidate(String key) {
+        generation.incrementAndGet();
+        synchronized (this) {
+            entries.remove(key);
+        }
+    }
+
+    public void clear() {
+        generation.incrementAndGet();
+        synchronized (this) {
+            entries.clear();
+        }
+        clears.increment();
+    }
+
+    @Override
+    public void invalidated(InvalidationBatch batch) {
+        long now = System.currentTimeMillis();
+        batches.increment();
+        if (batch.oldestChangeMillis() > 0) {
+            // Clocks of client and server may differ; a negative lag means they do
+            long lag = Math.max(0, now - batch.oldestChangeMillis());
+            lagTotal.add(lag);
+            lagCount.increment();
+            lagMax.accumulate(lag);
+        }
+
+        Source source = sources.computeIfAbsent(batch.source(), s -> new Source());
+        boolean missed;
+        synchronized (source) {
+            // A subscription not seen before may follow a restart that lost batches
+            missed = source.sequence == 0 || batch.sequence() != source.sequence + 1;
+            source.sequence = batch.sequence();
+            source.lastHeard = now;
+        }
+        if (missed || batch.all()) {
+            clear();
+            return;
+        }
+        if (!batch.ids().isEmpty()) {
+            generation.incrementAndGet();
+            synchronized (this) {
+                for (String id : batch.ids()) {
+                    if (entries.remove(id) != null) invalidated.increment();
+                }
+            }
+        }
+    }
+
+    // Caching needs a server that has been heard from, which also shows callbacks reach this client
+    private boolean isUsable() {
+        return subscribed && !sources.isEmpty();
+    }
+
+    // Stops caching if a server has gone quiet, and (re)subscribes when needed
+    private void checkLeases() {
+        long cutoff = System.currentTimeMillis() - leaseMillis;
+        boolean lapsed = sources.values().removeIf(s -> s.lastHeard < cutoff);
+        if (lapsed) {
+            subscribed = false;
+            clear();
+        } else if (subscribed && sources.isEmpty() && subscribedAt < cutoff) {
+            System.err.println("Near cache disabled, no invalidations received; is this client reachable "
+                    + "from the servers (java.rmi.server.hostname)?");
+            subscribed = false;
+        }
+        if (!subscribed) {
+            subscribe();
+        }
+    }
+
+    private void subscribe() {
+        try {
+            if (exported == null) {
+                exported = (InvalidationListener) UnicastRemoteObject.exportObject(this, 0);
+            }
+            db.subscribeInvalidations(exported);
+            subscribedAt = System.currentTimeMillis();
+            subscribed = true;
+        } catch (RemoteException e) {
+            System.err.println("Near cache disabled, cannot subscribe to invalidations: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops caching and tells the servers to stop pushing.
+     */
+    public void close() {
+        leases.shutdownNow();
+        subscribed = false;
+        clear();
+        InvalidationListener listener = exported;
+        if (listener == null) return;
+        try {
+            db.unsubscribeInvalidations(listener);
+        } catch (RemoteException e) {
+            // The servers drop listeners they cannot reach
+        }
+        try {
+            UnicastRemoteObject.unexportObject(this, true);
+        } catch (NoSuchObjectException e) {
+            // Already gone
+        }
+    }
+
+    /**
+     * One-line summary of the cache, useful for logging.
+     */
+    public String getStats() {
+        long h = hits.sum();
+        long m = misses.sum();
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        long n = lagCount.sum();
+        return String.format("NearCache[%s, size=%d, hits=%d, misses=%d, hitRatio=%.2f, invalidated=%d, clears=%d, "
+                        + "batches=%d, lag avg=%.1fms max=%dms]",
+                isUsable() ? "on" : "off", size, h, m, (h + m == 0) ? 0.0 : (double) h / (h + m),
+                invalidated.sum(), clears.sum(), batches.sum(),
+                (n == 0) ? 0.0 : (double) lagTotal.sum() / n, lagMax.get());
+    }
+}
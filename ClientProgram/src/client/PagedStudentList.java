@@ -0,0 +1,164 @@
+package client;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import rmi.Student;
+import rmi.StudentBatch;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * PagedStudentList is a read-only list of every student, for a TableView, that holds
+ * only the pages of it that were looked at recently. Its size is the student count;
+ * a row whose page is not loaded yet is null until the page arrives, when the list
+ * reports the rows as replaced so the table shows them.
+ *
+ * A page is fetched when one of its rows is asked for, and the page after it (or
+ * before it, in the upper half of a page) is fetched ahead. A page that follows a
+ * loaded one is fetched after that page's last student; any other page is found by
+ * its offset. The list is ordered by the server, see {@link #sortBy}.
+ *
+ * Only use it on the JavaFX application thread.
+ */
+public class PagedStudentList extends ObservableListBase<Student> {
+
+    private final AsyncStudentDB rpc;
+    private final int pageSize;
+    private final int maxPages;
+    private final Map<Integer, List<Student>> pages; // least recently used first
+    private final Set<Integer> loading = new HashSet<>();
+    private Consumer<Throwable> onError = e -> { };
+
+    private int size;
+    private String orderBy = "id";
+    private boolean descending;
+    private int generation; // bumped by every reset; answers for an older one are dropped
+    private boolean failed;   // a failure of this load was reported already
+
+    public PagedStudentList(AsyncStudentDB rpc, int pageSize, int maxPages) {
+        this.rpc = rpc;
+        this.pageSize = Math.max(1, pageSize);
+        this.maxPages = Math.max(2, maxPages);
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Student>> eldest) {
+                return size() > PagedStudentList.this.maxPages;
+            }
+        };
+    }
+
+    /**
+     * Called with the first failure of a count or page load after each reload; cancelled
+     * loads are not reported.
+     */
+    public void setOnError(Consumer<Throwable> onError) {
+        this.onError = onError;
+    }
+
+    /**
+     * Orders the list by column ("id", "name" or "course") and loads it again.
+     */
+    public void sortBy(String column, boolean descending) {
+        if (column.equals(orderBy) && descending == this.descending) return;
+        this.orderBy = column;
+        this.descending = descending;
+        reload();
+    }
+
+    /**
+     * Drops every loaded page and counts the students again.
+     */
+    public void reload() {
+        int current = ++generation;
+        failed = false;
+        pages.clear();
+        loading.clear();
+        rpc.countStudents().whenComplete((count, ex) -> Platform.runLater(() -> {
+            if (current != generation) return;
+            if (ex != null) {
+                failed(ex);
+                return;
+            }
+            resize((int) Math.min(Integer.MAX_VALUE, count));
+        }));
+    }
+
+    private void resize(int newSize) {
+        int oldSize = size;
+        size = newSize;
+        beginChange();
+        if (oldSize > 0) nextRemove(0, Collections.nCopies(oldSize, (Student) null));
+        if (newSize > 0) nextAdd(0, newSize);
+        endChange();
+    }
+
+    @Override
+    public Student get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        int p = index / pageSize;
+        int row = index % pageSize;
+        request(row < pageSize / 2 ? p - 1 : p + 1); // ahead of the scrolling
+        List<Student> page = pages.get(p);
+        if (page == null) {
+            request(p);
+            return null;
+        }
+        // Rows deleted since the count leave a short page
+        return (row < page.size()) ? page.get(row) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of pages held, at most maxPages.
+     */
+    public int getLoadedPageCount() {
+        return pages.size();
+    }
+
+    private void request(int p) {
+        if (p < 0 || (long) p * pageSize >= size || pages.containsKey(p) || !loading.add(p)) return;
+        // Keyset paging after the previous page is cheap for the server; offsets are a full skip
+        List<Student> previous = pages.get(p - 1);
+        Student after = (previous != null && previous.size() == pageSize) ? previous.get(pageSize - 1) : null;
+        int offset = (after != null) ? 0 : p * pageSize;
+        int current = generation;
+        rpc.listStudents(orderBy, descending, after, offset, pageSize).whenComplete((batch, ex) -> Platform.runLater(() -> {
+            if (current != generation) return;
+            loading.remove(p);
+            if (ex != null) {
+                failed(ex);
+                return;
+            }
+            loaded(p, batch);
+        }));
+    }
+
+    private void loaded(int p, StudentBatch batch) {
+        List<Student> students = batch.students();
+        pages.put(p, students);
+        int from = p * pageSize;
+        int to = Math.min(size, from + pageSize);
+        if (from >= to) return;
+        // The rows were null (not loaded); students past the end of a short page still are
+        beginChange();
+        nextReplace(from, to, Collections.nCopies(to - from, (Student) null));
+        endChange();
+    }
+
+    private void failed(Throwable ex) {
+        if (!failed && !AsyncStudentDB.isCancelled(ex)) {
+            failed = true;
+            onError.accept(ex);
+        }
+    }
+}
@@ -2,20 +2,286 @@ package client.utils;
 
 import com.itextpdf.text.Document;
 import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.PageSize;
 import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfCopy;
+import com.itextpdf.text.pdf.PdfReader;
 import com.itextpdf.text.pdf.PdfWriter;
+import rmi.Student;
+
+import java.io.BufferedOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+/**
+ * PDFGenerator writes student reports as PDF.
+ *
+ * Reports built from {@link StudentPages} are streamed: students are read a page at a
+ * time and drawn into a table, and each PDF page is written out as soon as it is full,
+ * so memory use does not grow with the number of students. A report split into
+ * sections (one per course, say) can render its sections in parallel, each into a
+ * temporary file, which are then merged in order.
+ */
 public class PDFGenerator {
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final float[] COLUMN_WIDTHS = {1f, 2f, 2f};
+
+    /**
+     * One titled part of a report.
+     */
+    public record Section(String title, StudentPages students) {
+    }
+
+    /**
+     * Writes free text, one paragraph per line.
+     */
     public static void generateReport(String reportData, String filePath) throws DocumentException, FileNotFoundException {
         Document document = new Document();
-        PdfWriter.getInstance(document, new FileOutputStream(filePath));
+        PdfWriter.getInstance(document, new BufferedOutputStream(new FileOutputStream(filePath), BUFFER_BYTES));
         document.open();
-        // Split the report data by newlines and add each line as a paragraph for better formatting.
-        for (String line : reportData.split("\\n")) {
-            document.add(new Paragraph(line));
+        for (Iterator<String> lines = reportData.lines().iterator(); lines.hasNext(); ) {
+            document.add(new Paragraph(lines.next()));
         }
         document.close();
     }
+
+    /**
+     * Writes the students as a table of ID, name and course.
+     * @return the number of students written.
+     */
+    public static long generateReport(String title, StudentPages students, String filePath)
+            throws DocumentException, IOException {
+        return generateReport(List.of(new Section(title, students)), filePath, 1);
+    }
+
+    /**
+     * Writes each section as a title followed by a table of its students, each section
+     * starting on a new page. With parallelism above 1, up to that many sections are
+     * rendered at once and each is merged in as soon as the sections before it are.
+     * @return the number of students written.
+     */
+    public static long generateReport(List<Section> sections, String filePath, int parallelism)
+            throws DocumentException, IOException {
+        if (parallelism <= 1 || sections.size() <= 1) {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filePath), BUFFER_BYTES)) {
+                return render(sections, out);
+            }
+        }
+        return renderInParallel(sections, filePath, parallelism);
+    }
+
+    private static long render(List<Section> sections, OutputStream out) throws DocumentException, IOException {
+        Document document = new Document(PageSize.A4);
+        PdfWriter writer = PdfWriter.getInstance(document, out);
+        document.open();
+        TableWriter table = new TableWriter(document, writer);
+        long rows = 0;
+        for (int i = 0; i < sections.size(); i++) {
+            Section section = sections.get(i);
+            table.startSection(section.title(), i > 0);
+            for (List<Student> page = section.students().next(); !page.isEmpty(); page = section.students().next()) {
+                for (Student s : page) {
+                    table.row(s.id(), s.name(), s.course());
+                }
+                rows += page.size();
+            }
+        }
+        table.finishPage();
+        document.close();
+        return rows;
+    }
+
+    /**
+     * Draws a table of students straight onto the page, one line per student, with the
+     * header repeated on every page. Text too wide for its column is cut short. Unlike
+     * PdfPTable this does no per-cell layout, and each page is written out when full.
+     */
+    private static final class TableWriter {
+        private static final float FONT_SIZE = 10;
+        private static final float TITLE_SIZE = 14;
+        private static final float ROW_HEIGHT = 16;
+        private static final float PADDING = 4;
+        private static final String[] HEADER = {"ID", "Name", "Course"};
+
+        private final Document document;
+        private final PdfContentByte canvas;
+        private final BaseFont font;
+        private final BaseFont bold;
+        private final float[] x; // left edge of each column, then the right edge of the table
+        private float top;       // top of the table on this page
+        private float y;         // bottom of the last row drawn
+
+        TableWriter(Document document, PdfWriter writer) throws DocumentException, IOException {
+            this.document = document;
+            this.canvas = writer.getDirectContent();
+            this.font = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.WINANSI, BaseFont.NOT_EMBEDDED);
+            this.bold = BaseFont.createFont(BaseFont.HELVETICA_BOLD, BaseFont.WINANSI, BaseFont.NOT_EMBEDDED);
+            float total = 0;
+            for (float w : COLUMN_WIDTHS) total += w;
+            x = new float[COLUMN_WIDTHS.length + 1];
+            x[0] = document.left();
+            for (int i = 0; i < COLUMN_WIDTHS.length; i++) {
+                x[i + 1] = x[i] + (document.right() - document.left()) * COLUMN_WIDTHS[i] / total;
+            }
+        }
+
+        void startSection(String title, boolean onNewPage) {
+            if (onNewPage) {
+                finishPage();
+                document.newPage();
+            }
+            y = document.top() - TITLE_SIZE;
+            canvas.beginText();
+            canvas.setFontAndSize(bold, TITLE_SIZE);
+            canvas.setTextMatrix(x[0], y);
+            canvas.showText(fit(bold, TITLE_SIZE, title, x[x.length - 1] - x[0]));
+            canvas.endText();
+            y -= 8;
+            header();
+        }
+
+        void row(String... cells) {
+            if (y - ROW_HEIGHT < document.bottom()) {
+                finishPage();
+                document.newPage();
+                y = document.top();
+                header();
+            }
+            y -= ROW_HEIGHT;
+            cells(font, cells);
+        }
+
+        // Outlines the columns of the rows drawn on this page
+        void finishPage() {
+            for (float edge : x) {
+                canvas.moveTo(edge, top);
+                canvas.lineTo(edge, y);
+            }
+            canvas.moveTo(x[0], top);
+            canvas.lineTo(x[x.length - 1], top);
+            canvas.stroke();
+        }
+
+        private void header() {
+            top = y;
+            y -= ROW_HEIGHT;
+            canvas.setLineWidth(0.5f);
+            canvas.setGrayStroke(0.5f);
+            canvas.setGrayFill(0.9f);
+            canvas.rectangle(x[0], y, x[x.length - 1] - x[0], ROW_HEIGHT);
+            canvas.fill();
+            canvas.setGrayFill(0f);
+            cells(bold, HEADER);
+        }
+
+        private void cells(BaseFont cellFont, String[] cells) {
+            canvas.beginText();
+            canvas.setFontAndSize(cellFont, FONT_SIZE);
+            for (int i = 0; i < cells.length; i++) {
+                canvas.setTextMatrix(x[i] + PADDING, y + (ROW_HEIGHT - FONT_SIZE) / 2 + 1);
+                canvas.showText(fit(cellFont, FONT_SIZE, cells[i], x[i + 1] - x[i] - 2 * PADDING));
+            }
+            canvas.endText();
+            canvas.moveTo(x[0], y);
+            canvas.lineTo(x[x.length - 1], y);
+            canvas.stroke();
+        }
+
+        private static String fit(BaseFont f, float size, String text, float width) {
+            if (text == null) return "";
+            if (f.getWidthPoint(text, size) <= width) return text;
+            int end = text.length();
+            while (end > 0 && f.getWidthPoint(text.substring(0, end) + "...", size) > width) {
+                end--;
+            }
+            return text.substring(0, end) + "...";
+        }
+    }
+
+    private static long renderInParallel(List<Section> sections, String filePath, int parallelism)
+            throws DocumentException, IOException {
+        ExecutorService renderers = Executors.newFixedThreadPool(Math.min(parallelism, sections.size()), r -> {
+            Thread t = new Thread(r, "pdf-render");
+            t.setDaemon(true);
+            return t;
+        });
+        List<Future<Path>> parts = new ArrayList<>(sections.size());
+        long[] rows = new long[sections.size()];
+        try {
+            for (int i = 0; i < sections.size(); i++) {
+                int index = i;
+                parts.add(renderers.submit(() -> {
+                    Path part = Files.createTempFile("report-", ".pdf");
+                    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(part), BUFFER_BYTES)) {
+                        rows[index] = render(List.of(sections.get(index)), out);
+                    } catch (Exception e) {
+                        Files.deleteIfExists(part);
+                        throw e;
+                    }
+                    return part;
+                }));
+            }
+            merge(parts, filePath);
+        } finally {
+            renderers.shutdownNow();
+            for (Future<Path> part : parts) {
+                if (part.state() == Future.State.SUCCESS) {
+                    Files.deleteIfExists(part.resultNow());
+                }
+            }
+        }
+        long total = 0;
+        for (long n : rows) total += n;
+        return total;
+    }
+
+    // Copies the rendered sections into one file in order; page contents are copied as they are
+    private static void merge(List<Future<Path>> parts, String filePath) throws DocumentException, IOException {
+        Document document = new Document();
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filePath), BUFFER_BYTES)) {
+            PdfCopy copy = new PdfCopy(document, out);
+            document.open();
+            for (Future<Path> future : parts) {
+                Path part = awaitPart(future);
+                PdfReader reader = new PdfReader(part.toString());
+                try {
+                    for (int page = 1; page <= reader.getNumberOfPages(); page++) {
+                        copy.addPage(copy.getImportedPage(reader, page));
+                    }
+                    copy.freeReader(reader);
+                } finally {
+                    reader.close();
+                }
+                Files.deleteIfExists(part);
+            }
+            document.close();
+        }
+    }
+
+    private static Path awaitPart(Future<Path> part) throws DocumentException, IOException {
+        try {
+            return part.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rendering the report", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof DocumentException de) throw de;
+            throw new IOException("Failed to render a report section", e.getCause());
+        }
+    }
 }
@@ -0,0 +1,77 @@
+package client.utils;
+
+import rmi.Student;
+import rmi.StudentBatch;
+import rmi.StudentDBInterface;
+import rmi.StudentDBInterfaceV2;
+import rmi.StudentPage;
+
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * StudentPages read from the server. Nothing is fetched until the first page is asked
+ * for, and each page is only fetched when the previous one has been consumed.
+ */
+public final class RemoteStudentPages {
+
+    private RemoteStudentPages() {
+    }
+
+    /**
+     * Every student, in id order, through a server-side cursor. The server closes the
+     * cursor once its last page has been read, or after its idle timeout if reading stops early.
+     */
+    public static StudentPages allStudents(StudentDBInterface db, int fetchSize) {
+        return new StudentPages() {
+            private Long cursorId;
+            private boolean done;
+
+            @Override
+            public List<Student> next() throws RemoteException {
+                if (cursorId == null) {
+                    cursorId = db.openStudentCursor(fetchSize);
+                }
+                // A page may be empty before the cursor is exhausted
+                while (!done) {
+                    List<Student> students;
+                    if (db instanceof StudentDBInterfaceV2 v2) {
+                        StudentBatch batch = v2.fetchStudentBatch(cursorId);
+                        students = batch.students();
+                        done = !batch.hasMore();
+                    } else {
+                        StudentPage page = db.fetchStudents(cursorId);
+                        students = page.students();
+                        done = !page.hasMore();
+                    }
+                    if (!students.isEmpty()) return students;
+                }
+                return List.of();
+            }
+        };
+    }
+
+    /**
+     * The students of one course, in id order, through the paged course search.
+     */
+    public static StudentPages byCourse(StudentDBInterfaceV2 db, String course, int pageSize) {
+        return new StudentPages() {
+            private String afterId; // null for the first page
+            private boolean done;
+
+            @Override
+            public List<Student> next() throws RemoteException {
+                while (!done) {
+                    StudentBatch batch = db.findStudentsByCourse(course, afterId, pageSize);
+                    List<Student> students = batch.students();
+                    done = !batch.hasMore() || students.isEmpty();
+                    if (!students.isEmpty()) {
+                        afterId = students.get(students.size() - 1).id();
+                        return students;
+                    }
+                }
+                return List.of();
+            }
+        };
+    }
+}
@@ -0,0 +1,42 @@
+package client.utils;
+
+import rmi.ReportInfo;
+import rmi.StudentDBInterfaceV2;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Downloads reports rendered by the server. The server renders a report once for all
+ * clients asking for it, so this is cheaper for everyone than rendering it locally.
+ */
+public final class ServerReports {
+
+    private static final int CHUNK_BYTES = 256 * 1024;
+
+    private ServerReports() {
+    }
+
+    /**
+     * Saves a report ("students") in a format ("pdf" or "csv") to file, one chunk at a time.
+     */
+    public static ReportInfo download(StudentDBInterfaceV2 db, String report, String format, Path file)
+            throws IOException {
+        ReportInfo info = db.openReport(report, format);
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), CHUNK_BYTES)) {
+            long offset = 0;
+            while (offset < info.size()) {
+                byte[] chunk = db.readReport(info.reportId(), offset, CHUNK_BYTES);
+                if (chunk.length == 0) {
+                    throw new IOException("Report " + info.reportId() + " ended after " + offset + " of " + info.size() + " bytes");
+                }
+                out.write(chunk);
+                offset += chunk.length;
+            }
+        }
+        return info;
+    }
+}
@@ -0,0 +1,19 @@
+package client.utils;
+
+import rmi.Student;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * StudentPages hands out students a page at a time, so whoever consumes them
+ * (a PDF report, for one) never needs the whole table in memory.
+ */
+@FunctionalInterface
+public interface StudentPages {
+
+    /**
+     * The next page, or an empty list once there are no more students.
+     */
+    List<Student> next() throws IOException;
+}
@@ -0,0 +1,107 @@
+package rmi;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Changes read from a server's change feed, oldest first.
+ *
+ * A consumer keeps the sequence of the last change it applied and passes it to the
+ * next fetchChanges. When gap is set, changes after that sequence are no longer kept
+ * (or feedId changed, e.g. the server restarted without a durable feed): the consumer
+ * has to reload every student and then continue after headSequence, read before the
+ * reload. Changes carry whole records, so applying one twice does no harm.
+ */
+public final class ChangeBatch implements Externalizable {
+    private static final long serialVersionUID = 1L;
+
+    private static final StudentChange.Type[] TYPES = StudentChange.Type.values();
+
+    private String feedId;
+    private List<StudentChange> changes;
+    private long headSequence;
+    private boolean gap;
+
+    // Needed for Externalizable
+    public ChangeBatch() {
+    }
+
+    public ChangeBatch(String feedId, List<StudentChange> changes, long headSequence, boolean gap) {
+        this.feedId = feedId;
+        this.changes = changes;
+        this.headSequence = headSequence;
+        this.gap = gap;
+    }
+
+    /**
+     * Identifies the feed; sequences of different feeds are unrelated.
+     */
+    public String feedId() {
+        return feedId;
+    }
+
+    public List<StudentChange> changes() {
+        return changes;
+    }
+
+    /**
+     * Sequence of the latest change in the feed when this batch was read.
+     */
+    public long headSequence() {
+        return headSequence;
+    }
+
+    public boolean gap() {
+        return gap;
+    }
+
+    /**
+     * Whether changes beyond this batch were already in the feed.
+     */
+    public boolean hasMore() {
+        return !changes.isEmpty() && changes.get(changes.size() - 1).sequence() < headSequence;
+    }
+
+    // Sequences are consecutive within a batch, so only the first is written
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeUTF(feedId);
+        out.writeLong(headSequence);
+        out.writeBoolean(gap);
+        out.writeInt(changes.size());
+        if (changes.isEmpty()) return;
+        out.writeLong(changes.get(0).sequence());
+        for (StudentChange c : changes) {
+            out.writeByte(c.type().ordinal());
+            out.writeUTF(c.studentId());
+            StudentBatch.writeNullable(out, c.name());
+            StudentBatch.writeNullable(out, c.course());
+            out.writeLong(c.timeMillis());
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        feedId = in.readUTF();
+        headSequence = in.readLong();
+        gap = in.readBoolean();
+        int n = in.readInt();
+        changes = new ArrayList<>(n);
+        if (n == 0) return;
+        long sequence = in.readLong();
+        for (int i = 0; i < n; i++) {
+            changes.add(new StudentChange(sequence + i, TYPES[in.readByte()], in.readUTF(),
+                    StudentBatch.readNullable(in), StudentBatch.readNullable(in), in.readLong()));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeBatch[" + feedId + ", " + changes.size() + " changes, head=" + headSequence
+                + (gap ? ", gap" : "") + "]";
+    }
+}
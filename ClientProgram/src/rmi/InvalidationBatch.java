@@ -0,0 +1,92 @@
+package rmi;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Student ids changed on a server since its previous batch to the same subscription.
+ * Batches of one subscription carry consecutive sequence numbers starting at 1, so a
+ * receiver can tell when it missed one. all means "drop everything", sent instead of
+ * ids when too many changed; a batch with neither is a heartbeat.
+ */
+public final class InvalidationBatch implements Externalizable {
+    private static final long serialVersionUID = 1L;
+
+    private String source;
+    private long sequence;
+    private boolean all;
+    private List<String> ids;
+    private long oldestChangeMillis;
+
+    // Needed for Externalizable
+    public InvalidationBatch() {
+    }
+
+    public InvalidationBatch(String source, long sequence, boolean all, List<String> ids, long oldestChangeMillis) {
+        this.source = source;
+        this.sequence = sequence;
+        this.all = all;
+        this.ids = ids;
+        this.oldestChangeMillis = oldestChangeMillis;
+    }
+
+    /**
+     * Identifies the subscription, unique across servers and restarts.
+     */
+    public String source() {
+        return source;
+    }
+
+    public long sequence() {
+        return sequence;
+    }
+
+    public boolean all() {
+        return all;
+    }
+
+    public List<String> ids() {
+        return ids;
+    }
+
+    /**
+     * Server time of the earliest change in this batch, 0 for a heartbeat.
+     */
+    public long oldestChangeMillis() {
+        return oldestChangeMillis;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeUTF(source);
+        out.writeLong(sequence);
+        out.writeBoolean(all);
+        out.writeLong(oldestChangeMillis);
+        out.writeInt(ids.size());
+        for (String id : ids) {
+            out.writeUTF(id);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        source = in.readUTF();
+        sequence = in.readLong();
+        all = in.readBoolean();
+        oldestChangeMillis = in.readLong();
+        int n = in.readInt();
+        ids = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            ids.add(in.readUTF());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "InvalidationBatch[" + source + "#" + sequence + (all ? ", all" : ", ids=" + ids) + "]";
+    }
+}
@@ -0,0 +1,12 @@
+package rmi;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Implemented by clients that cache students: the server calls it with the ids of
+ * students that changed, so the client can drop its copies.
+ */
+public interface InvalidationListener extends Remote {
+    void invalidated(InvalidationBatch batch) throws RemoteException;
+}
@@ -0,0 +1,12 @@
+package rmi;
+
+import java.io.Serializable;
+
+/**
+ * A report rendered on the server. Its bytes are read with readReport by reportId,
+ * size bytes in all; dataVersion is the server's data version the report was rendered from.
+ */
+public record ReportInfo(String reportId, String report, String format, long size,
+                         long dataVersion, long renderedAtMillis) implements Serializable {
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,21 @@
+package rmi;
+
+/**
+ * Outcome of a call on the typed (v2) remote interface.
+ */
+public enum ResultCode {
+    OK,
+    NOT_FOUND,
+    ALREADY_EXISTS,
+    INVALID_CREDENTIALS,
+    LOCKED,
+    BUSY,
+    UNAVAILABLE,
+    FAILED;
+
+    private static final ResultCode[] VALUES = values();
+
+    static ResultCode fromOrdinal(int ordinal) {
+        return (ordinal >= 0 && ordinal < VALUES.length) ? VALUES[ordinal] : FAILED;
+    }
+}
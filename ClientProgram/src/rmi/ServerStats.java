@@ -0,0 +1,45 @@
+package rmi;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What getServerStats reports: per remote method counts and latencies since the
+ * server started (or since the metrics were last reset over JMX), and one-line
+ * summaries of the server's components (connection pool, BCrypt pool, cache).
+ */
+public record ServerStats(long uptimeMillis, List<MethodStats> methods, List<String> components)
+        implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Latency figures are in milliseconds. storeMillis and bcryptMillis are the
+     * average time per call spent in the student store and in password hashing.
+     */
+    public record MethodStats(String method, long calls, long errors, Map<String, Long> errorsByCause,
+                              double meanMillis, double p50Millis, double p90Millis, double p99Millis,
+                              double p999Millis, double maxMillis, double storeMillis, double bcryptMillis)
+            implements Serializable {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * A table of the busiest methods first, followed by the component summaries.
+     */
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("Uptime %ds%n", uptimeMillis / 1000));
+        out.append(String.format("%-26s %9s %7s %8s %8s %8s %8s %9s %8s %8s  %s%n",
+                "method", "calls", "errors", "mean", "p50", "p99", "p99.9", "max", "store", "bcrypt", "error causes"));
+        methods.stream()
+                .sorted((a, b) -> Long.compare(b.calls(), a.calls()))
+                .forEach(m -> out.append(String.format("%-26s %9d %7d %8.3f %8.3f %8.3f %8.3f %9.3f %8.3f %8.3f  %s%n",
+                        m.method(), m.calls(), m.errors(), m.meanMillis(), m.p50Millis(), m.p99Millis(),
+                        m.p999Millis(), m.maxMillis(), m.storeMillis(), m.bcryptMillis(),
+                        m.errorsByCause().isEmpty() ? "" : m.errorsByCause())));
+        components.forEach(c -> out.append(c).append(System.lineSeparator()));
+        return out.toString();
+    }
+}
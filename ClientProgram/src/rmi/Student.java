@@ -0,0 +1,10 @@
+package rmi;
+
+import java.io.Serializable;
+
+/**
+ * A single student record as sent over RMI.
+ */
+public record Student(String id, String name, String course) implements Serializable {
+    private static final long serialVersionUID = 1L;
+}
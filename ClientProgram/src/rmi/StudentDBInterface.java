@@ -2,6 +2,7 @@ package rmi;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 public interface StudentDBInterface extends Remote {
     
@@ -14,5 +15,15 @@ public interface StudentDBInterface extends Remote {
     String update(String id, String newName, String newCourse) throws RemoteException;
     String delete(String id) throws RemoteException;
 
+    // Bulk variants, applied in one transaction; one result message per record
+    List<String> insertAll(List<Student> students) throws RemoteException;
+    List<String> updateAll(List<Student> students) throws RemoteException;
+    List<String> deleteAll(List<String> ids) throws RemoteException;
+
     public String getAllStudents() throws RemoteException;
+
+    // Streaming export: open a cursor, fetch pages of students until hasMore is false, then close
+    long openStudentCursor(int fetchSize) throws RemoteException;
+    StudentPage fetchStudents(long cursorId) throws RemoteException;
+    void closeStudentCursor(long cursorId) throws RemoteException;
 }
\ No newline at end of file
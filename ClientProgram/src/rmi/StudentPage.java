@@ -0,0 +1,12 @@
+package rmi;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * One chunk of student records fetched from a server-side cursor.
+ * hasMore is false once the cursor is exhausted; the server closes it at that point.
+ */
+public record StudentPage(List<Student> students, boolean hasMore) implements Serializable {
+    private static final long serialVersionUID = 1L;
+}
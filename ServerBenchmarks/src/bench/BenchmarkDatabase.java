@@ -0,0 +1,99 @@
+package bench;
+
+import rmi.Student;
+import server.DBConnection;
+import server.DBOperations;
+import server.MemoryStudentStore;
+import server.SchemaMigrator;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BenchmarkDatabase prepares the database the benchmarks run against.
+ * Unless -Ddb.url is given, an in-memory H2 database in PostgreSQL mode stands
+ * in for the real server, so the suite runs without a Postgres install.
+ */
+public final class BenchmarkDatabase {
+
+    public static final String DEFAULT_URL =
+            "jdbc:h2:mem:bench;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    public static final String USERNAME = "bench-user";
+    public static final String PASSWORD = "bench-password";
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Points ServerConfig at the stand-in database unless a real one was configured.
+     */
+    public static void configure() {
+        if (System.getProperty("db.url") == null) {
+            System.setProperty("db.url", DEFAULT_URL);
+            System.setProperty("db.user", "sa");
+            System.setProperty("db.password", "bench");
+        }
+    }
+
+    /**
+     * Opens DBOperations over an empty store of the given engine: "jdbc" for the
+     * configured database, "memory" for the in-process store.
+     */
+    public static DBOperations open(String engine) throws SQLException {
+        if ("memory".equals(engine)) {
+            return new DBOperations(new MemoryStudentStore());
+        }
+        configure();
+        DBConnection dbc = DBConnection.getDefault();
+        createSchema(dbc);
+        try (Connection conn = dbc.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM STUDENTS");
+        }
+        return new DBOperations(dbc);
+    }
+
+    /**
+     * Creates the tables the server expects by running the server's schema migrations.
+     */
+    public static void createSchema(DBConnection dbc) throws SQLException {
+        SchemaMigrator.migrate(dbc);
+    }
+
+    /**
+     * Adds rows generated students, ids 0 to rows - 1, to an empty store.
+     */
+    public static void seed(DBOperations dbo, int rows) {
+        List<Student> chunk = new ArrayList<>(10_000);
+        for (int i = 0; i < rows; i++) {
+            chunk.add(student(i));
+            if (chunk.size() == 10_000 || i == rows - 1) {
+                dbo.insertAll(chunk);
+                chunk.clear();
+            }
+        }
+    }
+
+    /**
+     * Registers the benchmark user if it does not exist yet.
+     */
+    public static void registerUser(DBOperations dbo) {
+        dbo.registerUser(USERNAME, PASSWORD);
+    }
+
+    public static Student student(long i) {
+        return new Student(id(i), "Student " + i, COURSES[(int) (i % COURSES.length)]);
+    }
+
+    public static String id(long i) {
+        return String.valueOf(i);
+    }
+
+    private static final String[] COURSES = {
+            "Computer Science", "Business IT", "Informatics", "Law", "Finance", "Actuarial Science"
+    };
+}
@@ -0,0 +1,134 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import server.DBConnection;
+import server.DBOperations;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process benchmarks of DBOperations, without RMI in the way.
+ * Each runs against the JDBC store and the in-memory store, which serves as
+ * the baseline for the database path.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class DBOperationsBenchmark {
+
+    static final int CRUD_ROWS = 10_000;
+
+    /**
+     * A table of CRUD_ROWS students plus a registered user, shared by all threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Crud {
+        @Param({"jdbc", "memory"})
+        String engine;
+
+        DBOperations dbo;
+        final AtomicLong nextId = new AtomicLong(CRUD_ROWS);
+        final ConcurrentLinkedQueue<String> deletable = new ConcurrentLinkedQueue<>();
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            dbo = BenchmarkDatabase.open(engine);
+            BenchmarkDatabase.seed(dbo, CRUD_ROWS);
+            BenchmarkDatabase.registerUser(dbo);
+        }
+
+        // Rows for the delete benchmark to remove, so it measures real deletes
+        @Setup(Level.Iteration)
+        public void refillDeletable() {
+            deletable.clear();
+            for (int i = 0; i < 50_000; i++) {
+                String id = BenchmarkDatabase.id(nextId.getAndIncrement());
+                dbo.insert(id, "To Delete", "Law");
+                deletable.add(id);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if ("jdbc".equals(engine)) {
+                System.out.println(DBConnection.getDefault().getStats());
+            }
+        }
+
+        String randomId() {
+            return BenchmarkDatabase.id(ThreadLocalRandom.current().nextInt(CRUD_ROWS));
+        }
+    }
+
+    /**
+     * A table of the given size, for the full-table export benchmark.
+     */
+    @State(Scope.Benchmark)
+    public static class Export {
+        @Param({"1000", "100000", "1000000"})
+        int rows;
+
+        @Param({"jdbc", "memory"})
+        String engine;
+
+        DBOperations dbo;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            dbo = BenchmarkDatabase.open(engine);
+            BenchmarkDatabase.seed(dbo, rows);
+        }
+    }
+
+    @Benchmark
+    public String select(Crud db) {
+        return db.dbo.select(db.randomId());
+    }
+
+    @Benchmark
+    public String insert(Crud db) {
+        long i = db.nextId.getAndIncrement();
+        return db.dbo.insert(BenchmarkDatabase.id(i), "New Student " + i, "Informatics");
+    }
+
+    @Benchmark
+    public String update(Crud db) {
+        return db.dbo.update(db.randomId(), "Updated Name", "Finance");
+    }
+
+    @Benchmark
+    public String delete(Crud db) {
+        String id = db.deletable.poll();
+        return db.dbo.delete(id != null ? id : "missing");
+    }
+
+    @Benchmark
+    public String login(Crud db) {
+        return db.dbo.loginUser(BenchmarkDatabase.USERNAME, BenchmarkDatabase.PASSWORD);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 3, time = 10)
+    public String getAllStudents(Export db) {
+        return db.dbo.getAllStudents();
+    }
+}
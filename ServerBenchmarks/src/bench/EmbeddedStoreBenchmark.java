@@ -0,0 +1,183 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import rmi.Student;
+import server.EmbeddedStudentStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Write throughput and startup recovery time of the embedded store at a million records.
+ * Data directories are created under java.io.tmpdir and removed afterwards.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dstore.snapshot.intervalMillis=0", "-Dstore.snapshot.onClose=false"})
+public class EmbeddedStoreBenchmark {
+
+    static final int ROWS = 1_000_000;
+    static final int BATCH = 1_000;
+
+    /**
+     * A fresh, empty data directory for each invocation.
+     */
+    @State(Scope.Thread)
+    public static class EmptyStore {
+        Path dir;
+        EmbeddedStudentStore store;
+
+        @Setup(Level.Invocation)
+        public void setUp() throws IOException {
+            dir = Files.createTempDirectory("bench-store");
+            store = new EmbeddedStudentStore(dir);
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() throws IOException {
+            System.out.println(store.getStats());
+            store.close();
+            delete(dir);
+        }
+    }
+
+    /**
+     * A directory holding ROWS students, recovered either by replaying the whole log
+     * or from a snapshot. Each invocation recovers a fresh copy of it.
+     */
+    @State(Scope.Benchmark)
+    public static class Recovery {
+        @Param({"log", "snapshot"})
+        String source;
+
+        Path pristine;
+        Path dir;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            pristine = Files.createTempDirectory("bench-store-pristine");
+            try (EmbeddedStudentStore store = new EmbeddedStudentStore(pristine)) {
+                load(store);
+                if ("snapshot".equals(source)) {
+                    store.snapshot();
+                }
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void copy() throws IOException {
+            dir = Files.createTempDirectory("bench-store");
+            try (Stream<Path> files = Files.list(pristine)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.copy(file, dir.resolve(file.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void deleteCopy() throws IOException {
+            delete(dir);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            delete(pristine);
+        }
+    }
+
+    /**
+     * A live store that single-record inserts go to.
+     */
+    @State(Scope.Benchmark)
+    public static class Live {
+        Path dir;
+        EmbeddedStudentStore store;
+        final AtomicLong nextId = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            dir = Files.createTempDirectory("bench-store");
+            store = new EmbeddedStudentStore(dir);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            System.out.println(store.getStats());
+            store.close();
+            delete(dir);
+        }
+    }
+
+    /**
+     * Bulk load: ROWS students in batches of BATCH, each batch one synced log frame.
+     */
+    @Benchmark
+    public int load1M(EmptyStore s) throws SQLException {
+        return load(s.store);
+    }
+
+    @Benchmark
+    public int recover1M(Recovery r) throws IOException {
+        try (EmbeddedStudentStore store = new EmbeddedStudentStore(r.dir)) {
+            return store.getStudentCount();
+        }
+    }
+
+    /**
+     * Single-record inserts from 8 threads, so writers share log syncs (group commit).
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 3, time = 10)
+    @Threads(8)
+    public int insert(Live s) throws SQLException {
+        long i = s.nextId.getAndIncrement();
+        return s.store.insertStudent(BenchmarkDatabase.student(i));
+    }
+
+    static int load(EmbeddedStudentStore store) throws SQLException {
+        List<Student> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < ROWS; i++) {
+            batch.add(BenchmarkDatabase.student(i));
+            if (batch.size() == BATCH) {
+                store.insertAll(batch);
+                batch.clear();
+            }
+        }
+        return store.getStudentCount();
+    }
+
+    static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
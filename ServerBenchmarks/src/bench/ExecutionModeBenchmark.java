@@ -0,0 +1,109 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import rmi.CallLimiter;
+import rmi.StudentDBImpl;
+import rmi.StudentDBInterface;
+import server.DBConnection;
+import server.DBOperations;
+import server.ServerConfig;
+
+import java.rmi.Remote;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selects through RMI from more client threads than the pool has connections, with
+ * server.executionMode platform (every call borrows at once) and limited (at most
+ * server.maxConcurrency calls run, the rest wait in the CallLimiter). Each query holds
+ * its connection for rttMicros, as in SelectBatchBenchmark, so the pool is the
+ * bottleneck; select batching and the select cache are off so only the execution
+ * mode differs.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(64)
+@Fork(1)
+public class ExecutionModeBenchmark {
+
+    static final int ROWS = 10_000;
+
+    @State(Scope.Benchmark)
+    public static class Server {
+        @Param({"platform", "limited"})
+        String executionMode;
+
+        @Param({"0", "500"})
+        long rttMicros;
+
+        DBOperations dbo;
+        StudentDBImpl impl;
+        CallLimiter limiter;
+        Remote exported;
+        Registry registry;
+        StudentDBInterface stub;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            System.setProperty("select.batch.enabled", "false");
+            System.setProperty("cache.enabled", "false");
+            System.setProperty("server.executionMode", executionMode);
+            BenchmarkDatabase.configure();
+            DBConnection dbc = DBConnection.getDefault();
+            BenchmarkDatabase.createSchema(dbc);
+            try (Connection conn = dbc.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM STUDENTS");
+            }
+            dbo = new DBOperations(new SelectBatchBenchmark.RoundTripStore(dbc, rttMicros * 1_000));
+            BenchmarkDatabase.seed(dbo, ROWS);
+
+            // Exported the way ServerProgram does it for the configured mode
+            impl = new StudentDBImpl(dbo);
+            exported = impl;
+            if ("limited".equals(ServerConfig.executionMode())) {
+                limiter = new CallLimiter(ServerConfig.maxConcurrency());
+                UnicastRemoteObject.unexportObject(impl, true);
+                exported = limiter.exportObject(impl);
+            }
+            int port = Integer.getInteger("bench.rmiPort", 1199);
+            registry = LocateRegistry.createRegistry(port);
+            registry.rebind("StudentDBService", exported);
+            stub = (StudentDBInterface) LocateRegistry.getRegistry("localhost", port).lookup("StudentDBService");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            if (limiter != null) System.out.println(limiter.getStats());
+            dbo.getComponentStats().forEach(System.out::println);
+            registry.unbind("StudentDBService");
+            UnicastRemoteObject.unexportObject(exported, true);
+            UnicastRemoteObject.unexportObject(registry, true);
+        }
+    }
+
+    @Benchmark
+    public String select(Server s) throws Exception {
+        return s.stub.select(BenchmarkDatabase.id(ThreadLocalRandom.current().nextInt(ROWS)));
+    }
+}
@@ -0,0 +1,134 @@
+package bench;
+
+import client.utils.PDFGenerator;
+import client.utils.StudentPages;
+import rmi.Student;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PDF report throughput in students per second, for a report of ROWS students: the
+ * old way (the whole report as one string, a paragraph per line), streamed into a
+ * table, and split into one section per course rendered in parallel.
+ *
+ * Students come from generated pages instead of the server, so only the PDF side is
+ * measured. After each iteration the peak heap use is printed; it includes garbage
+ * not yet collected, so compare it between benchmarks run with the same -Xmx.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512m")
+public class PdfReportBenchmark {
+
+    static final int ROWS = 100_000;
+    static final int PAGE_SIZE = 500;
+    static final int COURSES = 6; // as in BenchmarkDatabase
+
+    @State(Scope.Benchmark)
+    public static class Report {
+        Path file;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            file = Files.createTempFile("bench-report-", ".pdf");
+        }
+
+        @Setup(Level.Iteration)
+        public void resetPeak() {
+            System.gc();
+            heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+        }
+
+        @TearDown(Level.Iteration)
+        public void printPeak() throws IOException {
+            long peak = heapPools().stream().mapToLong(p -> p.getPeakUsage().getUsed()).sum();
+            System.out.printf("peak heap %.1f MB, report %.1f MB%n", peak / 1048576.0, Files.size(file) / 1048576.0);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * The report text built as the GUI used to, then written a paragraph per line.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void text(Report r) throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (long i = 0; i < ROWS; i++) {
+            Student s = BenchmarkDatabase.student(i);
+            text.append("ID: ").append(s.id()).append(", ");
+            text.append("Name: ").append(s.name()).append(", ");
+            text.append("Course: ").append(s.course()).append("\n");
+        }
+        PDFGenerator.generateReport(text.toString(), r.file.toString());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long streamed(Report r) throws Exception {
+        return PDFGenerator.generateReport("Students", pages(0, 1), r.file.toString());
+    }
+
+    @State(Scope.Benchmark)
+    public static class Sections {
+        @Param({"1", "4"})
+        int parallelism;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long byCourse(Report r, Sections s) throws Exception {
+        List<PDFGenerator.Section> sections = new ArrayList<>();
+        for (int c = 0; c < COURSES; c++) {
+            sections.add(new PDFGenerator.Section(BenchmarkDatabase.student(c).course(), pages(c, COURSES)));
+        }
+        return PDFGenerator.generateReport(sections, r.file.toString(), s.parallelism);
+    }
+
+    // Students first, first + step, ... below ROWS, PAGE_SIZE at a time
+    static StudentPages pages(long first, int step) {
+        long[] next = {first};
+        return () -> {
+            List<Student> page = new ArrayList<>(PAGE_SIZE);
+            for (; page.size() < PAGE_SIZE && next[0] < ROWS; next[0] += step) {
+                page.add(BenchmarkDatabase.student(next[0]));
+            }
+            return page;
+        };
+    }
+
+    static List<MemoryPoolMXBean> heapPools() {
+        return ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(p -> p.getType() == MemoryType.HEAP)
+                .toList();
+    }
+}
@@ -0,0 +1,139 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import rmi.StudentDBImpl;
+import rmi.StudentDBInterface;
+import server.DBOperations;
+
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The same operations as DBOperationsBenchmark, called through a real RMI stub
+ * over loopback, so serialization and transport costs are included.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class RmiBenchmark {
+
+    static final int CRUD_ROWS = 10_000;
+
+    /**
+     * A StudentDBImpl exported on a private registry, and a stub looked up from it.
+     */
+    abstract static class Server {
+        Registry registry;
+        StudentDBImpl impl;
+        StudentDBInterface stub;
+        final AtomicLong nextId = new AtomicLong();
+        int rows;
+
+        void start(int rows) throws Exception {
+            this.rows = rows;
+            DBOperations dbo = BenchmarkDatabase.open("jdbc");
+            BenchmarkDatabase.seed(dbo, rows);
+            BenchmarkDatabase.registerUser(dbo);
+            nextId.set(rows);
+
+            int port = Integer.getInteger("bench.rmiPort", 1199);
+            impl = new StudentDBImpl(dbo);
+            registry = LocateRegistry.createRegistry(port);
+            registry.rebind("StudentDBService", impl);
+            stub = (StudentDBInterface) LocateRegistry.getRegistry("localhost", port).lookup("StudentDBService");
+        }
+
+        void stop() throws Exception {
+            registry.unbind("StudentDBService");
+            UnicastRemoteObject.unexportObject(impl, true);
+            UnicastRemoteObject.unexportObject(registry, true);
+        }
+
+        String randomId() {
+            return BenchmarkDatabase.id(ThreadLocalRandom.current().nextInt(rows));
+        }
+    }
+
+    /**
+     * Server with CRUD_ROWS students, for the point operations.
+     */
+    @State(Scope.Benchmark)
+    public static class Crud extends Server {
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            start(CRUD_ROWS);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            stop();
+        }
+    }
+
+    /**
+     * Server with a table of the given size, for the full-table export.
+     */
+    @State(Scope.Benchmark)
+    public static class Export extends Server {
+        @Param({"1000", "100000", "1000000"})
+        int size;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            start(size);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws Exception {
+            stop();
+        }
+    }
+
+    @Benchmark
+    public String select(Crud s) throws Exception {
+        return s.stub.select(s.randomId());
+    }
+
+    @Benchmark
+    public String insertThenDelete(Crud s) throws Exception {
+        String id = BenchmarkDatabase.id(s.nextId.getAndIncrement());
+        s.stub.insert(id, "New Student", "Informatics");
+        return s.stub.delete(id);
+    }
+
+    @Benchmark
+    public String update(Crud s) throws Exception {
+        return s.stub.update(s.randomId(), "Updated Name", "Finance");
+    }
+
+    @Benchmark
+    public String login(Crud s) throws Exception {
+        return s.stub.loginUser(BenchmarkDatabase.USERNAME, BenchmarkDatabase.PASSWORD);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 2, time = 5)
+    @Measurement(iterations = 3, time = 10)
+    public String getAllStudents(Export s) throws Exception {
+        return s.stub.getAllStudents();
+    }
+}
@@ -0,0 +1,122 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import rmi.Student;
+import server.DBConnection;
+import server.DBOperations;
+import server.JdbcStudentStore;
+import server.ServerConfig;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Selects by id from many threads at once, each looked up on its own and in batches
+ * (select.batch.enabled). The in-process H2 database answers without a network round
+ * trip, which is what batching saves, so one is simulated: every query holds one of
+ * db.pool.maxSize permits for rttMicros. Use rttMicros=0 against a real database.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Threads(64)
+@Fork(1)
+public class SelectBatchBenchmark {
+
+    static final int ROWS = 100_000;
+
+    @State(Scope.Benchmark)
+    public static class Lookups {
+        @Param({"false", "true"})
+        boolean batching;
+
+        @Param({"0", "500", "2000"})
+        long rttMicros;
+
+        DBOperations dbo;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            System.setProperty("select.batch.enabled", String.valueOf(batching));
+            BenchmarkDatabase.configure();
+            DBConnection dbc = DBConnection.getDefault();
+            BenchmarkDatabase.createSchema(dbc);
+            try (Connection conn = dbc.getConnection();
+                 Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM STUDENTS");
+            }
+            dbo = new DBOperations(new RoundTripStore(dbc, rttMicros * 1_000));
+            BenchmarkDatabase.seed(dbo, ROWS);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            dbo.getComponentStats().forEach(System.out::println);
+        }
+    }
+
+    /**
+     * A JDBC store whose lookups take at least rttNanos with a connection held.
+     */
+    static final class RoundTripStore extends JdbcStudentStore {
+        private final long rttNanos;
+        private final Semaphore connections = new Semaphore(ServerConfig.poolMaxSize());
+
+        RoundTripStore(DBConnection dbc, long rttNanos) {
+            super(dbc);
+            this.rttNanos = rttNanos;
+        }
+
+        @Override
+        public Optional<Student> findStudent(String studentId) throws SQLException {
+            roundTrip();
+            try {
+                return super.findStudent(studentId);
+            } finally {
+                connections.release();
+            }
+        }
+
+        @Override
+        public Map<String, Student> findStudents(Collection<String> studentIds) throws SQLException {
+            roundTrip();
+            try {
+                return super.findStudents(studentIds);
+            } finally {
+                connections.release();
+            }
+        }
+
+        private void roundTrip() {
+            connections.acquireUninterruptibly();
+            if (rttNanos > 0) LockSupport.parkNanos(rttNanos);
+        }
+    }
+
+    @Benchmark
+    public Optional<Student> findStudent(Lookups db) throws SQLException {
+        return db.dbo.findStudent(BenchmarkDatabase.id(ThreadLocalRandom.current().nextInt(ROWS)));
+    }
+}
@@ -0,0 +1,126 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import rmi.Student;
+import server.DBOperations;
+import server.MemoryStudentStore;
+import server.ShardedStudentStore;
+import server.StudentStore;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * How throughput grows with the number of shards. Each shard stands for one database
+ * server: an in-memory store behind a gate that lets CONNECTIONS calls in at a time and
+ * holds each for serviceMicros, the way a pool of that size in front of a server with
+ * that statement latency would. With serviceMicros = 0 the shards are plain memory
+ * stores, which shows what the routing itself costs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ShardedStoreBenchmark {
+
+    static final int ROWS = 100_000;
+    static final int CONNECTIONS = 4;
+
+    @State(Scope.Benchmark)
+    public static class Shards {
+        @Param({"1", "2", "4", "8"})
+        int shards;
+
+        @Param({"0", "500"})
+        long serviceMicros;
+
+        ShardedStudentStore store;
+        DBOperations dbo;
+        final AtomicLong nextId = new AtomicLong(ROWS);
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Map<String, StudentStore> stores = new LinkedHashMap<>();
+            for (int i = 0; i < shards; i++) {
+                stores.put("shard" + i, limited(new MemoryStudentStore(), CONNECTIONS, serviceMicros));
+            }
+            store = new ShardedStudentStore(stores, 128);
+            dbo = new DBOperations(store);
+            BenchmarkDatabase.seed(dbo, ROWS);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            System.out.println(store.getStats());
+        }
+
+        String randomId() {
+            return BenchmarkDatabase.id(ThreadLocalRandom.current().nextInt(ROWS));
+        }
+    }
+
+    /**
+     * Wraps store so that at most connections calls run at once, each taking at least serviceMicros.
+     */
+    static StudentStore limited(StudentStore store, int connections, long serviceMicros) {
+        if (serviceMicros <= 0) return store;
+        Semaphore gate = new Semaphore(connections, true);
+        return (StudentStore) Proxy.newProxyInstance(StudentStore.class.getClassLoader(),
+                new Class<?>[]{StudentStore.class}, (proxy, method, args) -> {
+                    gate.acquire();
+                    try {
+                        LockSupport.parkNanos(serviceMicros * 1_000);
+                        return method.invoke(store, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    } finally {
+                        gate.release();
+                    }
+                });
+    }
+
+    @Benchmark
+    @Threads(32)
+    public Optional<Student> select(Shards s) throws SQLException {
+        return s.store.findStudent(s.randomId());
+    }
+
+    @Benchmark
+    @Threads(32)
+    public int insert(Shards s) throws SQLException {
+        long i = s.nextId.getAndIncrement();
+        return s.store.insertStudent(BenchmarkDatabase.student(i));
+    }
+
+    /**
+     * The whole table through one scatter-gather cursor, read by a single caller.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public String getAllStudents(Shards s) {
+        return s.dbo.getAllStudents();
+    }
+}
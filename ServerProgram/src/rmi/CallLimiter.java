@@ -0,0 +1,94 @@
+package rmi;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CallLimiter bounds how many remote calls run at once. A fair semaphore sized like the
+ * connection pool is taken on the RMI thread before the call runs, so calls beyond the
+ * bound wait in arrival order without borrowing a connection, instead of all of them
+ * competing for the pool and timing out there. All remote objects exported through one
+ * limiter share the bound.
+ */
+public class CallLimiter {
+
+    private final Semaphore permits;
+    private final int maxConcurrency;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder totalQueueNanos = new LongAdder();
+
+    public CallLimiter(int maxConcurrency) {
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.permits = new Semaphore(this.maxConcurrency, true);
+    }
+
+    /**
+     * Exports a stub for target whose calls go through this limiter.
+     * The stub implements every remote interface of target, which itself should
+     * not be bound in the registry.
+     */
+    public Remote exportObject(Remote target) throws RemoteException {
+        InvocationHandler handler = (proxy, method, args) -> call(target, proxy, method, args);
+        Class<?>[] remoteInterfaces = Arrays.stream(target.getClass().getInterfaces())
+                .filter(Remote.class::isAssignableFrom)
+                .toArray(Class<?>[]::new);
+        Remote proxy = (Remote) Proxy.newProxyInstance(
+                target.getClass().getClassLoader(),
+                remoteInterfaces,
+                handler);
+        UnicastRemoteObject.exportObject(proxy, 0);
+        return proxy;
+    }
+
+    private Object call(Remote target, Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "CallLimiter[" + target + "]";
+            }
+        }
+
+        long arrived = System.nanoTime();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Call interrupted.");
+        }
+        totalQueueNanos.add(System.nanoTime() - arrived);
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        } finally {
+            permits.release();
+            calls.increment();
+            totalNanos.add(System.nanoTime() - arrived);
+        }
+    }
+
+    /**
+     * One-line summary of the limiter, useful for logging.
+     */
+    public String getStats() {
+        long n = calls.sum();
+        return String.format("CallLimiter[maxConcurrency=%d, inUse=%d, waiting=%d, calls=%d, avgLatency=%.2fms, avgQueue=%.2fms]",
+                maxConcurrency, maxConcurrency - permits.availablePermits(), permits.getQueueLength(), n,
+                n == 0 ? 0.0 : totalNanos.sum() / (n * 1_000_000.0),
+                n == 0 ? 0.0 : totalQueueNanos.sum() / (n * 1_000_000.0));
+    }
+}
@@ -0,0 +1,140 @@
+package rmi;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.NoSuchObjectException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import server.DBConnection;
+import server.ServerConfig;
+
+/**
+ * ClientSessions gives each client that asks for one a remote object of its own,
+ * so the server can tell its calls apart. Calls through a session run with the
+ * session's {@link DBConnection.Session} bound to the thread, which keeps its reads
+ * off replicas that have not yet replayed its writes.
+ *
+ * Session objects are exported like the service itself (see {@link Exporter}) and
+ * unexported once unused for server.sessionIdleTimeoutMillis; a client calling a
+ * closed session gets a NoSuchObjectException and opens a new one.
+ */
+public class ClientSessions {
+
+    /**
+     * How the server exports its remote objects: timed, behind the call limiter, or plain.
+     */
+    public interface Exporter {
+        Exported export(Remote target) throws RemoteException;
+    }
+
+    /**
+     * A remote object as exported, which is target or a proxy over it, and the stub to
+     * hand to clients. Unexporting takes the object, not the stub.
+     */
+    public record Exported(Remote object, Remote stub) {
+    }
+
+    private final Remote target;
+    private final long idleTimeoutMillis = ServerConfig.sessionIdleTimeoutMillis();
+    private final Map<Remote, Binding> open = new ConcurrentHashMap<>();
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final ScheduledExecutorService reaper;
+    private volatile Exporter exporter = target -> new Exported(target, UnicastRemoteObject.exportObject(target, 0));
+
+    public ClientSessions(Remote target) {
+        this.target = target;
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "session-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1_000L, Math.min(idleTimeoutMillis / 2, 60_000L));
+        reaper.scheduleWithFixedDelay(this::closeIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public void setExporter(Exporter exporter) {
+        this.exporter = exporter;
+    }
+
+    /**
+     * Exports a new session over the target.
+     * @param readYourWrites whether reads in this session must see its own earlier writes.
+     */
+    public StudentDBInterfaceV2 open(boolean readYourWrites) throws RemoteException {
+        Binding binding = new Binding(readYourWrites ? new DBConnection.Session() : null);
+        Remote session = (Remote) Proxy.newProxyInstance(
+                target.getClass().getClassLoader(),
+                new Class<?>[]{StudentDBInterface.class, StudentDBInterfaceV2.class},
+                binding);
+        Exported exported = exporter.export(session);
+        open.put(exported.object(), binding);
+        opened.increment();
+        return (StudentDBInterfaceV2) exported.stub();
+    }
+
+    private void closeIdle() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        open.entrySet().removeIf(entry -> {
+            if (entry.getValue().lastUsed >= cutoff) return false;
+            try {
+                UnicastRemoteObject.unexportObject(entry.getKey(), true);
+                expired.increment();
+            } catch (NoSuchObjectException e) {
+                // Only this reaper unexports sessions, so the object was never the exported one
+                System.err.println("Session was not exported, cannot close it: " + entry.getKey());
+            }
+            return true;
+        });
+    }
+
+    /**
+     * One-line summary of the sessions, useful for logging.
+     */
+    public String getStats() {
+        return String.format("Sessions[open=%d, opened=%d, expired=%d]", open.size(), opened.sum(), expired.sum());
+    }
+
+    // Runs each call of one session against the target with the session bound
+    private final class Binding implements InvocationHandler {
+        private final DBConnection.Session session;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        Binding(DBConnection.Session session) {
+            this.session = session;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return "ClientSession[" + target + "]";
+                }
+            }
+
+            lastUsed = System.currentTimeMillis();
+            DBConnection.Session previous = DBConnection.bindSession(session);
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                DBConnection.bindSession(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package rmi;
+
+import java.rmi.RemoteException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import server.LatencyHistogram;
+import server.ServerConfig;
+
+/**
+ * InvalidationHub tells subscribed clients which students changed, so they can keep
+ * near caches of students. Changed ids are collected and sent every
+ * invalidation.intervalMillis, an id changed several times in one interval once. Each
+ * subscriber is called on a virtual thread of its own; while a call to a slow
+ * subscriber is in progress its ids keep coalescing. A subscriber that fails a call is
+ * dropped; the gap in sequence numbers or missing heartbeats tell it to start over.
+ */
+public class InvalidationHub {
+
+    /**
+     * One subscribed listener.
+     */
+    private final class Subscriber {
+        final InvalidationListener listener;
+        final String source;
+        long sequence;            // guarded by this
+        Set<String> ids = new HashSet<>();
+        boolean all;
+        long oldestChange;        // 0 when nothing is waiting
+        long lastSent = System.currentTimeMillis();
+        boolean sending;
+        volatile boolean dropped;
+
+        Subscriber(InvalidationListener listener, long id) {
+            this.listener = listener;
+            this.source = instance + ":" + id;
+        }
+
+        synchronized void add(Set<String> changed, boolean everything, long oldest) {
+            if (everything || ids.size() + changed.size() > maxIds) {
+                all = true;
+                ids.clear();
+            } else if (!all) {
+                ids.addAll(changed);
+            }
+            if (oldestChange == 0 || oldest < oldestChange) oldestChange = oldest;
+        }
+
+        // Starts a sender unless one is running or there is nothing to send
+        synchronized void flush(long now, boolean heartbeatDue) {
+            if (sending || dropped) return;
+            if (oldestChange == 0 && !heartbeatDue) return;
+            sending = true;
+            Thread.ofVirtual().name("invalidation-push").start(this::send);
+        }
+
+        private void send() {
+            while (true) {
+                InvalidationBatch batch;
+                long oldest;
+                synchronized (this) {
+                    if (dropped || (oldestChange == 0 && sequence > 0
+                            && System.currentTimeMillis() - lastSent < heartbeatMillis)) {
+                        sending = false;
+                        return;
+                    }
+                    oldest = oldestChange;
+                    batch = new InvalidationBatch(source, ++sequence, all, List.copyOf(ids), oldest);
+                    ids = new HashSet<>();
+                    all = false;
+                    oldestChange = 0;
+                    lastSent = System.currentTimeMillis();
+                }
+                try {
+                    listener.invalidated(batch);
+                    batches.increment();
+                    idsSent.add(batch.ids().size());
+                    if (oldest > 0) {
+                        lag.record(TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - oldest));
+                    }
+                } catch (RemoteException e) {
+                    synchronized (this) {
+                        dropped = true;
+                        sending = false;
+                    }
+                    subscribers.remove(listener, this);
+                    droppedCount.increment();
+                    System.err.println("Dropping invalidation subscriber " + source + ": " + e.getMessage());
+                    return;
+                }
+            }
+        }
+    }
+
+    // Tells this server's subscriptions apart from those of other nodes and earlier runs
+    private final String instance = UUID.randomUUID().toString().substring(0, 8);
+    private final long heartbeatMillis = ServerConfig.invalidationHeartbeatMillis();
+    private final int maxIds = Math.max(1, ServerConfig.invalidationMaxIds());
+    private final Map<InvalidationListener, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong nextSubscription = new AtomicLong(1);
+
+    // Ids changed since the last flush
+    private final Set<String> changed = ConcurrentHashMap.newKeySet();
+    private final AtomicLong oldestChange = new AtomicLong();
+
+    private final LongAdder events = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder idsSent = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final ScheduledExecutorService flusher;
+
+    public InvalidationHub() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "invalidation-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        long interval = Math.max(1L, ServerConfig.invalidationIntervalMillis());
+        flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts, or restarts, pushing invalidations to listener. Its first batch, an empty
+     * one, is sent right away.
+     */
+    public void subscribe(InvalidationListener listener) {
+        Subscriber subscriber = new Subscriber(listener, nextSubscription.getAndIncrement());
+        Subscriber previous = subscribers.put(listener, subscriber);
+        if (previous != null) {
+            synchronized (previous) {
+                previous.dropped = true;
+            }
+        }
+        subscriber.flush(System.currentTimeMillis(), true);
+    }
+
+    public void unsubscribe(InvalidationListener listener) {
+        Subscriber subscriber = subscribers.remove(listener);
+        if (subscriber != null) {
+            synchronized (subscriber) {
+                subscriber.dropped = true;
+            }
+        }
+    }
+
+    /**
+     * Records that a student changed; subscribers hear of it with the next flush.
+     */
+    public void changed(String id) {
+        events.increment();
+        if (subscribers.isEmpty()) return;
+        oldestChange.compareAndSet(0, System.currentTimeMillis());
+        changed.add(id);
+    }
+
+    private synchronized void flush() {
+        long now = System.currentTimeMillis();
+        long oldest = oldestChange.getAndSet(0);
+        // Removed one by one, so an id added meanwhile is sent now or with the next flush
+        Set<String> ids = new HashSet<>();
+        for (String id : changed) {
+            if (changed.remove(id)) ids.add(id);
+        }
+        if (!ids.isEmpty() && oldest == 0) oldest = now;
+        for (Subscriber subscriber : subscribers.values()) {
+            boolean heartbeatDue;
+            synchronized (subscriber) {
+                if (!ids.isEmpty()) subscriber.add(ids, false, oldest);
+                heartbeatDue = now - subscriber.lastSent >= heartbeatMillis;
+            }
+            subscriber.flush(now, heartbeatDue);
+        }
+    }
+
+    /**
+     * One-line summary of the invalidations, useful for logging.
+     */
+    public String getStats() {
+        return String.format("Invalidations[subscribers=%d, changes=%d, batches=%d, idsSent=%d, dropped=%d, "
+                        + "lag avg=%.1fms p99=%.1fms max=%.1fms]",
+                subscribers.size(), events.sum(), batches.sum(), idsSent.sum(), droppedCount.sum(),
+                lag.getMeanMillis(), lag.getPercentileMillis(99), lag.getMaxMillis());
+    }
+}
@@ -0,0 +1,74 @@
+package rmi;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.rmi.Remote;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import server.RequestMetrics;
+
+/**
+ * MetricsInterceptor times every remote call made through it and records the
+ * result in RequestMetrics under the method's name. The metrics of each method
+ * are looked up once, when the proxy is created, so a call only pays for two
+ * clock reads and a few counter increments.
+ *
+ * RMI unmarshals arguments before and marshals results after the method runs,
+ * so serialization is not part of the measured time.
+ */
+public class MetricsInterceptor implements InvocationHandler {
+
+    private final Remote target;
+    private final Map<Method, RequestMetrics.MethodMetrics> metricsByMethod = new HashMap<>();
+
+    private MetricsInterceptor(Remote target, Class<?>[] remoteInterfaces, RequestMetrics metrics) {
+        this.target = target;
+        for (Class<?> remoteInterface : remoteInterfaces) {
+            for (Method method : remoteInterface.getMethods()) {
+                metricsByMethod.put(method, metrics.forMethod(method.getName()));
+            }
+        }
+    }
+
+    /**
+     * Wraps target in a proxy implementing its remote interfaces. The proxy is not
+     * exported; export it, or hand it to CallLimiter, in place of target.
+     */
+    public static Remote wrap(Remote target, RequestMetrics metrics) {
+        Class<?>[] remoteInterfaces = Arrays.stream(target.getClass().getInterfaces())
+                .filter(Remote.class::isAssignableFrom)
+                .toArray(Class<?>[]::new);
+        return (Remote) Proxy.newProxyInstance(
+                target.getClass().getClassLoader(),
+                remoteInterfaces,
+                new MetricsInterceptor(target, remoteInterfaces, metrics));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        RequestMetrics.MethodMetrics metrics = metricsByMethod.get(method);
+        if (metrics == null) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "MetricsInterceptor[" + target + "]";
+            }
+        }
+
+        long start = RequestMetrics.begin();
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            RequestMetrics.recordError(RequestMetrics.ErrorCause.EXCEPTION);
+            throw e.getCause();
+        } finally {
+            metrics.end(start);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package rmi;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Result of a typed (v2) remote call: a result code, a number whose meaning
+ * depends on the call (rows affected, failed login attempts), and an optional
+ * detail message that is only sent when something went wrong.
+ * Written by hand so a result costs a few bytes on the wire.
+ */
+public final class OpResult implements Externalizable {
+    private static final long serialVersionUID = 1L;
+
+    private ResultCode code;
+    private int count;
+    private String detail;
+
+    // Needed for Externalizable
+    public OpResult() {
+    }
+
+    public OpResult(ResultCode code, int count, String detail) {
+        this.code = code;
+        this.count = count;
+        this.detail = detail;
+    }
+
+    public static OpResult ok(int count) {
+        return new OpResult(ResultCode.OK, count, null);
+    }
+
+    public static OpResult of(ResultCode code, String detail) {
+        return new OpResult(code, 0, detail);
+    }
+
+    public ResultCode code() {
+        return code;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public String detail() {
+        return detail;
+    }
+
+    public boolean isOk() {
+        return code == ResultCode.OK;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        out.writeByte(code.ordinal());
+        out.writeInt(count);
+        out.writeBoolean(detail != null);
+        if (detail != null) out.writeUTF(detail);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        code = ResultCode.fromOrdinal(in.readUnsignedByte());
+        count = in.readInt();
+        detail = in.readBoolean() ? in.readUTF() : null;
+    }
+
+    @Override
+    public String toString() {
+        return code + (count != 0 ? " (" + count + ")" : "") + (detail != null ? ": " + detail : "");
+    }
+}
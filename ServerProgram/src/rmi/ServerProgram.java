@@ -1,22 +1,67 @@
 package rmi;
 
+import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.rmi.server.ExportException;
+import java.rmi.server.RemoteObject;
+import java.rmi.server.UnicastRemoteObject;
+import server.ServerConfig;
 
 public class ServerProgram {
     public static void main(String[] args) {
         try {
+            // The host name clients should use to reach this node; must be set before anything is exported
+            if (!ServerConfig.serverHost().isEmpty()) {
+                System.setProperty("java.rmi.server.hostname", ServerConfig.serverHost());
+            }
+
             // Create an instance of the remote object
             StudentDBImpl dbImpl = new StudentDBImpl();
+            Remote service = dbImpl;
+
+            // Optionally bound how many remote calls run at once ("virtual" is the mode's former name)
+            CallLimiter limiter = null;
+            String mode = ServerConfig.executionMode();
+            if ("limited".equalsIgnoreCase(mode) || "virtual".equalsIgnoreCase(mode)) {
+                limiter = new CallLimiter(ServerConfig.maxConcurrency());
+                System.out.println("Running at most " + ServerConfig.maxConcurrency() + " calls at once.");
+            }
+
+            // The service and every client session are exported alike: each call is timed,
+            // then waits for the limiter if there is one
+            CallLimiter calls = limiter;
+            ClientSessions.Exporter exporter = target -> {
+                Remote timed = ServerConfig.metricsEnabled()
+                        ? MetricsInterceptor.wrap(target, dbImpl.getMetrics())
+                        : target;
+                if (calls != null) {
+                    Remote exported = calls.exportObject(timed);
+                    return new ClientSessions.Exported(exported, RemoteObject.toStub(exported));
+                }
+                return new ClientSessions.Exported(timed, UnicastRemoteObject.exportObject(timed, 0));
+            };
+            dbImpl.setExporter(exporter);
+            if (limiter != null || ServerConfig.metricsEnabled()) {
+                UnicastRemoteObject.unexportObject(dbImpl, true);
+                service = exporter.export(dbImpl).stub();
+            }
 
-            // Start the RMI registry on port 1099
-            Registry registry = LocateRegistry.createRegistry(1099);
+            // Start the RMI registry on server.port, or join the one another node on this machine started
+            int port = ServerConfig.serverPort();
+            Registry registry;
+            try {
+                registry = LocateRegistry.createRegistry(port);
+            } catch (ExportException e) {
+                registry = LocateRegistry.getRegistry(port);
+            }
 
             // Bind the remote object to the registry
-            registry.rebind("StudentDBService", dbImpl);
+            registry.rebind(ServerConfig.serviceName(), service);
 
-            System.out.println("RMI Server is running...");
+            String host = ServerConfig.serverHost().isEmpty() ? "localhost" : ServerConfig.serverHost();
+            System.out.println("RMI Server is running at rmi://" + host + ":" + port + "/" + ServerConfig.serviceName());
         } catch (RemoteException ex) {
             System.err.println("Server error: " + ex.getMessage());
         }
@@ -0,0 +1,82 @@
+package rmi;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A page of students in a compact binary form with no per-record object headers.
+ * Course names repeat across many students, so each distinct course is written
+ * once and records refer to it by index.
+ */
+public final class StudentBatch implements Externalizable {
+    private static final long serialVersionUID = 1L;
+
+    private List<Student> students;
+    private boolean hasMore;
+
+    // Needed for Externalizable
+    public StudentBatch() {
+    }
+
+    public StudentBatch(List<Student> students, boolean hasMore) {
+        this.students = students;
+        this.hasMore = hasMore;
+    }
+
+    public List<Student> students() {
+        return students;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        Map<String, Integer> courses = new LinkedHashMap<>();
+        for (Student s : students) {
+            courses.putIfAbsent(s.course(), courses.size());
+        }
+
+        out.writeBoolean(hasMore);
+        out.writeInt(courses.size());
+        for (String course : courses.keySet()) {
+            writeNullable(out, course);
+        }
+        out.writeInt(students.size());
+        for (Student s : students) {
+            writeNullable(out, s.id());
+            writeNullable(out, s.name());
+            out.writeShort(courses.get(s.course()));
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        hasMore = in.readBoolean();
+        String[] courses = new String[in.readInt()];
+        for (int i = 0; i < courses.length; i++) {
+            courses[i] = readNullable(in);
+        }
+        int n = in.readInt();
+        students = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            students.add(new Student(readNullable(in), readNullable(in), courses[in.readUnsignedShort()]));
+        }
+    }
+
+    static void writeNullable(ObjectOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeUTF(value);
+    }
+
+    static String readNullable(ObjectInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,14 @@
+package rmi;
+
+import java.io.Serializable;
+
+/**
+ * One student write from a server's change feed. Inserts and updates carry the
+ * student's name and course as written; for deletes they are null.
+ */
+public record StudentChange(long sequence, Type type, String studentId, String name, String course,
+                            long timeMillis) implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    public enum Type { INSERT, UPDATE, DELETE }
+}
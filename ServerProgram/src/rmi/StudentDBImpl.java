@@ -1,35 +1,121 @@
 package rmi;
 
+import java.io.IOException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import server.CursorManager;
+import server.DBConnection;
 import server.DBOperations;
+import server.LruCache;
+import server.ReportService;
+import server.RequestMetrics;
+import server.ServerConfig;
 
-public class StudentDBImpl extends UnicastRemoteObject implements StudentDBInterface {
+public class StudentDBImpl extends UnicastRemoteObject implements StudentDBInterface, StudentDBInterfaceV2 {
 
-    private final DBOperations dbo = new DBOperations();
+    private final DBOperations dbo;
+    private final CursorManager cursors;
+    private final RequestMetrics metrics = new RequestMetrics();
+
+    // Select results by student id (empty = no such student); null when caching is disabled
+    private final LruCache<String, Optional<Student>> selectCache =
+            ServerConfig.cacheEnabled() ? new LruCache<>(ServerConfig.cacheMaxSize()) : null;
+    private final long cacheTtl = ServerConfig.cacheTtlMillis();
+    private final long negativeCacheTtl = ServerConfig.cacheNegativeTtlMillis();
+
+    // With read replicas: when each recently written id was last written, so that filling
+    // the cache for it skips replicas that may not have the write yet
+    private final Map<String, DBConnection.Session> recentWrites = new ConcurrentHashMap<>();
+    private final long replicaWindowMillis =
+            ServerConfig.replicaMaxLagMillis() + ServerConfig.replicaLagCheckIntervalMillis();
+
+    private final ClientSessions sessions = new ClientSessions(this);
+    private final ReportService reports;
+    private final InvalidationHub invalidations = new InvalidationHub();
 
     public StudentDBImpl() throws RemoteException {
+        this(new DBOperations());
+    }
+
+    /**
+     * Serves the given DBOperations, e.g. one over a specific store.
+     */
+    public StudentDBImpl(DBOperations dbo) throws RemoteException {
         super();
+        this.dbo = dbo;
+        this.cursors = new CursorManager(dbo);
+        this.reports = new ReportService(dbo);
     }
 
     @Override
     public String insert(String id, String name, String course) throws RemoteException {
-        return dbo.insert(id, name, course);
+        try {
+            return dbo.insert(id, name, course);
+        } finally {
+            invalidate(id);
+        }
     }
 
     @Override
     public String select(String id) throws RemoteException {
-        return dbo.select(id);
+        try {
+            return find(id)
+                    .map(DBOperations::describe)
+                    .orElse("No student found with ID " + id);
+        } catch (SQLException e) {
+            return DBOperations.failureMessage(e);
+        }
     }
 
     @Override
     public String update(String id, String newName, String newCourse) throws RemoteException {
-        return dbo.update(id, newName, newCourse);
+        try {
+            return dbo.update(id, newName, newCourse);
+        } finally {
+            invalidate(id);
+        }
     }
 
     @Override
     public String delete(String id) throws RemoteException {
-        return dbo.delete(id);
+        try {
+            return dbo.delete(id);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public List<String> insertAll(List<Student> students) throws RemoteException {
+        try {
+            return dbo.insertAll(students);
+        } finally {
+            students.forEach(s -> invalidate(s.id()));
+        }
+    }
+
+    @Override
+    public List<String> updateAll(List<Student> students) throws RemoteException {
+        try {
+            return dbo.updateAll(students);
+        } finally {
+            students.forEach(s -> invalidate(s.id()));
+        }
+    }
+
+    @Override
+    public List<String> deleteAll(List<String> ids) throws RemoteException {
+        try {
+            return dbo.deleteAll(ids);
+        } finally {
+            ids.forEach(this::invalidate);
+        }
     }
 
     // Implement methods for user registration and login
@@ -47,4 +133,280 @@ public class StudentDBImpl extends UnicastRemoteObject implements StudentDBInter
     public String getAllStudents() throws RemoteException {
         return dbo.getAllStudents();
     }
-}
\ No newline at end of file
+
+    @Override
+    public long openStudentCursor(int fetchSize) throws RemoteException {
+        try {
+            return cursors.open(fetchSize);
+        } catch (SQLException e) {
+            RequestMetrics.recordError(e);
+            throw new RemoteException("Could not open student cursor: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public StudentPage fetchStudents(long cursorId) throws RemoteException {
+        try {
+            return new StudentPage(cursors.fetch(cursorId), cursors.isOpen(cursorId));
+        } catch (SQLException e) {
+            RequestMetrics.recordError(e);
+            throw new RemoteException("Could not fetch students: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void closeStudentCursor(long cursorId) throws RemoteException {
+        cursors.close(cursorId);
+    }
+
+    // Typed (v2) interface
+
+    @Override
+    public OpResult register(String username, String password) throws RemoteException {
+        return dbo.register(username, password);
+    }
+
+    @Override
+    public OpResult login(String username, String password) throws RemoteException {
+        return dbo.login(username, password);
+    }
+
+    @Override
+    public Student findStudent(String id) throws RemoteException {
+        try {
+            return find(id).orElse(null);
+        } catch (SQLException e) {
+            RequestMetrics.recordError(e);
+            throw new RemoteException("Could not find student: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public OpResult insertStudent(Student student) throws RemoteException {
+        try {
+            return OpResult.ok(dbo.insertStudent(student));
+        } catch (SQLException e) {
+            return DBOperations.failure(e);
+        } finally {
+            invalidate(student.id());
+        }
+    }
+
+    @Override
+    public OpResult updateStudent(Student student) throws RemoteException {
+        try {
+            int rows = dbo.updateStudent(student);
+            return rows > 0 ? OpResult.ok(rows) : OpResult.of(ResultCode.NOT_FOUND, null);
+        } catch (SQLException e) {
+            return DBOperations.failure(e);
+        } finally {
+            invalidate(student.id());
+        }
+    }
+
+    @Override
+    public OpResult deleteStudent(String id) throws RemoteException {
+        try {
+            int rows = dbo.deleteStudent(id);
+            return rows > 0 ? OpResult.ok(rows) : OpResult.of(ResultCode.NOT_FOUND, null);
+        } catch (SQLException e) {
+            return DBOperations.failure(e);
+        } finally {
+            invalidate(id);
+        }
+    }
+
+    @Override
+    public StudentBatch fetchStudentBatch(long cursorId) throws RemoteException {
+        try {
+            return new StudentBatch(cursors.fetch(cursorId), cursors.isOpen(cursorId));
+        } catch (SQLException e) {
+            RequestMetrics.recordError(e);
+            throw new RemoteException("Could not fetch students: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public StudentBatch findStudentsByCourse(String course, String afterId, int limit) throws RemoteException {
+        try {
+            return dbo.findByCourse(course, afterId, limit);
+        } catch (SQLException e) {
+            RequestMetrics.recordError(e);
+            throw new RemoteException("Search failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public StudentBatch findStudentsByNamePrefix(String prefix, String afterId, int limit) throws RemoteException {
+        try {
+            return dbo.findByNamePrefix(prefix, afterId, limit);
+        } catch (SQLException e) {
+            RequestMetrics.recordError(e);
+            throw new RemoteException("Search failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public StudentBatch findStudentsByName(String text, String afterId, int limit) throws RemoteException {
+        try {
+            return dbo.findByName(text, afterId, limit);
+        } catch (SQLException e) {
+            RequestMetrics.recordError(e);
+            throw new RemoteException("Search failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public StudentBatch listStudents(String orderBy, boolean descending, Student after, int offset, int limit)
+            throws RemoteException {
+        try {
+            return dbo.listStudents(orderBy, descending, after, offset, limit);
+        } catch (SQLException e) {
+            RequestMetrics.recordError(e);
+            throw new RemoteException("Listing students failed: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new RemoteException(e.getMessage());
+        }
+    }
+
+    @Override
+    public long countStudents() throws RemoteException {
+        try {
+            return dbo.countStudents();
+        } catch (SQLException e) {
+            RequestMetrics.recordError(e);
+            throw new RemoteException("Counting students failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public OpResult ping() throws RemoteException {
+        return dbo.ping();
+    }
+
+    @Override
+    public ReportInfo openReport(String report, String format) throws RemoteException {
+        try {
+            return reports.open(report, format);
+        } catch (SQLException e) {
+            RequestMetrics.recordError(e);
+            throw new RemoteException("Could not render report: " + e.getMessage());
+        } catch (IOException e) {
+            RequestMetrics.recordError(RequestMetrics.ErrorCause.STORAGE);
+            throw new RemoteException("Could not render report: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new RemoteException(e.getMessage());
+        }
+    }
+
+    @Override
+    public byte[] readReport(String reportId, long offset, int maxBytes) throws RemoteException {
+        try {
+            return reports.read(reportId, offset, maxBytes);
+        } catch (IOException e) {
+            RequestMetrics.recordError(RequestMetrics.ErrorCause.STORAGE);
+            throw new RemoteException("Could not read report: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw new RemoteException(e.getMessage());
+        }
+    }
+
+    @Override
+    public ChangeBatch fetchChanges(long afterSequence, int maxChanges) throws RemoteException {
+        try {
+            return dbo.fetchChanges(afterSequence, maxChanges);
+        } catch (UnsupportedOperationException e) {
+            throw new RemoteException(e.getMessage());
+        }
+    }
+
+    @Override
+    public void subscribeInvalidations(InvalidationListener listener) throws RemoteException {
+        if (listener == null) throw new RemoteException("No listener given");
+        invalidations.subscribe(listener);
+    }
+
+    @Override
+    public void unsubscribeInvalidations(InvalidationListener listener) throws RemoteException {
+        if (listener != null) invalidations.unsubscribe(listener);
+    }
+
+    @Override
+    public StudentDBInterfaceV2 openSession(boolean readYourWrites) throws RemoteException {
+        return sessions.open(readYourWrites);
+    }
+
+    /**
+     * Sets how client sessions are exported; by default they are exported as they are.
+     */
+    public void setExporter(ClientSessions.Exporter exporter) {
+        sessions.setExporter(exporter);
+    }
+
+    @Override
+    public ServerStats getServerStats() throws RemoteException {
+        List<String> components = new ArrayList<>(dbo.getComponentStats());
+        components.add(getCacheStats());
+        components.add(sessions.getStats());
+        components.add(reports.getStats());
+        components.add(invalidations.getStats());
+        return metrics.snapshot(components);
+    }
+
+    /**
+     * Per method counters filled in when the server is exported through MetricsInterceptor.
+     */
+    public RequestMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Select cache counters (hits, misses, evictions), or a note that caching is off.
+     */
+    public String getCacheStats() {
+        return (selectCache == null) ? "Cache disabled" : selectCache.getStats();
+    }
+
+    // Reads through the cache; database errors propagate and are never cached
+    private Optional<Student> find(String id) throws SQLException {
+        if (selectCache == null) {
+            return load(id);
+        }
+        return selectCache.get(id, this::load, this::ttlFor);
+    }
+
+    private Optional<Student> load(String id) throws SQLException {
+        DBConnection.Session written = recentWrites.get(id);
+        if (written == null) {
+            return dbo.findStudent(id);
+        }
+        DBConnection.Session previous = DBConnection.bindSession(written);
+        try {
+            return dbo.findStudent(id);
+        } finally {
+            DBConnection.bindSession(previous);
+        }
+    }
+
+    // Writes invalidate after they finish so a concurrent select cannot re-cache the old row.
+    // Clients caching students reload on the pushed invalidation, so those reads skip replicas too.
+    private void invalidate(String id) {
+        if (selectCache != null) {
+            selectCache.invalidate(id);
+        }
+        if (id == null) return;
+        if (dbo.usesReadReplicas()) {
+            recentWrites.computeIfAbsent(id, k -> new DBConnection.Session()).recordWrite();
+            // Past the window every replica that gets reads has the write
+            if (recentWrites.size() > 10_000) {
+                recentWrites.values().removeIf(s -> s.millisSinceWrite() > replicaWindowMillis);
+            }
+        }
+        invalidations.changed(id);
+    }
+
+    // Found records use the full TTL, "no such student" the shorter negative TTL
+    private long ttlFor(Optional<Student> result) {
+        return result.isPresent() ? cacheTtl : negativeCacheTtl;
+    }
+}
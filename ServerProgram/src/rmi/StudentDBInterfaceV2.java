@@ -0,0 +1,75 @@
+package rmi;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Typed version of StudentDBInterface. Results carry a ResultCode instead of a
+ * human-readable message, and records travel as compact binary. The server
+ * object implements both interfaces, so a stub looked up as StudentDBInterface
+ * can be cast to this one.
+ */
+public interface StudentDBInterfaceV2 extends Remote {
+
+    OpResult register(String username, String password) throws RemoteException;
+
+    // count is the number of failed attempts for INVALID_CREDENTIALS and LOCKED
+    OpResult login(String username, String password) throws RemoteException;
+
+    // null when there is no student with this id
+    Student findStudent(String id) throws RemoteException;
+
+    OpResult insertStudent(Student student) throws RemoteException;
+    OpResult updateStudent(Student student) throws RemoteException;
+    OpResult deleteStudent(String id) throws RemoteException;
+
+    // Pages from a cursor opened with StudentDBInterface.openStudentCursor
+    StudentBatch fetchStudentBatch(long cursorId) throws RemoteException;
+
+    // Searches return up to limit students ordered by id (0 for the server's default).
+    // Pass the id of the last student received as afterId to get the next page, null for the first.
+    StudentBatch findStudentsByCourse(String course, String afterId, int limit) throws RemoteException;
+
+    // Name starts with prefix, ignoring case
+    StudentBatch findStudentsByNamePrefix(String prefix, String afterId, int limit) throws RemoteException;
+
+    // Name contains text anywhere, ignoring case
+    StudentBatch findStudentsByName(String text, String afterId, int limit) throws RemoteException;
+
+    // Every student in order of orderBy ("id", "name" or "course"), rows with equal values by id.
+    // Pass the last student received as after for the next page; to jump into the list instead,
+    // pass null and the number of rows to skip as offset.
+    StudentBatch listStudents(String orderBy, boolean descending, Student after, int offset, int limit)
+            throws RemoteException;
+
+    long countStudents() throws RemoteException;
+
+    // OK while this node can serve requests, UNAVAILABLE when its store cannot be reached;
+    // load-balancing clients call it to health-check each node
+    OpResult ping() throws RemoteException;
+
+    // Reports rendered on the server: "students" as "pdf" or "csv". A report is rendered once per
+    // data version and shared by every client asking for it; read its bytes in chunks by offset.
+    // A report replaced by a newer one stays readable for a while, then reads of it fail.
+    ReportInfo openReport(String report, String format) throws RemoteException;
+    byte[] readReport(String reportId, long offset, int maxBytes) throws RemoteException;
+
+    // Pushes the ids of students written through this server to listener, batched every
+    // invalidation.intervalMillis, with an empty batch at least every invalidation.heartbeatMillis.
+    // Subscribing a listener again restarts its subscription. A listener that fails a call is dropped.
+    void subscribeInvalidations(InvalidationListener listener) throws RemoteException;
+    void unsubscribeInvalidations(InvalidationListener listener) throws RemoteException;
+
+    // Student writes made through this server after afterSequence, oldest first, at most maxChanges
+    // (0 for the server's changefeed.maxBatch). Lets other systems follow changes instead of
+    // re-reading every student; see ChangeBatch for what to do when gap is set.
+    ChangeBatch fetchChanges(long afterSequence, int maxChanges) throws RemoteException;
+
+    // A remote object of this server for one client. With readYourWrites, reads made through it
+    // see the client's earlier writes even when they are served by a read replica.
+    // Sessions unused for a while are closed; calls then fail with NoSuchObjectException.
+    StudentDBInterfaceV2 openSession(boolean readYourWrites) throws RemoteException;
+
+    // Call counts, error counts and latency percentiles per remote method, plus pool and cache summaries
+    ServerStats getServerStats() throws RemoteException;
+}
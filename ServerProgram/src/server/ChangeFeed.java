@@ -0,0 +1,293 @@
+package server;
+
+import rmi.ChangeBatch;
+import rmi.Student;
+import rmi.StudentChange;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ChangeFeed numbers every successful student write made through DBOperations and
+ * keeps the last changefeed.capacity of them in a ring, so consumers can fetch what
+ * changed since the last sequence they saw instead of reading every student again.
+ *
+ * A write and its change are made under a lock on the student's id stripe, so two
+ * writes of one student reach the feed in the order they reached the store. With
+ * changefeed.dir set, changes are also appended to a {@link WriteAheadLog} there and
+ * the feed survives restarts; the log is trimmed to what the ring holds. The log is
+ * written after the store, so a crash in between loses that change from the feed.
+ * A consumer that falls further behind than the ring reaches is told to start over
+ * (see {@link ChangeBatch}).
+ */
+public class ChangeFeed {
+
+    /**
+     * A write against the store, returning the rows changed.
+     */
+    @FunctionalInterface
+    public interface Write {
+        int run() throws SQLException;
+    }
+
+    /**
+     * A batch write against the store, returning the rows changed per record.
+     */
+    @FunctionalInterface
+    public interface BatchWrite {
+        int[] run() throws SQLException;
+    }
+
+    private static final int STRIPES = 64;
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final int capacity;
+    private final int maxBatch;
+    private final String feedId;
+    private final WriteAheadLog log;     // null when the feed is only kept in memory
+    private final StudentChange[] ring;  // guarded by this, change n at n % capacity
+    private final long[] frameStarts;    // guarded by this, log position of each change's frame
+    private long head;                   // guarded by this, the last sequence given out
+    private long firstKept = 1;          // guarded by this, no change before it can be returned
+    private long appendsSinceTrim;       // guarded by this
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder fetches = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder gaps = new LongAdder();
+    private final LongAdder logFailures = new LongAdder();
+
+    /**
+     * @param dir where to log changes, or null to keep them in memory only.
+     */
+    public ChangeFeed(int capacity, int maxBatch, Path dir) throws IOException {
+        this.capacity = Math.max(1, capacity);
+        this.maxBatch = Math.max(1, maxBatch);
+        this.ring = new StudentChange[this.capacity];
+        this.frameStarts = new long[this.capacity];
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        if (dir == null) {
+            feedId = UUID.randomUUID().toString();
+            log = null;
+            return;
+        }
+        Files.createDirectories(dir);
+        feedId = readOrCreateId(dir.resolve("feed-id"));
+        log = new WriteAheadLog(dir, ServerConfig.walSegmentBytes(), ServerConfig.walSyncIntervalMillis(),
+                0, this::replay);
+        if (head > 0) {
+            System.out.printf("Change feed %s recovered changes %d to %d from %s.%n",
+                    feedId, oldestSequence(), head, dir.toAbsolutePath());
+        }
+    }
+
+    /**
+     * The feed the settings ask for, or null when changefeed.capacity is 0.
+     */
+    public static ChangeFeed fromConfig() {
+        int capacity = ServerConfig.changeFeedCapacity();
+        if (capacity <= 0) return null;
+        String dir = ServerConfig.changeFeedDir();
+        Path path = dir.isEmpty() ? null : Paths.get(dir);
+        try {
+            return new ChangeFeed(capacity, ServerConfig.changeFeedMaxBatch(), path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open change feed in " + dir + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Runs write and records the change if it changed a row. For a delete, student
+     * only needs its id.
+     */
+    public int apply(StudentChange.Type type, Student student, Write write) throws SQLException {
+        ReentrantLock lock = locks[stripe(student.id())];
+        lock.lock();
+        try {
+            int rows = write.run();
+            if (rows > 0) append(type, List.of(student));
+            return rows;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs a batch write and records a change for each record it changed.
+     */
+    public int[] applyAll(StudentChange.Type type, List<Student> students, BatchWrite write) throws SQLException {
+        // Stripes are taken in index order so two batches cannot deadlock
+        boolean[] needed = new boolean[STRIPES];
+        for (Student s : students) {
+            needed[stripe(s.id())] = true;
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            if (needed[i]) locks[i].lock();
+        }
+        try {
+            int[] counts = write.run();
+            List<Student> changed = new ArrayList<>(counts.length);
+            for (int i = 0; i < counts.length && i < students.size(); i++) {
+                if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) changed.add(students.get(i));
+            }
+            if (!changed.isEmpty()) append(type, changed);
+            return counts;
+        } finally {
+            for (int i = STRIPES - 1; i >= 0; i--) {
+                if (needed[i]) locks[i].unlock();
+            }
+        }
+    }
+
+    private static int stripe(String id) {
+        return (id == null) ? 0 : (id.hashCode() & 0x7fffffff) % STRIPES;
+    }
+
+    private void append(StudentChange.Type type, List<Student> students) {
+        long now = System.currentTimeMillis();
+        boolean delete = type == StudentChange.Type.DELETE;
+        long lsn = -1;
+        long trimBefore = -1;
+        synchronized (this) {
+            List<StudentChange> changes = new ArrayList<>(students.size());
+            long frameStart = (log == null) ? 0 : log.position();
+            for (Student s : students) {
+                long sequence = ++head;
+                StudentChange change = new StudentChange(sequence, type, s.id(),
+                        delete ? null : s.name(), delete ? null : s.course(), now);
+                int slot = (int) (sequence % capacity);
+                ring[slot] = change;
+                frameStarts[slot] = frameStart;
+                changes.add(change);
+            }
+            appended.add(changes.size());
+            if (log != null) {
+                try {
+                    lsn = log.append(encode(changes));
+                } catch (IOException e) {
+                    // The store already has the write; consumers of the log after a restart see a gap
+                    logFailures.increment();
+                    System.err.println("Could not log change " + head + ": " + e.getMessage());
+                }
+                appendsSinceTrim += changes.size();
+                if (appendsSinceTrim >= Math.max(1, capacity / 4)) {
+                    appendsSinceTrim = 0;
+                    trimBefore = frameStarts[(int) (oldestSequence() % capacity)];
+                }
+            }
+        }
+        if (lsn >= 0) {
+            try {
+                log.awaitDurable(lsn);
+            } catch (IOException e) {
+                logFailures.increment();
+                System.err.println("Could not sync change log: " + e.getMessage());
+            }
+        }
+        if (trimBefore > 0) {
+            log.deleteSegmentsBefore(trimBefore);
+        }
+    }
+
+    /**
+     * Up to maxChanges changes after afterSequence, or a batch with gap set if some of
+     * them are no longer kept.
+     */
+    public ChangeBatch fetch(long afterSequence, int maxChanges) {
+        fetches.increment();
+        int n = (maxChanges <= 0) ? maxBatch : Math.min(maxChanges, maxBatch);
+        synchronized (this) {
+            // A sequence past the head comes from another run of a feed that is not logged
+            if (afterSequence < oldestSequence() - 1 || afterSequence > head) {
+                gaps.increment();
+                return new ChangeBatch(feedId, List.of(), head, true);
+            }
+            long last = Math.min(head, afterSequence + n);
+            List<StudentChange> changes = new ArrayList<>((int) (last - afterSequence));
+            for (long s = afterSequence + 1; s <= last; s++) {
+                changes.add(ring[(int) (s % capacity)]);
+            }
+            sent.add(changes.size());
+            return new ChangeBatch(feedId, changes, head, false);
+        }
+    }
+
+    // Caller holds this
+    private long oldestSequence() {
+        return Math.max(firstKept, head - capacity + 1);
+    }
+
+    // A frame: the sequence of its first change, the count, then the changes
+    private static byte[] encode(List<StudentChange> changes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + 48 * changes.size());
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(changes.get(0).sequence());
+        out.writeInt(changes.size());
+        for (StudentChange c : changes) {
+            out.writeByte(c.type().ordinal());
+            out.writeUTF(c.studentId());
+            StoreSnapshot.writeString(out, c.name());
+            StoreSnapshot.writeString(out, c.course());
+            out.writeLong(c.timeMillis());
+        }
+        return bytes.toByteArray();
+    }
+
+    // Only called from the constructor, while the log is opened
+    private synchronized void replay(ByteBuffer payload) throws IOException {
+        byte[] data = new byte[payload.remaining()];
+        payload.get(data);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        long sequence = in.readLong();
+        int count = in.readInt();
+        if (sequence != head + 1) {
+            // A change that failed to be logged: nothing before it can be returned
+            firstKept = sequence;
+        }
+        StudentChange.Type[] types = StudentChange.Type.values();
+        for (int i = 0; i < count; i++, sequence++) {
+            StudentChange change = new StudentChange(sequence, types[in.readByte()], in.readUTF(),
+                    StoreSnapshot.readString(in), StoreSnapshot.readString(in), in.readLong());
+            ring[(int) (sequence % capacity)] = change;
+            frameStarts[(int) (sequence % capacity)] = 0; // kept until overwritten by a logged change
+            head = sequence;
+        }
+    }
+
+    private static String readOrCreateId(Path file) throws IOException {
+        if (Files.exists(file)) {
+            return Files.readString(file, StandardCharsets.UTF_8).trim();
+        }
+        String id = UUID.randomUUID().toString();
+        Files.writeString(file, id, StandardCharsets.UTF_8);
+        return id;
+    }
+
+    /**
+     * One-line summary of the feed, useful for logging.
+     */
+    public synchronized String getStats() {
+        return String.format("ChangeFeed[head=%d, oldest=%d, capacity=%d, appended=%d, fetches=%d, sent=%d, "
+                        + "gaps=%d, logFailures=%d%s]",
+                head, oldestSequence(), capacity, appended.sum(), fetches.sum(), sent.sum(), gaps.sum(),
+                logFailures.sum(), (log == null) ? "" : ", " + log.getStats());
+    }
+}
@@ -0,0 +1,106 @@
+package server;
+
+import rmi.Student;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CursorManager keeps track of the student cursors opened by remote clients.
+ * Each open cursor holds a pooled connection, so the number of open cursors is
+ * capped and cursors abandoned by their client are closed after an idle timeout.
+ */
+public class CursorManager {
+
+    private final DBOperations dbo;
+    private final Map<Long, StudentCursor> cursors = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final int maxOpen;
+    private final int maxFetchSize;
+    private final long idleTimeoutMillis;
+    private final ScheduledExecutorService reaper;
+
+    public CursorManager(DBOperations dbo) {
+        this.dbo = dbo;
+        this.maxOpen = Math.max(1, ServerConfig.cursorMaxOpen());
+        this.maxFetchSize = Math.max(1, ServerConfig.cursorMaxFetchSize());
+        this.idleTimeoutMillis = ServerConfig.cursorIdleTimeoutMillis();
+        this.reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cursor-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1_000L, idleTimeoutMillis / 2);
+        reaper.scheduleWithFixedDelay(this::closeIdleCursors, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens a cursor over all students.
+     * @param fetchSize requested chunk size; values outside 1..maxFetchSize are clamped.
+     * @return the id the client uses for subsequent fetches.
+     */
+    public long open(int fetchSize) throws SQLException {
+        if (cursors.size() >= maxOpen) {
+            throw new SQLException("Too many open cursors, try again later.");
+        }
+        int size = (fetchSize <= 0) ? ServerConfig.cursorFetchSize() : Math.min(fetchSize, maxFetchSize);
+        StudentCursor cursor = dbo.openStudentCursor(size);
+        long id = nextId.getAndIncrement();
+        cursors.put(id, cursor);
+        return id;
+    }
+
+    /**
+     * Fetches the next chunk from a cursor. Exhausted cursors are closed automatically.
+     */
+    public List<Student> fetch(long id) throws SQLException {
+        StudentCursor cursor = cursors.get(id);
+        if (cursor == null) {
+            throw new SQLException("Unknown or expired cursor " + id);
+        }
+        try {
+            List<Student> chunk = cursor.next();
+            if (cursor.isExhausted()) {
+                close(id);
+            }
+            return chunk;
+        } catch (SQLException e) {
+            close(id);
+            throw e;
+        }
+    }
+
+    /**
+     * Returns true if the cursor is still open, i.e. more records may follow.
+     */
+    public boolean isOpen(long id) {
+        return cursors.containsKey(id);
+    }
+
+    public void close(long id) {
+        StudentCursor cursor = cursors.remove(id);
+        if (cursor != null) {
+            cursor.close();
+        }
+    }
+
+    public int getOpenCount() {
+        return cursors.size();
+    }
+
+    private void closeIdleCursors() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        for (Map.Entry<Long, StudentCursor> entry : cursors.entrySet()) {
+            if (entry.getValue().getLastAccess() < cutoff) {
+                System.out.println("Closing idle student cursor " + entry.getKey());
+                close(entry.getKey());
+            }
+        }
+    }
+}
@@ -1,32 +1,814 @@
 package server;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * DBConnection manages the connection to the PostgreSQL database.
+ * DBConnection manages a bounded pool of connections to the PostgreSQL database.
+ * Connections handed out by {@link #getConnection()} go back to the pool when
+ * they are closed, so callers keep using try-with-resources as before.
+ *
+ * Read-only work can borrow with {@link #getReadConnection()} instead, which takes a
+ * connection from one of the read replicas listed in db.replicas, round-robin among
+ * those whose replication lag is within db.replica.maxLagMillis. The lag of each
+ * replica is measured in the background. Reads fall back to the primary when no
+ * replica qualifies. A {@link Session} bound to the calling thread adds
+ * read-your-writes: its reads skip replicas that may not have replayed its last write.
+ *
+ * Each pooled connection keeps up to db.statementCache.size prepared statements open,
+ * least recently used evicted first: prepareStatement(sql) hands out the one already
+ * prepared for that SQL, and closing it keeps it for the next borrower. Against
+ * PostgreSQL, statements are prepared on the server from their db.prepareThreshold-th
+ * execution, so a cached statement is parsed and planned once per connection.
  */
 public class DBConnection {
 
-    // Database connection parameters (Move to environment variables for security)
-    private static final String URL = "jdbc:postgresql://localhost:5432/university1";
-    private static final String USER = "postgres";
-    private static final String PASSWORD = "123";
+    private static DBConnection defaultPool;
+
+    // Database connection parameters (see ServerConfig for overrides)
+    private final String url;
+    private final String user;
+    private final String password;
+
+    // Pool settings
+    private final int minSize;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+    private final int prepareThreshold;
+
+    // Pool state, guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<PooledEntry> idle = new ArrayDeque<>();
+    private int total;
+    private int waiters;
+    private boolean shutdown;
+
+    // Metrics
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+
+    private final ScheduledExecutorService evictor;
+
+    // Read replicas, empty if reads go to this database too
+    private final List<Replica> replicas;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final long maxLagMillis = ServerConfig.replicaMaxLagMillis();
+    private final long lagCheckMillis = Math.max(100L, ServerConfig.replicaLagCheckIntervalMillis());
+    private final LongAdder primaryReads = new LongAdder();
+
+    private static final ThreadLocal<Session> SESSION = new ThreadLocal<>();
 
     /**
-     * Establishes a connection to the database.
-     * @return Connection object if successful, otherwise null.
+     * Creates a pool for the database configured in ServerConfig, with its read replicas.
      */
-    public Connection getConnection() {
+    public DBConnection() {
+        this(ServerConfig.dbUrl(), ServerConfig.dbUser(), ServerConfig.dbPassword(), replicaUrls());
+    }
+
+    /**
+     * Creates a pool for the given database using the pool settings from ServerConfig.
+     */
+    public DBConnection(String url, String user, String password) {
+        this(url, user, password, List.of());
+    }
+
+    /**
+     * Creates a pool for the given primary database and a pool for each read replica.
+     */
+    public DBConnection(String url, String user, String password, List<String> replicaUrls) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = Math.max(1, ServerConfig.poolMaxSize());
+        this.minSize = Math.min(Math.max(0, ServerConfig.poolMinSize()), maxSize);
+        this.borrowTimeoutMillis = ServerConfig.poolBorrowTimeoutMillis();
+        this.idleTimeoutMillis = ServerConfig.poolIdleTimeoutMillis();
+        this.validationTimeoutSeconds = ServerConfig.poolValidationTimeoutSeconds();
+        this.statementCacheSize = Math.max(0, ServerConfig.statementCacheSize());
+        this.prepareThreshold = ServerConfig.prepareThreshold();
+
         try {
-            Class.forName("org.postgresql.Driver"); // Load the PostgreSQL driver
-            return DriverManager.getConnection(URL, USER, PASSWORD);
+            Class.forName("org.postgresql.Driver"); // Load the PostgreSQL driver once per pool
         } catch (ClassNotFoundException e) {
             System.err.println("Driver not found: " + e.getMessage());
+        }
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1_000L, Math.min(idleTimeoutMillis / 2, 30_000L));
+        evictor.scheduleWithFixedDelay(this::maintain, 0, period, TimeUnit.MILLISECONDS);
+
+        List<Replica> pools = new ArrayList<>();
+        for (String replicaUrl : replicaUrls) {
+            pools.add(new Replica(replicaUrl, new DBConnection(replicaUrl, user, password)));
+        }
+        replicas = List.copyOf(pools);
+        if (!replicas.isEmpty()) {
+            evictor.scheduleWithFixedDelay(this::checkReplicas, 0, lagCheckMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static List<String> replicaUrls() {
+        return Arrays.stream(ServerConfig.dbReplicas().split(","))
+                .map(String::trim)
+                .filter(u -> !u.isEmpty())
+                .toList();
+    }
+
+    /**
+     * Returns the pool shared by the whole server process.
+     */
+    public static synchronized DBConnection getDefault() {
+        if (defaultPool == null) {
+            defaultPool = new DBConnection();
+        }
+        return defaultPool;
+    }
+
+    /**
+     * Borrows a connection from the pool, waiting up to the borrow timeout if all
+     * connections are in use. Closing the returned connection gives it back to the pool.
+     * The session bound to this thread, if any, counts the connection as used for a write.
+     * @return Connection object if successful, otherwise null.
+     */
+    public Connection getConnection() {
+        return borrow(SESSION.get());
+    }
+
+    /**
+     * Borrows a connection for reads only: from a replica that is fresh enough for
+     * the session bound to this thread, or else from the primary pool.
+     * @return Connection object if successful, otherwise null.
+     */
+    public Connection getReadConnection() {
+        if (!replicas.isEmpty()) {
+            Session session = SESSION.get();
+            long sinceWriteMillis = (session == null) ? Long.MAX_VALUE : session.millisSinceWrite();
+            int n = replicas.size();
+            int first = Math.floorMod(nextReplica.getAndIncrement(), n);
+            for (int i = 0; i < n; i++) {
+                Replica replica = replicas.get((first + i) % n);
+                // A lag reading can be up to one check interval old
+                long lag = replica.lagMillis;
+                if (lag > maxLagMillis || lag + lagCheckMillis >= sinceWriteMillis) continue;
+                Connection conn = replica.pool.borrow(null);
+                if (conn != null) {
+                    replica.reads.increment();
+                    return conn;
+                }
+                replica.lagMillis = Long.MAX_VALUE; // unreachable until the next check says otherwise
+            }
+        }
+        primaryReads.increment();
+        return borrow(null);
+    }
+
+    private Connection borrow(Session writer) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        try {
+            while (true) {
+                PooledEntry entry = null;
+                boolean create = false;
+
+                lock.lock();
+                try {
+                    while (!shutdown && idle.isEmpty() && total >= maxSize) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            timeoutCount.incrementAndGet();
+                            System.err.println("Connection failed: timed out waiting for a pooled connection.");
+                            return null;
+                        }
+                        waiters++;
+                        try {
+                            available.awaitNanos(remaining);
+                        } finally {
+                            waiters--;
+                        }
+                    }
+                    if (shutdown) {
+                        System.err.println("Connection failed: pool is shut down.");
+                        return null;
+                    }
+                    if (!idle.isEmpty()) {
+                        entry = idle.pollFirst();
+                    } else {
+                        total++;
+                        create = true;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+
+                if (create) {
+                    try {
+                        entry = new PooledEntry(connect());
+                    } catch (SQLException e) {
+                        discard(null);
+                        System.err.println("Connection failed: " + e.getMessage());
+                        return null;
+                    }
+                } else if (!isValid(entry)) {
+                    discard(entry);
+                    continue;
+                }
+
+                recordWait(System.nanoTime() - start);
+                return entry.lease(writer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Connection failed: interrupted while waiting for a pooled connection.");
+            return null;
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Properties props = new Properties();
+        props.setProperty("user", user);
+        props.setProperty("password", password);
+        if (url.startsWith("jdbc:postgresql:")) {
+            // Settings in the URL take precedence
+            props.setProperty("prepareThreshold", String.valueOf(prepareThreshold));
+        }
+        return DriverManager.getConnection(url, props);
+    }
+
+    /**
+     * Closes all idle connections and stops handing out new ones.
+     * Connections currently borrowed are closed when they are returned.
+     */
+    public void shutdown() {
+        lock.lock();
+        try {
+            shutdown = true;
+            for (PooledEntry entry : idle) {
+                closeQuietly(entry.physical);
+                total--;
+            }
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        evictor.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.pool.shutdown();
+        }
+    }
+
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return total - idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaitingCount() {
+        lock.lock();
+        try {
+            return waiters;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * Average time spent waiting for a connection, in milliseconds.
+     */
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0.0 : totalWaitNanos.get() / (borrows * 1_000_000.0);
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * One-line summary of the pool metrics, useful for logging.
+     */
+    public String getStats() {
+        return String.format("Pool[active=%d, idle=%d, waiters=%d, max=%d, borrows=%d, timeouts=%d, avgWait=%.2fms, maxWait=%.2fms, "
+                        + "statementHits=%d, statementMisses=%d]",
+                getActiveCount(), getIdleCount(), getWaitingCount(), maxSize,
+                getBorrowCount(), getTimeoutCount(), getAverageWaitMillis(), getMaxWaitMillis(),
+                statementHits.sum(), statementMisses.sum());
+    }
+
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    /**
+     * One-line summary of the replicas: lag and reads served by each, and reads that
+     * fell back to the primary.
+     */
+    public String getReplicaStats() {
+        StringBuilder out = new StringBuilder("Replicas[");
+        for (Replica replica : replicas) {
+            long lag = replica.lagMillis;
+            out.append(replica.url).append("(")
+                    .append(lag == Long.MAX_VALUE ? "down" : "lag=" + lag + "ms")
+                    .append(", reads=").append(replica.reads.sum()).append("), ");
+        }
+        return out.append("primaryReads=").append(primaryReads.sum()).append("]").toString();
+    }
+
+    /**
+     * A client session for read-your-writes. While bound to a thread, connections that
+     * thread borrows with getConnection() record the time they are given back, and
+     * getReadConnection() only picks replicas whose lag is known to be shorter than
+     * the time since then.
+     */
+    public static final class Session {
+        private volatile long lastWriteNanos;
+        private volatile boolean wrote;
+
+        public void recordWrite() {
+            lastWriteNanos = System.nanoTime();
+            wrote = true;
+        }
+
+        public long millisSinceWrite() {
+            return wrote ? (System.nanoTime() - lastWriteNanos) / 1_000_000 : Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Binds session to the current thread, or unbinds with null.
+     * @return the session bound before, to restore afterwards.
+     */
+    public static Session bindSession(Session session) {
+        Session previous = SESSION.get();
+        if (session == null) {
+            SESSION.remove();
+        } else {
+            SESSION.set(session);
+        }
+        return previous;
+    }
+
+    /**
+     * The session bound to the current thread, or null.
+     */
+    public static Session currentSession() {
+        return SESSION.get();
+    }
+
+    /**
+     * Wraps task so that it runs with the session of the calling thread, for work
+     * handed to another thread on the caller's behalf.
+     */
+    public static <T> Callable<T> inSession(Callable<T> task) {
+        Session session = SESSION.get();
+        if (session == null) return task;
+        return () -> {
+            Session previous = bindSession(session);
+            try {
+                return task.call();
+            } finally {
+                bindSession(previous);
+            }
+        };
+    }
+
+    /**
+     * A read replica and its measured lag; Long.MAX_VALUE while it cannot be reached.
+     */
+    private static final class Replica {
+        final String url;
+        final DBConnection pool;
+        final LongAdder reads = new LongAdder();
+        volatile long lagMillis = Long.MAX_VALUE;
+        boolean warned;
+
+        Replica(String url, DBConnection pool) {
+            this.url = url;
+            this.pool = pool;
+        }
+    }
+
+    // How far a PostgreSQL standby's replay is behind; 0 when it has replayed all it received
+    private static final String LAG_QUERY =
+            "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 "
+            + "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+
+    private void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection conn = replica.pool.borrow(null)) {
+                if (conn == null) {
+                    replica.lagMillis = Long.MAX_VALUE;
+                    continue;
+                }
+                replica.lagMillis = measureLag(replica, conn);
+            } catch (SQLException e) {
+                replica.lagMillis = Long.MAX_VALUE;
+            }
+        }
+    }
+
+    private long measureLag(Replica replica, Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.setQueryTimeout(validationTimeoutSeconds);
+            try (ResultSet rs = stmt.executeQuery(LAG_QUERY)) {
+                rs.next();
+                return Math.max(0L, (long) rs.getDouble(1));
+            }
+        } catch (SQLException e) {
+            // A database without the PostgreSQL replication functions gives no lag to measure
+            if ("42883".equals(e.getSQLState()) || "90022".equals(e.getSQLState())) {
+                if (!replica.warned) {
+                    replica.warned = true;
+                    System.err.println("Cannot measure the lag of replica " + replica.url + ", treating it as current.");
+                }
+                return 0L;
+            }
+            throw e;
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private boolean isValid(PooledEntry entry) {
+        try {
+            return entry.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Called when a borrowed connection is closed by its user.
+     */
+    private void release(PooledEntry entry) {
+        boolean healthy;
+        try {
+            healthy = !entry.physical.isClosed();
+            if (healthy && !entry.physical.getAutoCommit()) {
+                entry.physical.rollback();
+                entry.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            healthy = false;
+        }
+
+        lock.lock();
+        try {
+            if (healthy && !shutdown) {
+                entry.lastUsed = System.currentTimeMillis();
+                idle.offerFirst(entry); // LIFO keeps the hottest connections busy
+                available.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        discard(entry);
+    }
+
+    private void discard(PooledEntry entry) {
+        if (entry != null) {
+            closeQuietly(entry.physical);
+        }
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Evicts connections idle for longer than the idle timeout and tops the pool back up to its minimum size.
+     */
+    private void maintain() {
+        long cutoff = System.currentTimeMillis() - idleTimeoutMillis;
+        int missing;
+        lock.lock();
+        try {
+            if (shutdown) return;
+            Iterator<PooledEntry> it = idle.descendingIterator(); // oldest first
+            while (it.hasNext() && total > minSize) {
+                PooledEntry entry = it.next();
+                if (entry.lastUsed < cutoff) {
+                    it.remove();
+                    total--;
+                    closeQuietly(entry.physical);
+                }
+            }
+            missing = minSize - total;
+            total += Math.max(missing, 0);
+        } finally {
+            lock.unlock();
+        }
+
+        for (int i = 0; i < missing; i++) {
+            try {
+                PooledEntry entry = new PooledEntry(connect());
+                lock.lock();
+                try {
+                    entry.lastUsed = System.currentTimeMillis();
+                    idle.offerLast(entry);
+                    available.signal();
+                } finally {
+                    lock.unlock();
+                }
+            } catch (SQLException e) {
+                discard(null);
+                System.err.println("Connection failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
         } catch (SQLException e) {
-            System.err.println("Connection failed: " + e.getMessage());
+            // Connection is being thrown away anyway
+        }
+    }
+
+    /**
+     * A physical connection owned by the pool.
+     */
+    private final class PooledEntry {
+        private final Connection physical;
+        private final StatementCache statements; // null when statements are not cached
+        private long lastUsed = System.currentTimeMillis();
+
+        private PooledEntry(Connection physical) {
+            this.physical = physical;
+            this.statements = (statementCacheSize > 0) ? new StatementCache(physical) : null;
+        }
+
+        private Connection lease(Session writer) {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new Lease(this, writer));
+        }
+    }
+
+    /**
+     * The view of a pooled connection given to a caller. close() returns the
+     * physical connection to the pool instead of closing the socket.
+     */
+    private final class Lease implements InvocationHandler {
+        private PooledEntry entry;
+        private final Session writer;
+
+        private Lease(PooledEntry entry, Session writer) {
+            this.entry = entry;
+            this.writer = writer;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (entry != null) {
+                        PooledEntry returning = entry;
+                        entry = null;
+                        if (returning.statements != null) returning.statements.releaseAll();
+                        release(returning);
+                        // Whatever was written is committed or rolled back by now
+                        if (writer != null) writer.recordWrite();
+                    }
+                    return null;
+                case "isClosed":
+                    return entry == null || entry.physical.isClosed();
+                case "prepareStatement":
+                    if (args.length == 1 && entry != null && entry.statements != null) {
+                        return entry.statements.prepare((String) args[0], (Connection) proxy);
+                    }
+                    break;
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) return proxy;
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + (entry == null ? "[closed]" : entry.physical.toString());
+                default:
+                    break;
+            }
+            if (entry == null) {
+                throw new SQLException("Connection has been returned to the pool.");
+            }
+            try {
+                return method.invoke(entry.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * The prepared statements kept open on one pooled connection, by SQL text. Only
+     * the connection's current borrower uses it, so it needs no locking.
+     */
+    private final class StatementCache {
+        private final Connection physical;
+        private final Map<String, CachedStatement> statements; // least recently used first
+
+        private StatementCache(Connection physical) {
+            this.physical = physical;
+            this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                    if (size() <= statementCacheSize) return false;
+                    eldest.getValue().evict();
+                    return true;
+                }
+            };
+        }
+
+        private PreparedStatement prepare(String sql, Connection lease) throws SQLException {
+            CachedStatement cached = statements.get(sql);
+            if (cached != null && cached.evicted) {
+                // Closed because it could not be reset
+                statements.remove(sql);
+                cached = null;
+            }
+            if (cached != null && !cached.inUse) {
+                statementHits.increment();
+                return cached.open(lease);
+            }
+            statementMisses.increment();
+            if (cached != null) {
+                // The same SQL open twice at once: the second one is not kept
+                return physical.prepareStatement(sql);
+            }
+            cached = new CachedStatement(physical.prepareStatement(sql));
+            statements.put(sql, cached);
+            return cached.open(lease);
+        }
+
+        // Statements the borrower did not close are closed for it
+        private void releaseAll() {
+            statements.values().removeIf(cached -> {
+                cached.release();
+                return cached.evicted;
+            });
+        }
+    }
+
+    /**
+     * A prepared statement kept by a StatementCache. Each view handed out by open()
+     * behaves like a statement of its own: close() resets the physical statement for
+     * the next user instead of closing it, and the view cannot be used after that.
+     */
+    private static final class CachedStatement {
+        private final PreparedStatement physical;
+        private Connection lease;  // the connection it was opened through, while in use
+        private boolean inUse;
+        private boolean evicted;   // close the physical statement once it is released; set if a reset fails
+        private int opened;        // which view may use the statement
+
+        private CachedStatement(PreparedStatement physical) {
+            this.physical = physical;
+        }
+
+        private PreparedStatement open(Connection lease) {
+            this.lease = lease;
+            this.inUse = true;
+            int view = ++opened;
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    (proxy, method, args) -> invoke(view, proxy, method, args));
+        }
+
+        private void evict() {
+            evicted = true;
+            if (!inUse) closeQuietly();
+        }
+
+        private void release() {
+            if (!inUse) return;
+            inUse = false;
+            lease = null;
+            if (evicted) {
+                closeQuietly();
+                return;
+            }
+            try {
+                ResultSet rs = physical.getResultSet();
+                if (rs != null) rs.close();
+                physical.clearParameters();
+                physical.clearBatch();
+                physical.clearWarnings();
+            } catch (SQLException e) {
+                evicted = true;
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                // The statement is being thrown away anyway
+            }
+        }
+
+        private Object invoke(int view, Object proxy, Method method, Object[] args) throws Throwable {
+            boolean current = inUse && view == opened;
+            switch (method.getName()) {
+                case "close":
+                    if (current) release();
+                    return null;
+                case "isClosed":
+                    return !current || physical.isClosed();
+                case "getConnection":
+                    if (current) return lease;
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Cached" + physical;
+                default:
+                    break;
+            }
+            if (!current) {
+                throw new SQLException("Statement is closed.");
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
         }
-        return null;
     }
 }
@@ -1,89 +1,181 @@
 package server;
 
-import org.mindrot.jbcrypt.BCrypt;
-
+import rmi.ChangeBatch;
+import rmi.OpResult;
+import rmi.ResultCode;
+import rmi.Student;
+import rmi.StudentBatch;
+import rmi.StudentChange;
+
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
 import java.sql.Statement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * DBOperations handles CRUD operations for the STUDENTS table.
+ * DBOperations handles CRUD operations for student records and user accounts.
+ * The data itself lives in a {@link StudentStore}; this class adds password
+ * hashing, login lockout and the result messages shown to clients. Student writes
+ * that change a row are recorded in a {@link ChangeFeed} unless changefeed.capacity is 0.
  */
 public class DBOperations {
-    private final DBConnection dbc = new DBConnection();
+    static final String NO_CONNECTION = "Connection not established.";
+
+    private final StudentStore store;   // timed view of backing when metrics are on
+    private final StudentStore backing;
+    private final PasswordHasher hasher = PasswordHasher.getDefault();
+    private final int maxLoginAttempts = ServerConfig.loginMaxAttempts();
+    private final long lockoutSeconds = ServerConfig.loginLockoutSeconds();
+    private final LoginTracker loginTracker; // null when login bookkeeping is written synchronously
+    private final AtomicLong dataVersion = new AtomicLong();
+    private final ChangeFeed changes; // null when the change feed is off
+    private final SelectBatcher lookups; // null when selects query the store one by one
 
+    /**
+     * Creates DBOperations over the store selected by the store.engine setting.
+     */
     public DBOperations(){
-        createUsersTableIfNotExists();
-        addLoginTrackingColumns();
+        this(StudentStore.fromConfig());
     }
-    
+
     /**
-     * Create USERS table if it doesn't already exist.
+     * Creates DBOperations that borrows its connections from the given pool.
      */
-    private void createUsersTableIfNotExists() {
-        String query = "CREATE TABLE IF NOT EXISTS USERS (" +
-                "user_id SERIAL PRIMARY KEY, " +
-                "username VARCHAR(50) UNIQUE NOT NULL, " +
-                "password VARCHAR(255) NOT NULL" +
-                ")";
-        try (Connection conn = dbc.getConnection();
-             Statement stmt = conn.createStatement()) {
+    public DBOperations(DBConnection dbc){
+        this(new JdbcStudentStore(dbc));
+    }
 
-            if (conn == null) {
-                System.out.println("Connection not established for USERS table check.");
-                return;
-            }
+    public DBOperations(StudentStore store){
+        this(store, ChangeFeed.fromConfig());
+    }
 
-            stmt.executeUpdate(query);
-            System.out.println("USERS table is ready.");
-        } catch (SQLException e) {
-            System.err.println("Failed to create USERS table: " + e.getMessage());
-        }
+    /**
+     * Creates DBOperations over store that records its writes in changes, or in no feed if it is null.
+     */
+    public DBOperations(StudentStore store, ChangeFeed changes){
+        this.backing = store;
+        this.changes = changes;
+        this.store = ServerConfig.metricsEnabled() ? new TimedStudentStore(store) : store;
+        // Write-behind only pays off when each bookkeeping write is a database round trip
+        StudentStore users = (store instanceof ShardedStudentStore sharded) ? sharded.getUserStore() : store;
+        this.loginTracker = (ServerConfig.loginWriteBehind() && users instanceof JdbcStudentStore jdbc)
+                ? new LoginTracker(jdbc.getConnectionPool(), ServerConfig.loginFlushIntervalMillis())
+                : null;
+        // Batching, like write-behind, only pays off when each lookup is a database round trip
+        boolean jdbc = shardsOf(store).stream().anyMatch(s -> s instanceof JdbcStudentStore);
+        this.lookups = (ServerConfig.selectBatchEnabled() && jdbc) ? new SelectBatcher(this.store) : null;
     }
-    
-    
-    private void addLoginTrackingColumns() {
-    String alterSQL = """
-        ALTER TABLE USERS 
-        ADD COLUMN IF NOT EXISTS login_attempts INT DEFAULT 0,
-        ADD COLUMN IF NOT EXISTS last_login TIMESTAMP;
-    """;
-    try (Connection conn = dbc.getConnection();
-         Statement stmt = conn.createStatement()) {
-        stmt.executeUpdate(alterSQL);
-    } catch (SQLException e) {
-        System.err.println("Could not update USERS table: " + e.getMessage());
+
+    public StudentStore getStore() {
+        return backing;
     }
-}
 
-    
     /**
-     * Register a new user with hashed password.
+     * A number that grows with every student write made through this DBOperations, failed
+     * ones included. Writes made through other server nodes do not change it.
      */
-    public String registerUser(String username, String plainPassword) {
-        String query = "INSERT INTO USERS (username, password) VALUES (?, ?)";
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+
+    /**
+     * Whether this server can reach its store, for health checks.
+     */
+    public OpResult ping() {
+        for (StudentStore shard : shardsOf(backing)) {
+            if (shard instanceof JdbcStudentStore jdbc) {
+                try (Connection conn = jdbc.getConnectionPool().getConnection()) {
+                    if (conn == null) return OpResult.of(ResultCode.UNAVAILABLE, NO_CONNECTION);
+                } catch (SQLException e) {
+                    return OpResult.of(ResultCode.UNAVAILABLE, e.getMessage());
+                }
+            }
+        }
+        return OpResult.ok(0);
+    }
 
-        // Hash the password using BCrypt
-        String hashedPassword = BCrypt.hashpw(plainPassword, BCrypt.gensalt());
+    // The stores holding the data: each shard of a sharded store, or the store itself
+    private static Collection<StudentStore> shardsOf(StudentStore store) {
+        return (store instanceof ShardedStudentStore sharded) ? sharded.getShardStores().values() : List.of(store);
+    }
 
-        try (Connection conn = dbc.getConnection();
-             PreparedStatement pst = conn.prepareStatement(query)) {
+    /**
+     * Whether student reads may be served by read replicas, and so lag behind writes.
+     */
+    public boolean usesReadReplicas() {
+        return backing instanceof JdbcStudentStore jdbc && jdbc.getConnectionPool().hasReplicas();
+    }
 
-            if (conn == null) return "Connection not established.";
+    /**
+     * One-line summaries of the store, the BCrypt pool and the login tracker, for monitoring.
+     */
+    public List<String> getComponentStats() {
+        List<String> stats = new ArrayList<>();
+        if (backing instanceof ShardedStudentStore sharded) {
+            stats.add(sharded.getStats());
+        }
+        for (StudentStore shard : shardsOf(backing)) {
+            if (shard instanceof JdbcStudentStore jdbc) {
+                stats.add(jdbc.getConnectionPool().getStats());
+                if (jdbc.getConnectionPool().hasReplicas()) {
+                    stats.add(jdbc.getConnectionPool().getReplicaStats());
+                }
+            } else if (shard instanceof EmbeddedStudentStore embedded) {
+                stats.add(embedded.getStats());
+            } else if (shard instanceof MemoryStudentStore memory) {
+                stats.add("MemoryStore[students=" + memory.getStudentCount() + "]");
+            }
+        }
+        if (lookups != null) {
+            stats.add(lookups.getStats());
+        }
+        if (changes != null) {
+            stats.add(changes.getStats());
+        }
+        stats.add(hasher.getStats());
+        if (loginTracker != null) {
+            stats.add(loginTracker.getStats());
+        }
+        return stats;
+    }
 
-            pst.setString(1, username);
-            pst.setString(2, hashedPassword);
+    /**
+     * Register a new user with hashed password.
+     */
+    public String registerUser(String username, String plainPassword) {
+        OpResult result = register(username, plainPassword);
+        return switch (result.code()) {
+            case OK -> "User registered successfully.";
+            case ALREADY_EXISTS -> "Username already taken.";
+            case UNAVAILABLE, BUSY -> result.detail();
+            default -> "Registration failed: " + result.detail();
+        };
+    }
 
-            int rowsAffected = pst.executeUpdate();
-            return (rowsAffected > 0) ? "User registered successfully." : "User registration failed.";
+    /**
+     * Typed form of registerUser.
+     */
+    public OpResult register(String username, String plainPassword) {
+        // Hash the password using BCrypt on the hasher pool, before touching the store
+        String hashedPassword;
+        try {
+            hashedPassword = hasher.hash(plainPassword);
+        } catch (PasswordHasher.BusyException e) {
+            return OpResult.of(ResultCode.BUSY, e.getMessage());
+        }
 
+        try {
+            store.createUser(username, hashedPassword);
+            return OpResult.ok(1);
         } catch (SQLException e) {
-            if (e.getMessage().contains("duplicate key")) {
-                return "Username already taken.";
-            }
-            return "Registration failed: " + e.getMessage();
+            return failure(e);
         }
     }
     
@@ -91,162 +183,398 @@ public class DBOperations {
      * Validate user login with hashed password check.
      */
     public String loginUser(String username, String plainPassword) {
-        String fetchQuery = "SELECT password, login_attempts FROM USERS WHERE username = ?";
-        String updateSuccessQuery = "UPDATE USERS SET login_attempts = 0, last_login = NOW() WHERE username = ?";
-        String updateFailQuery = "UPDATE USERS SET login_attempts = login_attempts + 1 WHERE username = ?";
-
-        
-        
-        try (Connection conn = dbc.getConnection();
-             PreparedStatement fetchPst = conn.prepareStatement(fetchQuery)) {
-
-            if (conn == null) return "Connection not established.";
-
-            fetchPst.setString(1, username);
-            ResultSet rs = fetchPst.executeQuery();
-
-            if (rs.next()) {
-                String storedHash = rs.getString("password");
-                int attempts = rs.getInt("login_attempts"); // login attempts
-                
-                if (BCrypt.checkpw(plainPassword, storedHash)) {
-                    try (PreparedStatement updateSuccessPst = conn.prepareStatement(updateSuccessQuery)) {
-                    updateSuccessPst.setString(1, username);
-                    updateSuccessPst.executeUpdate();
-                    }
-                    return "Login successful.";
-                } else {
-                    try (PreparedStatement updateFailPst = conn.prepareStatement(updateFailQuery)) {
-                    updateFailPst.setString(1, username);
-                    updateFailPst.executeUpdate();
-                    }
-                    return "Incorrect password. Attempt " + (attempts + 1);
-                }
-            } else {
-                return "User not found.";
+        OpResult result = login(username, plainPassword);
+        return switch (result.code()) {
+            case OK -> "Login successful.";
+            case NOT_FOUND -> "User not found.";
+            case INVALID_CREDENTIALS -> "Incorrect password. Attempt " + result.count();
+            case LOCKED -> "Account locked after " + result.count() + " failed attempts. Try again later.";
+            case UNAVAILABLE, BUSY -> result.detail();
+            default -> "Login failed: " + result.detail();
+        };
+    }
+
+    /**
+     * Typed form of loginUser. For INVALID_CREDENTIALS and LOCKED, count is the number of failed attempts.
+     * The attempt is counted as failed before any BCrypt work is done, atomically with the lockout
+     * check, so concurrent wrong passwords cannot all be verified; a match resets the count, and
+     * an attempt whose password was never checked (the hasher was busy) is taken back.
+     * The connection is given back to the pool while BCrypt runs, and the bookkeeping is done
+     * by the store or queued on the write-behind tracker.
+     */
+    public OpResult login(String username, String plainPassword) {
+        StudentStore.LoginReservation reservation;
+        try {
+            Optional<StudentStore.LoginReservation> reserved = reserveLogin(username);
+            if (reserved.isEmpty()) {
+                return OpResult.of(ResultCode.NOT_FOUND, null);
             }
+            reservation = reserved.get();
+        } catch (SQLException e) {
+            return failure(e);
+        }
+        if (reservation.locked()) {
+            return new OpResult(ResultCode.LOCKED, reservation.attempts(), null);
+        }
+
+        boolean matches;
+        try {
+            matches = hasher.verify(plainPassword, reservation.passwordHash());
+        } catch (PasswordHasher.BusyException e) {
+            return releaseLogin(username, reservation, OpResult.of(ResultCode.BUSY, e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return releaseLogin(username, reservation, OpResult.of(ResultCode.FAILED, e.getMessage()));
+        }
+
+        if (loginTracker != null) {
+            if (matches) {
+                loginTracker.recordSuccess(username);
+                return OpResult.ok(1);
+            }
+            loginTracker.recordFailure(username);
+            return new OpResult(ResultCode.INVALID_CREDENTIALS, reservation.attempts(), null);
+        }
+        if (!matches) {
+            return new OpResult(ResultCode.INVALID_CREDENTIALS, reservation.attempts(), null);
+        }
+        try {
+            store.recordLoginSuccess(username);
+            return OpResult.ok(1);
+        } catch (SQLException e) {
+            return failure(e);
+        }
+    }
 
+    // The server's own overload is not a failed guess
+    private OpResult releaseLogin(String username, StudentStore.LoginReservation reservation, OpResult result) {
+        if (loginTracker != null) {
+            loginTracker.release(username);
+            return result;
+        }
+        try {
+            store.releaseLogin(username, reservation);
+            return result;
         } catch (SQLException e) {
-            return "Login failed: " + e.getMessage();
+            return failure(e);
+        }
+    }
+
+    private Optional<StudentStore.LoginReservation> reserveLogin(String username) throws SQLException {
+        if (loginTracker == null) {
+            return store.reserveLogin(username, maxLoginAttempts, lockoutSeconds);
         }
+        Optional<StudentStore.LoginState> stored = store.findLogin(username, lockoutSeconds);
+        if (stored.isEmpty()) return Optional.empty();
+        return Optional.of(loginTracker.reserve(username, stored.get(), maxLoginAttempts));
     }
     
     /**
      * Inserts a new student record into the database.
      */
     public String insert(String studentId, String studentName, String studentCourse) {
-        String query = "INSERT INTO STUDENTS (student_id, student_name, student_course) VALUES (?, ?, ?)";
-        try (Connection conn = dbc.getConnection();
-             PreparedStatement pst = conn.prepareStatement(query)) {
-
-            if (conn == null) return "Connection not established.";
-
-            pst.setString(1, studentId);
-            pst.setString(2, studentName);
-            pst.setString(3, studentCourse);
-
-            int rowsAffected = pst.executeUpdate();
+        try {
+            int rowsAffected = insertStudent(new Student(studentId, studentName, studentCourse));
             return (rowsAffected > 0) ? "Record inserted successfully." : "Insert failed.";
-
         } catch (SQLException e) {
-            return "Operation failed: " + e.getMessage();
+            return failureMessage(e);
         }
     }
-    
+
     /**
-     * Register a new user
+     * Typed form of insert.
+     * @return the number of rows inserted.
      */
+    public int insertStudent(Student student) throws SQLException {
+        try {
+            if (changes == null) return store.insertStudent(student);
+            return changes.apply(StudentChange.Type.INSERT, student, () -> store.insertStudent(student));
+        } finally {
+            dataVersion.incrementAndGet();
+        }
+    }
 
     /**
      * Retrieves a student record by ID.
      */
     public String select(String studentId) {
-        String query = "SELECT * FROM STUDENTS WHERE student_id = ?";
-        StringBuilder result = new StringBuilder();
-
-        try (Connection conn = dbc.getConnection();
-             PreparedStatement pst = conn.prepareStatement(query)) {
+        try {
+            return findStudent(studentId)
+                    .map(DBOperations::describe)
+                    .orElse("No student found with ID " + studentId);
+        } catch (SQLException e) {
+            return failureMessage(e);
+        }
+    }
 
-            if (conn == null) return "Connection not established.";
+    /**
+     * Typed form of select. Concurrent calls are looked up in batches unless select.batch.enabled is off.
+     */
+    public Optional<Student> findStudent(String studentId) throws SQLException {
+        if (lookups != null) return lookups.find(studentId);
+        return store.findStudent(studentId);
+    }
 
-            pst.setString(1, studentId);
-            ResultSet rs = pst.executeQuery();
+    /**
+     * Formats a student the way select() has always shown it.
+     */
+    public static String describe(Student student) {
+        return "ID: " + student.id() + "\nName: " + student.name() + "\nCourse: " + student.course() + "\n";
+    }
 
-            boolean found = false;
-            while (rs.next()) {
-                found = true;
-                result.append("ID: ").append(rs.getString("student_id"))
-                      .append("\nName: ").append(rs.getString("student_name"))
-                      .append("\nCourse: ").append(rs.getString("student_course"))
-                      .append("\n");
-            }
+    /**
+     * Updates a student's name and course.
+     */
+    public String update(String studentId, String newStudentName, String newStudentCourse) {
+        try {
+            int rowsAffected = updateStudent(new Student(studentId, newStudentName, newStudentCourse));
+            return (rowsAffected > 0) ? "Record updated successfully." : "Update failed.";
+        } catch (SQLException e) {
+            return failureMessage(e);
+        }
+    }
 
-            return found ? result.toString() : "No student found with ID " + studentId;
+    /**
+     * Typed form of update.
+     * @return the number of rows updated.
+     */
+    public int updateStudent(Student student) throws SQLException {
+        try {
+            if (changes == null) return store.updateStudent(student);
+            return changes.apply(StudentChange.Type.UPDATE, student, () -> store.updateStudent(student));
+        } finally {
+            dataVersion.incrementAndGet();
+        }
+    }
 
+    /**
+     * Deletes a student record.
+     */
+    public String delete(String studentId) {
+        try {
+            int rowsAffected = deleteStudent(studentId);
+            return (rowsAffected > 0) ? "Record deleted successfully." : "Delete failed.";
         } catch (SQLException e) {
-            return "Operation failed: " + e.getMessage();
+            return failureMessage(e);
         }
     }
 
     /**
-     * Updates a student's name and course.
+     * Typed form of delete.
+     * @return the number of rows deleted.
      */
-    public String update(String studentId, String newStudentName, String newStudentCourse) {
-        String query = "UPDATE STUDENTS SET student_name = ?, student_course = ? WHERE student_id = ?";
-        try (Connection conn = dbc.getConnection();
-             PreparedStatement pst = conn.prepareStatement(query)) {
+    public int deleteStudent(String studentId) throws SQLException {
+        try {
+            if (changes == null) return store.deleteStudent(studentId);
+            return changes.apply(StudentChange.Type.DELETE, new Student(studentId, null, null),
+                    () -> store.deleteStudent(studentId));
+        } finally {
+            dataVersion.incrementAndGet();
+        }
+    }
 
-            if (conn == null) return "Connection not established.";
+    /**
+     * Students taking course, one page at a time in id order.
+     * @param afterId last id of the previous page, or null for the first page.
+     * @param limit page size; 0 or less means query.defaultLimit, and it is capped at query.maxLimit.
+     */
+    public StudentBatch findByCourse(String course, String afterId, int limit) throws SQLException {
+        int n = pageLimit(limit);
+        return page(store.findByCourse(course, afterId, n + 1), n);
+    }
 
-            pst.setString(1, newStudentName);
-            pst.setString(2, newStudentCourse);
-            pst.setString(3, studentId);
+    /**
+     * Students whose name starts with prefix, ignoring case; paged like findByCourse.
+     */
+    public StudentBatch findByNamePrefix(String prefix, String afterId, int limit) throws SQLException {
+        int n = pageLimit(limit);
+        return page(store.findByNamePrefix(prefix == null ? "" : prefix, afterId, n + 1), n);
+    }
 
-            int rowsAffected = pst.executeUpdate();
-            return (rowsAffected > 0) ? "Record updated successfully." : "Update failed.";
+    /**
+     * Students whose name contains text, ignoring case; paged like findByCourse.
+     */
+    public StudentBatch findByName(String text, String afterId, int limit) throws SQLException {
+        int n = pageLimit(limit);
+        return page(store.findByNameContaining(text == null ? "" : text, afterId, n + 1), n);
+    }
 
-        } catch (SQLException e) {
-            return "Operation failed: " + e.getMessage();
+    /**
+     * All students in order of orderBy ("id", "name" or "course"), a page at a time.
+     * @param after last student of the previous page, or null to start at offset.
+     * @param offset rows to skip, for jumping into the list; paging on with after is cheaper.
+     * @throws IllegalArgumentException for an unknown column or a negative offset.
+     */
+    public StudentBatch listStudents(String orderBy, boolean descending, Student after, int offset, int limit)
+            throws SQLException {
+        StudentStore.SortColumn column;
+        try {
+            column = StudentStore.SortColumn.valueOf(orderBy.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IllegalArgumentException("Cannot order students by " + orderBy);
         }
+        if (offset < 0) throw new IllegalArgumentException("Negative offset " + offset);
+        int n = pageLimit(limit);
+        return page(store.listStudents(column, descending, after, offset, n + 1), n);
+    }
+
+    public long countStudents() throws SQLException {
+        return store.countStudents();
+    }
+
+    private static int pageLimit(int requested) {
+        int max = Math.max(1, ServerConfig.queryMaxLimit());
+        return (requested <= 0) ? Math.min(ServerConfig.queryDefaultLimit(), max) : Math.min(requested, max);
+    }
+
+    // One row more than the page was fetched, to tell whether another page follows
+    private static StudentBatch page(List<Student> rows, int limit) {
+        boolean hasMore = rows.size() > limit;
+        return new StudentBatch(hasMore ? new ArrayList<>(rows.subList(0, limit)) : rows, hasMore);
+    }
+
+    // Message the string API has always returned for a failed student operation
+    public static String failureMessage(SQLException e) {
+        RequestMetrics.recordError(e);
+        return NO_CONNECTION.equals(e.getMessage()) ? NO_CONNECTION : "Operation failed: " + e.getMessage();
     }
 
     /**
-     * Deletes a student record.
+     * Maps an SQLException to the result code a typed caller should see.
      */
-    public String delete(String studentId) {
-        String query = "DELETE FROM STUDENTS WHERE student_id = ?";
-        try (Connection conn = dbc.getConnection();
-             PreparedStatement pst = conn.prepareStatement(query)) {
+    public static OpResult failure(SQLException e) {
+        RequestMetrics.recordError(e);
+        String state = e.getSQLState();
+        if (state != null && state.startsWith("08")) return OpResult.of(ResultCode.UNAVAILABLE, e.getMessage());
+        if ("23505".equals(state)) return OpResult.of(ResultCode.ALREADY_EXISTS, e.getMessage());
+        return OpResult.of(ResultCode.FAILED, e.getMessage());
+    }
+    
+    /**
+     * Inserts many student records in one transaction.
+     * @return one result message per record, in input order.
+     */
+    public List<String> insertAll(List<Student> students) {
+        return applyBatch(students.size(),
+                logged(StudentChange.Type.INSERT, students, () -> store.insertAll(students)),
+                "Record inserted successfully.", "Insert failed.");
+    }
+
+    /**
+     * Updates the name and course of many students in one transaction.
+     * @return one result message per record, in input order.
+     */
+    public List<String> updateAll(List<Student> students) {
+        return applyBatch(students.size(),
+                logged(StudentChange.Type.UPDATE, students, () -> store.updateAll(students)),
+                "Record updated successfully.", "Update failed.");
+    }
 
-            if (conn == null) return "Connection not established.";
+    /**
+     * Deletes many student records in one transaction.
+     * @return one result message per id, in input order.
+     */
+    public List<String> deleteAll(List<String> studentIds) {
+        List<Student> deleted = studentIds.stream().map(id -> new Student(id, null, null)).toList();
+        return applyBatch(studentIds.size(),
+                logged(StudentChange.Type.DELETE, deleted, () -> store.deleteAll(studentIds)),
+                "Record deleted successfully.", "Delete failed.");
+    }
 
-            pst.setString(1, studentId);
-            int rowsAffected = pst.executeUpdate();
+    // The batch call, recording its changes in the feed when there is one
+    private BatchCall logged(StudentChange.Type type, List<Student> students, BatchCall call) {
+        if (changes == null) return call;
+        return () -> changes.applyAll(type, students, call::run);
+    }
 
-            return (rowsAffected > 0) ? "Record deleted successfully." : "Delete failed.";
+    /**
+     * Up to maxChanges student writes after afterSequence, oldest first; see ChangeBatch.
+     * @throws UnsupportedOperationException when the change feed is off.
+     */
+    public ChangeBatch fetchChanges(long afterSequence, int maxChanges) {
+        if (changes == null) {
+            throw new UnsupportedOperationException("The change feed is disabled (changefeed.capacity=0).");
+        }
+        return changes.fetch(afterSequence, maxChanges);
+    }
+
+    /**
+     * One all-or-nothing batch call against the store.
+     */
+    private interface BatchCall {
+        int[] run() throws SQLException;
+    }
 
+    /**
+     * Runs a batch and turns its update counts into one message per row.
+     * If the batch failed, the failing row gets the error and the others are reported as rolled back.
+     */
+    private List<String> applyBatch(int size, BatchCall call, String successMessage, String failureMessage) {
+        if (size == 0) return Collections.emptyList();
+        try {
+            List<String> results = new ArrayList<>(size);
+            for (int count : call.run()) {
+                results.add((count > 0 || count == Statement.SUCCESS_NO_INFO) ? successMessage : failureMessage);
+            }
+            return results;
         } catch (SQLException e) {
-            return "Operation failed: " + e.getMessage();
+            return rolledBack(size, failedRow(e), e);
+        } finally {
+            dataVersion.incrementAndGet();
         }
     }
-    
+
+    /**
+     * Works out which row made a batch fail, or -1 if the driver doesn't say.
+     */
+    static int failedRow(SQLException e) {
+        if (e instanceof BatchUpdateException bue) {
+            // Drivers either stop at the failing row or mark it EXECUTE_FAILED
+            int[] counts = bue.getUpdateCounts();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == Statement.EXECUTE_FAILED) return i;
+            }
+            return counts.length;
+        }
+        return -1;
+    }
+
+    private static List<String> rolledBack(int size, int failedRow, SQLException e) {
+        SQLException cause = (e.getNextException() != null) ? e.getNextException() : e;
+        // One failed batch is one error, however many rows carry its message
+        String failed = failureMessage(cause);
+        List<String> results = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            results.add(i == failedRow || failedRow < 0 ? failed : "Not applied: batch rolled back.");
+        }
+        return results;
+    }
+
+    /**
+     * Opens a cursor that streams all student records in chunks of fetchSize.
+     * With the JDBC store the cursor holds a pooled connection until it is closed.
+     */
+    public StudentCursor openStudentCursor(int fetchSize) throws SQLException {
+        return store.openStudentCursor(fetchSize);
+    }
+
     /*
     * This method retrieves all stored data on students
     * Useful for PDF report generation
+    * Kept for older clients; new code should page through openStudentCursor instead.
     */
     public String getAllStudents() {
-        String query = "SELECT * FROM STUDENTS";
         StringBuilder result = new StringBuilder();
-        try (Connection conn = dbc.getConnection(); 
-             PreparedStatement pst = conn.prepareStatement(query);
-             ResultSet rs = pst.executeQuery()) {
-                while (rs.next()) {
-               result.append("ID: ").append(rs.getString("student_id")).append(", ");
-               result.append("Name: ").append(rs.getString("student_name")).append(", ");
-               result.append("Course: ").append(rs.getString("student_course")).append("\n");
+        try (StudentCursor cursor = openStudentCursor(ServerConfig.cursorFetchSize())) {
+            while (!cursor.isExhausted()) {
+                for (Student s : cursor.next()) {
+                    result.append("ID: ").append(s.id()).append(", ");
+                    result.append("Name: ").append(s.name()).append(", ");
+                    result.append("Course: ").append(s.course()).append("\n");
+                }
             }
             return result.toString();
         } catch (SQLException e) {
+            RequestMetrics.recordError(e);
             return "Error retrieving students: " + e.getMessage();
         }
     }
@@ -0,0 +1,570 @@
+package server;
+
+import rmi.Student;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * EmbeddedStudentStore runs without a database server but survives restarts.
+ * Records are served from a {@link MemoryStudentStore}; every change is also
+ * appended to a {@link WriteAheadLog} in the store directory, and the whole store
+ * is periodically written out as a {@link StoreSnapshot}. On startup the newest
+ * snapshot is loaded and the log is replayed from the snapshot's position.
+ *
+ * Log frames hold the resulting state of each changed record (not the operation),
+ * so replaying a frame twice is harmless. A write returns once its frame is on
+ * disk; with store.wal.syncCommit=false it returns as soon as it is logged, and a
+ * crash may lose the last sync interval of writes.
+ *
+ * If the log cannot be written the store stops accepting writes (SQLState 58030),
+ * since memory would otherwise run ahead of what a restart can recover. A write whose
+ * frame could not be encoded (a string too long, SQLState 22001) or appended is undone
+ * in memory. One whose frame was appended but not synced also fails, yet keeps its
+ * change: like a commit whose acknowledgement was lost, the frame may have reached
+ * the disk.
+ */
+public class EmbeddedStudentStore implements StudentStore, AutoCloseable {
+
+    // Log record types
+    private static final byte PUT_STUDENT = 1;
+    private static final byte DELETE_STUDENT = 2;
+    private static final byte PUT_USER = 3;
+
+    private final Path dir;
+    private final MemoryStudentStore memory;
+    private final WriteAheadLog wal;
+    private final boolean syncCommit;
+
+    // Writers hold a key lock while changing memory and appending, so the log order
+    // matches the order changes were applied; snapshots take the checkpoint write
+    // lock to see a state that matches a log position exactly.
+    private final ReentrantLock[] keyLocks = new ReentrantLock[256];
+    private final ReentrantReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+    private final Object snapshotMonitor = new Object();
+    private final ScheduledExecutorService snapshotter;
+    private final Thread shutdownHook = new Thread(this::closeQuietly, "store-shutdown");
+    private volatile long snapshotLsn;
+    private volatile boolean closed;
+
+    public EmbeddedStudentStore(Path dir) throws IOException {
+        this.dir = dir;
+        this.memory = new MemoryStudentStore();
+        this.syncCommit = ServerConfig.walSyncCommit();
+        for (int i = 0; i < keyLocks.length; i++) {
+            keyLocks[i] = new ReentrantLock();
+        }
+
+        long start = System.nanoTime();
+        Files.createDirectories(dir);
+        StoreSnapshot snapshot = StoreSnapshot.readLatest(dir);
+        if (snapshot != null) {
+            snapshot.students().forEach(memory::putStudent);
+            snapshot.users().forEach(memory::putUser);
+            snapshotLsn = snapshot.lsn();
+        }
+        long loaded = System.nanoTime();
+        long[] replayed = new long[1];
+        wal = new WriteAheadLog(dir, ServerConfig.walSegmentBytes(), ServerConfig.walSyncIntervalMillis(),
+                snapshotLsn, payload -> {
+                    replay(payload);
+                    replayed[0]++;
+                });
+        long done = System.nanoTime();
+        System.out.printf("Embedded store recovered %d students and %d users from %s in %d ms "
+                        + "(snapshot %d ms, %d log frames replayed in %d ms).%n",
+                memory.getStudentCount(), memory.copyUsers().size(), dir.toAbsolutePath(),
+                (done - start) / 1_000_000, (loaded - start) / 1_000_000, replayed[0], (done - loaded) / 1_000_000);
+
+        long interval = ServerConfig.snapshotIntervalMillis();
+        if (interval > 0) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "store-snapshot");
+                t.setDaemon(true);
+                return t;
+            });
+            snapshotter.scheduleWithFixedDelay(this::snapshotQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            snapshotter = null;
+        }
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Opens the store, for callers that cannot handle an IOException.
+     */
+    public static EmbeddedStudentStore open(Path dir) {
+        try {
+            return new EmbeddedStudentStore(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open embedded store in " + dir + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int insertStudent(Student student) throws SQLException {
+        return write(student.id(), (frame, undo) -> {
+            undo.push(restoreStudents(List.of(student.id())));
+            int rows = memory.insertStudent(student);
+            frame.putStudent(student);
+            return rows;
+        });
+    }
+
+    @Override
+    public Optional<Student> findStudent(String studentId) {
+        return memory.findStudent(studentId);
+    }
+
+    @Override
+    public Map<String, Student> findStudents(Collection<String> studentIds) {
+        return memory.findStudents(studentIds);
+    }
+
+    @Override
+    public int updateStudent(Student student) throws SQLException {
+        return write(student.id(), (frame, undo) -> {
+            undo.push(restoreStudents(List.of(student.id())));
+            int rows = memory.updateStudent(student);
+            if (rows > 0) frame.putStudent(student);
+            return rows;
+        });
+    }
+
+    @Override
+    public int deleteStudent(String studentId) throws SQLException {
+        return write(studentId, (frame, undo) -> {
+            undo.push(restoreStudents(List.of(studentId)));
+            int rows = memory.deleteStudent(studentId);
+            if (rows > 0) frame.deleteStudent(studentId);
+            return rows;
+        });
+    }
+
+    // A batch is one frame, so after a crash it is either replayed whole or not at all
+
+    @Override
+    public int[] insertAll(List<Student> students) throws SQLException {
+        return writeAll((frame, undo) -> {
+            undo.push(restoreStudents(students.stream().map(Student::id).toList()));
+            int[] counts = memory.insertAll(students);
+            students.forEach(frame::putStudent);
+            return counts;
+        });
+    }
+
+    @Override
+    public int[] updateAll(List<Student> students) throws SQLException {
+        return writeAll((frame, undo) -> {
+            undo.push(restoreStudents(students.stream().map(Student::id).toList()));
+            int[] counts = memory.updateAll(students);
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) frame.putStudent(students.get(i));
+            }
+            return counts;
+        });
+    }
+
+    @Override
+    public int[] deleteAll(List<String> studentIds) throws SQLException {
+        return writeAll((frame, undo) -> {
+            undo.push(restoreStudents(studentIds));
+            int[] counts = memory.deleteAll(studentIds);
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) frame.deleteStudent(studentIds.get(i));
+            }
+            return counts;
+        });
+    }
+
+    @Override
+    public List<Student> findByCourse(String course, String afterId, int limit) {
+        return memory.findByCourse(course, afterId, limit);
+    }
+
+    @Override
+    public List<Student> findByNamePrefix(String prefix, String afterId, int limit) {
+        return memory.findByNamePrefix(prefix, afterId, limit);
+    }
+
+    @Override
+    public List<Student> findByNameContaining(String text, String afterId, int limit) {
+        return memory.findByNameContaining(text, afterId, limit);
+    }
+
+    @Override
+    public List<Student> listStudents(SortColumn column, boolean descending, Student after, int offset, int limit) {
+        return memory.listStudents(column, descending, after, offset, limit);
+    }
+
+    @Override
+    public long countStudents() {
+        return memory.countStudents();
+    }
+
+    @Override
+    public StudentCursor openStudentCursor(int fetchSize) {
+        return memory.openStudentCursor(fetchSize);
+    }
+
+    @Override
+    public void createUser(String username, String passwordHash) throws SQLException {
+        write(username, (frame, undo) -> {
+            undo.push(restoreUser(username));
+            memory.createUser(username, passwordHash);
+            frame.putUser(username, memory.getUser(username));
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<LoginState> findLogin(String username, long lockoutSeconds) {
+        return memory.findLogin(username, lockoutSeconds);
+    }
+
+    @Override
+    public void recordLoginSuccess(String username) throws SQLException {
+        write(username, (frame, undo) -> {
+            undo.push(restoreUser(username));
+            memory.recordLoginSuccess(username);
+            MemoryStudentStore.User user = memory.getUser(username);
+            if (user != null) frame.putUser(username, user);
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<LoginReservation> reserveLogin(String username, int maxAttempts, long lockoutSeconds)
+            throws SQLException {
+        return write(username, (frame, undo) -> {
+            undo.push(restoreUser(username));
+            Optional<LoginReservation> reservation = memory.reserveLogin(username, maxAttempts, lockoutSeconds);
+            if (reservation.isPresent() && !reservation.get().locked()) {
+                frame.putUser(username, memory.getUser(username));
+            }
+            return reservation;
+        });
+    }
+
+    @Override
+    public void releaseLogin(String username, LoginReservation reservation) throws SQLException {
+        write(username, (frame, undo) -> {
+            undo.push(restoreUser(username));
+            memory.releaseLogin(username, reservation);
+            MemoryStudentStore.User user = memory.getUser(username);
+            if (user != null) frame.putUser(username, user);
+            return null;
+        });
+    }
+
+    /**
+     * Writes a snapshot now, unless nothing changed since the last one, and drops the
+     * log segments and snapshots it supersedes. Writers are paused only while the
+     * records are copied, not while the file is written.
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotMonitor) {
+            if (wal.position() == snapshotLsn) return;
+            StoreSnapshot snapshot;
+            checkpointLock.writeLock().lock();
+            try {
+                snapshot = new StoreSnapshot(wal.position(), memory.copyStudents(), memory.copyUsers());
+            } finally {
+                checkpointLock.writeLock().unlock();
+            }
+            long start = System.nanoTime();
+            Path file = snapshot.write(dir);
+            snapshotLsn = snapshot.lsn();
+            StoreSnapshot.deleteOlderThan(dir, snapshot.lsn());
+            wal.deleteSegmentsBefore(snapshot.lsn());
+            System.out.printf("Wrote snapshot %s (%d students) in %d ms.%n",
+                    file.getFileName(), snapshot.students().size(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    public int getStudentCount() {
+        return memory.getStudentCount();
+    }
+
+    /**
+     * Log counters (appends, syncs, frames per sync), useful for logging.
+     */
+    public String getStats() {
+        return wal.getStats();
+    }
+
+    /**
+     * Syncs the log and, unless store.snapshot.onClose is off, writes a final snapshot
+     * so the next start has nothing to replay.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (snapshotMonitor) {
+            if (closed) return;
+            closed = true;
+        }
+        if (snapshotter != null) {
+            snapshotter.shutdownNow();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down, possibly in that very hook
+        }
+        if (ServerConfig.snapshotOnClose()) {
+            snapshot();
+        }
+        wal.close();
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            System.err.println("Could not close embedded store cleanly: " + e.getMessage());
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException e) {
+            System.err.println("Snapshot failed, the log is kept: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Changes memory and fills in the log frame describing the change. Before changing
+     * memory it pushes onto undo how to restore it, used if the frame cannot be logged.
+     */
+    private interface Mutation<T> {
+        T apply(Frame frame, Deque<Runnable> undo) throws SQLException;
+    }
+
+    // Puts the given students back the way they are now; ids may repeat or be null
+    private Runnable restoreStudents(Collection<String> ids) {
+        Map<String, Student> before = memory.findStudents(ids);
+        return () -> {
+            for (String id : ids) {
+                Student old = before.get(id);
+                if (old != null) {
+                    memory.putStudent(old);
+                } else {
+                    memory.deleteStudent(id);
+                }
+            }
+        };
+    }
+
+    private Runnable restoreUser(String username) {
+        MemoryStudentStore.User before = memory.getUser(username);
+        return () -> memory.putUser(username, before);
+    }
+
+    private <T> T write(String key, Mutation<T> mutation) throws SQLException {
+        ReentrantLock keyLock = keyLocks[(key == null ? 0 : key.hashCode() & 0x7fffffff) % keyLocks.length];
+        checkpointLock.readLock().lock();
+        keyLock.lock();
+        long lsn;
+        T result;
+        try {
+            checkWritable();
+            Frame frame = new Frame();
+            Deque<Runnable> undo = new ArrayDeque<>();
+            result = apply(mutation, frame, undo);
+            lsn = log(frame, undo);
+        } finally {
+            keyLock.unlock();
+            checkpointLock.readLock().unlock();
+        }
+        awaitDurable(lsn);
+        return result;
+    }
+
+    // Batches may touch any key, so they take every key lock, in index order
+    private int[] writeAll(Mutation<int[]> mutation) throws SQLException {
+        checkpointLock.readLock().lock();
+        for (ReentrantLock lock : keyLocks) {
+            lock.lock();
+        }
+        long lsn;
+        int[] counts;
+        try {
+            checkWritable();
+            Frame frame = new Frame();
+            Deque<Runnable> undo = new ArrayDeque<>();
+            counts = apply(mutation, frame, undo);
+            lsn = log(frame, undo);
+        } finally {
+            for (int i = keyLocks.length - 1; i >= 0; i--) {
+                keyLocks[i].unlock();
+            }
+            checkpointLock.readLock().unlock();
+        }
+        awaitDurable(lsn);
+        return counts;
+    }
+
+    // A value the log cannot encode, a string over 65535 bytes in modified UTF-8, fails the write
+    // like a value too long for its column; memory may already have it, so it is undone
+    private static <T> T apply(Mutation<T> mutation, Frame frame, Deque<Runnable> undo) throws SQLException {
+        try {
+            return mutation.apply(frame, undo);
+        } catch (UncheckedIOException e) {
+            undo.forEach(Runnable::run);
+            throw new SQLException("Value too long to store: " + e.getCause().getMessage(), "22001", e.getCause());
+        }
+    }
+
+    private void checkWritable() throws SQLException {
+        try {
+            wal.checkUsable();
+        } catch (IOException e) {
+            throw storageFailure(e);
+        }
+    }
+
+    // Returns the LSN to wait for, or -1 if nothing changed. Caller holds the key locks of the
+    // change, so no other write has seen it when it is undone
+    private long log(Frame frame, Deque<Runnable> undo) throws SQLException {
+        if (frame.isEmpty()) return -1;
+        try {
+            return wal.append(frame.toBytes());
+        } catch (IOException e) {
+            undo.forEach(Runnable::run);
+            throw storageFailure(e);
+        }
+    }
+
+    private void awaitDurable(long lsn) throws SQLException {
+        if (lsn < 0 || !syncCommit) return;
+        try {
+            wal.awaitDurable(lsn);
+        } catch (IOException e) {
+            throw storageFailure(e);
+        }
+    }
+
+    private static SQLException storageFailure(IOException e) {
+        return new SQLException("Storage failure: " + e.getMessage(), "58030", e);
+    }
+
+    private void replay(ByteBuffer payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteBufferInput(payload));
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            byte type = in.readByte();
+            switch (type) {
+                case PUT_STUDENT -> memory.putStudent(
+                        new Student(in.readUTF(), StoreSnapshot.readString(in), StoreSnapshot.readString(in)));
+                case DELETE_STUDENT -> memory.deleteStudent(in.readUTF());
+                case PUT_USER -> memory.putUser(in.readUTF(), StoreSnapshot.readUser(in));
+                default -> throw new IOException("Unknown log record type " + type);
+            }
+        }
+    }
+
+    /**
+     * The records of one log frame: a count followed by typed records.
+     */
+    private static final class Frame {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private int count;
+
+        Frame() {
+            try {
+                out.writeInt(0); // patched with the count in toBytes()
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void putStudent(Student s) {
+            try {
+                out.writeByte(PUT_STUDENT);
+                out.writeUTF(s.id());
+                StoreSnapshot.writeString(out, s.name());
+                StoreSnapshot.writeString(out, s.course());
+                count++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void deleteStudent(String id) {
+            try {
+                out.writeByte(DELETE_STUDENT);
+                out.writeUTF(id);
+                count++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void putUser(String username, MemoryStudentStore.User user) {
+            try {
+                out.writeByte(PUT_USER);
+                out.writeUTF(username);
+                StoreSnapshot.writeUser(out, user);
+                count++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        byte[] toBytes() {
+            byte[] data = bytes.toByteArray();
+            ByteBuffer.wrap(data).putInt(0, count);
+            return data;
+        }
+    }
+
+    /**
+     * Reads a ByteBuffer as a stream, so log frames decode without being copied.
+     */
+    private static final class ByteBufferInput extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInput(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+}
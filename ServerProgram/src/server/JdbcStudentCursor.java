@@ -0,0 +1,79 @@
+package server;
+
+import rmi.Student;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JdbcStudentCursor streams the STUDENTS table in chunks over one pooled connection.
+ * The driver only keeps fetchSize rows in memory at a time, so the whole table is
+ * never materialised on the server.
+ */
+class JdbcStudentCursor implements StudentCursor {
+
+    private final Connection conn;
+    private final PreparedStatement pst;
+    private final ResultSet rs;
+    private final int fetchSize;
+    private volatile long lastAccess = System.currentTimeMillis();
+    private boolean exhausted;
+
+    JdbcStudentCursor(Connection conn, int fetchSize) throws SQLException {
+        this.conn = conn;
+        this.fetchSize = fetchSize;
+        // PostgreSQL only honours the fetch size inside a transaction
+        conn.setAutoCommit(false);
+        pst = conn.prepareStatement("SELECT " + JdbcStudentStore.STUDENT_COLUMNS + " FROM STUDENTS",
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        pst.setFetchSize(fetchSize);
+        rs = pst.executeQuery();
+    }
+
+    @Override
+    public synchronized List<Student> next() throws SQLException {
+        lastAccess = System.currentTimeMillis();
+        List<Student> chunk = new ArrayList<>(fetchSize);
+        while (!exhausted && chunk.size() < fetchSize) {
+            if (rs.next()) {
+                chunk.add(JdbcStudentStore.readStudent(rs));
+            } else {
+                exhausted = true;
+            }
+        }
+        return chunk;
+    }
+
+    @Override
+    public synchronized boolean isExhausted() {
+        return exhausted;
+    }
+
+    @Override
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * Releases the result set and hands the connection back to the pool.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            rs.close();
+            pst.close();
+        } catch (SQLException e) {
+            System.err.println("Failed to close student cursor: " + e.getMessage());
+        } finally {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                System.err.println("Failed to release cursor connection: " + e.getMessage());
+            }
+        }
+    }
+}
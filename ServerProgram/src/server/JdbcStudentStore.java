@@ -0,0 +1,451 @@
+package server;
+
+import rmi.Student;
+
+import java.sql.Array;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * JdbcStudentStore keeps students and users in PostgreSQL, borrowing connections
+ * from a DBConnection pool.
+ */
+public class JdbcStudentStore implements StudentStore {
+
+    // The columns of a student, selected in the order readStudent reads them
+    static final String STUDENT_COLUMNS = "student_id, student_name, student_course";
+
+    private final DBConnection dbc;
+
+    /**
+     * Creates a store over dbc, first bringing its schema up to date unless db.migrate is off.
+     */
+    public JdbcStudentStore(DBConnection dbc) {
+        this.dbc = dbc;
+        if (ServerConfig.schemaMigrate()) {
+            try {
+                SchemaMigrator.migrate(dbc);
+            } catch (SQLException e) {
+                System.err.println("Could not migrate the database schema: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The pool this store borrows from.
+     */
+    public DBConnection getConnectionPool() {
+        return dbc;
+    }
+
+    @Override
+    public int insertStudent(Student student) throws SQLException {
+        String query = "INSERT INTO STUDENTS (student_id, student_name, student_course) VALUES (?, ?, ?)";
+        try (Connection conn = borrow();
+             PreparedStatement pst = conn.prepareStatement(query)) {
+
+            pst.setString(1, student.id());
+            pst.setString(2, student.name());
+            pst.setString(3, student.course());
+            return pst.executeUpdate();
+        }
+    }
+
+    @Override
+    public Optional<Student> findStudent(String studentId) throws SQLException {
+        String query = "SELECT " + STUDENT_COLUMNS + " FROM STUDENTS WHERE student_id = ?";
+        try (Connection conn = borrowForRead();
+             PreparedStatement pst = conn.prepareStatement(query)) {
+
+            pst.setString(1, studentId);
+            try (ResultSet rs = pst.executeQuery()) {
+                if (!rs.next()) return Optional.empty();
+                return Optional.of(readStudent(rs));
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Student> findStudents(Collection<String> studentIds) throws SQLException {
+        Map<String, Student> found = new HashMap<>();
+        if (studentIds.isEmpty()) return found;
+        String query = "SELECT " + STUDENT_COLUMNS + " FROM STUDENTS WHERE student_id = ANY(?)";
+        try (Connection conn = borrowForRead();
+             PreparedStatement pst = conn.prepareStatement(query)) {
+
+            Array ids = conn.createArrayOf("varchar", studentIds.toArray());
+            try {
+                pst.setArray(1, ids);
+                try (ResultSet rs = pst.executeQuery()) {
+                    while (rs.next()) {
+                        Student s = readStudent(rs);
+                        found.put(s.id(), s);
+                    }
+                }
+            } finally {
+                ids.free();
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public int updateStudent(Student student) throws SQLException {
+        String query = "UPDATE STUDENTS SET student_name = ?, student_course = ? WHERE student_id = ?";
+        try (Connection conn = borrow();
+             PreparedStatement pst = conn.prepareStatement(query)) {
+
+            pst.setString(1, student.name());
+            pst.setString(2, student.course());
+            pst.setString(3, student.id());
+            return pst.executeUpdate();
+        }
+    }
+
+    @Override
+    public int deleteStudent(String studentId) throws SQLException {
+        String query = "DELETE FROM STUDENTS WHERE student_id = ?";
+        try (Connection conn = borrow();
+             PreparedStatement pst = conn.prepareStatement(query)) {
+
+            pst.setString(1, studentId);
+            return pst.executeUpdate();
+        }
+    }
+
+    @Override
+    public int[] insertAll(List<Student> students) throws SQLException {
+        String query = "INSERT INTO STUDENTS (student_id, student_name, student_course) VALUES (?, ?, ?)";
+        return executeBatch(query, students, (pst, s) -> {
+            pst.setString(1, s.id());
+            pst.setString(2, s.name());
+            pst.setString(3, s.course());
+        });
+    }
+
+    @Override
+    public int[] updateAll(List<Student> students) throws SQLException {
+        String query = "UPDATE STUDENTS SET student_name = ?, student_course = ? WHERE student_id = ?";
+        return executeBatch(query, students, (pst, s) -> {
+            pst.setString(1, s.name());
+            pst.setString(2, s.course());
+            pst.setString(3, s.id());
+        });
+    }
+
+    @Override
+    public int[] deleteAll(List<String> studentIds) throws SQLException {
+        String query = "DELETE FROM STUDENTS WHERE student_id = ?";
+        return executeBatch(query, studentIds, (pst, id) -> pst.setString(1, id));
+    }
+
+    /**
+     * Binds one row of a batch to its statement.
+     */
+    private interface RowBinder<T> {
+        void bind(PreparedStatement pst, T row) throws SQLException;
+    }
+
+    /**
+     * Runs query once per row using JDBC batching, sending batchSize rows per round trip
+     * and committing once at the end. If any row fails the whole transaction is rolled back.
+     */
+    private <T> int[] executeBatch(String query, List<T> rows, RowBinder<T> binder) throws SQLException {
+        int batchSize = Math.max(1, ServerConfig.batchSize());
+        int[] counts = new int[rows.size()];
+
+        try (Connection conn = borrow()) {
+            conn.setAutoCommit(false);
+            int chunkStart = 0;
+            try (PreparedStatement pst = conn.prepareStatement(query)) {
+                for (; chunkStart < rows.size(); chunkStart += batchSize) {
+                    int chunkEnd = Math.min(chunkStart + batchSize, rows.size());
+                    for (T row : rows.subList(chunkStart, chunkEnd)) {
+                        binder.bind(pst, row);
+                        pst.addBatch();
+                    }
+                    int[] chunkCounts = pst.executeBatch();
+                    System.arraycopy(chunkCounts, 0, counts, chunkStart, chunkCounts.length);
+                }
+                conn.commit();
+                return counts;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw (e instanceof BatchUpdateException bue) ? relativeToBatch(bue, counts, chunkStart) : e;
+            }
+        }
+    }
+
+    /**
+     * The driver reports update counts for the failed chunk only; prefix the counts of
+     * the chunks before it so they describe the whole batch.
+     */
+    private static BatchUpdateException relativeToBatch(BatchUpdateException e, int[] counts, int chunkStart) {
+        int[] chunkCounts = e.getUpdateCounts();
+        int[] all = Arrays.copyOf(counts, chunkStart + chunkCounts.length);
+        System.arraycopy(chunkCounts, 0, all, chunkStart, chunkCounts.length);
+        SQLException cause = (e.getNextException() != null) ? e.getNextException() : e;
+        return new BatchUpdateException(cause.getMessage(), cause.getSQLState(), cause.getErrorCode(), all, e);
+    }
+
+    @Override
+    public List<Student> findByCourse(String course, String afterId, int limit) throws SQLException {
+        return findPage("student_course = ?", course, afterId, limit);
+    }
+
+    @Override
+    public List<Student> findByNamePrefix(String prefix, String afterId, int limit) throws SQLException {
+        return findPage("lower(student_name) LIKE ? ESCAPE '\\'", likePattern(prefix) + "%", afterId, limit);
+    }
+
+    @Override
+    public List<Student> findByNameContaining(String text, String afterId, int limit) throws SQLException {
+        return findPage("lower(student_name) LIKE ? ESCAPE '\\'", "%" + likePattern(text) + "%", afterId, limit);
+    }
+
+    // Keyset paging: the next page starts after the last id seen, so deep pages cost no more than the first
+    private List<Student> findPage(String condition, String value, String afterId, int limit) throws SQLException {
+        String query = "SELECT " + STUDENT_COLUMNS + " FROM STUDENTS WHERE " + condition
+                + " AND student_id > ? ORDER BY student_id LIMIT ?";
+        try (Connection conn = borrowForRead();
+             PreparedStatement pst = conn.prepareStatement(query)) {
+
+            pst.setString(1, value);
+            pst.setString(2, afterId == null ? "" : afterId);
+            pst.setInt(3, limit);
+            List<Student> page = new ArrayList<>();
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    page.add(readStudent(rs));
+                }
+            }
+            return page;
+        }
+    }
+
+    /**
+     * Keyset paging on (column, student_id), with NULLs placed explicitly as
+     * SortColumn.comparator places them, so the index on the column serves each page.
+     * An offset is only needed for a jump. The order matches the comparator only with
+     * the "C" collation of schema migration 9.
+     */
+    @Override
+    public List<Student> listStudents(SortColumn column, boolean descending, Student after, int offset, int limit)
+            throws SQLException {
+        String col = column.sqlName();
+        String cmp = descending ? "<" : ">";
+        List<String> params = new ArrayList<>(2);
+        String where = "";
+        if (after != null && column == SortColumn.ID) {
+            where = " WHERE student_id " + cmp + " ?";
+            params.add(after.id());
+        } else if (after != null && column.valueOf(after) == null) {
+            // Rows without a value come last, or first when descending
+            where = descending
+                    ? " WHERE (" + col + " IS NULL AND student_id < ?) OR " + col + " IS NOT NULL"
+                    : " WHERE " + col + " IS NULL AND student_id > ?";
+            params.add(after.id());
+        } else if (after != null) {
+            where = " WHERE ((" + col + ", student_id) " + cmp + " (?, ?)"
+                    + (descending ? ")" : " OR " + col + " IS NULL)");
+            params.add(column.valueOf(after));
+            params.add(after.id());
+        }
+        String order;
+        if (column == SortColumn.ID) {
+            order = descending ? " ORDER BY student_id DESC" : " ORDER BY student_id";
+        } else {
+            order = descending
+                    ? " ORDER BY " + col + " DESC NULLS FIRST, student_id DESC"
+                    : " ORDER BY " + col + " ASC NULLS LAST, student_id";
+        }
+        String query = "SELECT " + STUDENT_COLUMNS + " FROM STUDENTS" + where + order + " LIMIT ? OFFSET ?";
+        try (Connection conn = borrowForRead();
+             PreparedStatement pst = conn.prepareStatement(query)) {
+
+            int i = 1;
+            for (String param : params) {
+                pst.setString(i++, param);
+            }
+            pst.setInt(i++, limit);
+            pst.setInt(i, offset);
+            List<Student> page = new ArrayList<>();
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    page.add(readStudent(rs));
+                }
+            }
+            return page;
+        }
+    }
+
+    @Override
+    public long countStudents() throws SQLException {
+        try (Connection conn = borrowForRead();
+             PreparedStatement pst = conn.prepareStatement("SELECT COUNT(*) FROM STUDENTS");
+             ResultSet rs = pst.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    // Reads the current row of a query that selected STUDENT_COLUMNS
+    static Student readStudent(ResultSet rs) throws SQLException {
+        return new Student(rs.getString(1), rs.getString(2), rs.getString(3));
+    }
+
+    // Lower-cases search text and escapes the LIKE wildcards in it
+    private static String likePattern(String text) {
+        return text.toLowerCase(Locale.ROOT)
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+
+    @Override
+    public StudentCursor openStudentCursor(int fetchSize) throws SQLException {
+        Connection conn = borrowForRead();
+        try {
+            return new JdbcStudentCursor(conn, fetchSize);
+        } catch (SQLException e) {
+            conn.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void createUser(String username, String passwordHash) throws SQLException {
+        String query = "INSERT INTO USERS (username, password) VALUES (?, ?)";
+        try (Connection conn = borrow();
+             PreparedStatement pst = conn.prepareStatement(query)) {
+
+            pst.setString(1, username);
+            pst.setString(2, passwordHash);
+            pst.executeUpdate();
+        }
+    }
+
+    // The lockout window is evaluated by the database clock, not the server's
+    @Override
+    public Optional<LoginState> findLogin(String username, long lockoutSeconds) throws SQLException {
+        String query = "SELECT password, login_attempts, "
+                + "last_failed_login > NOW() - (CAST(? AS INTEGER) * INTERVAL '1' SECOND) AS recently_failed "
+                + "FROM USERS WHERE username = ?";
+        try (Connection conn = borrow();
+             PreparedStatement pst = conn.prepareStatement(query)) {
+
+            pst.setInt(1, (int) lockoutSeconds);
+            pst.setString(2, username);
+            try (ResultSet rs = pst.executeQuery()) {
+                if (!rs.next()) return Optional.empty();
+                return Optional.of(new LoginState(rs.getString(1), rs.getInt(2), rs.getBoolean(3)));
+            }
+        }
+    }
+
+    @Override
+    public void recordLoginSuccess(String username) throws SQLException {
+        String query = "UPDATE USERS SET login_attempts = 0, last_login = NOW() WHERE username = ?";
+        try (Connection conn = borrow();
+             PreparedStatement pst = conn.prepareStatement(query)) {
+
+            pst.setString(1, username);
+            pst.executeUpdate();
+        }
+    }
+
+    // The row is locked from the lockout check to the increment, so concurrent attempts are
+    // all counted. The time is read from the database clock, like the lockout window
+    @Override
+    public Optional<LoginReservation> reserveLogin(String username, int maxAttempts, long lockoutSeconds)
+            throws SQLException {
+        String read = "SELECT password, login_attempts, last_failed_login, NOW(), "
+                + "COALESCE(last_failed_login > NOW() - (CAST(? AS INTEGER) * INTERVAL '1' SECOND), FALSE) "
+                + "FROM USERS WHERE username = ? FOR UPDATE";
+        String count = "UPDATE USERS SET login_attempts = login_attempts + 1, last_failed_login = ? WHERE username = ?";
+        try (Connection conn = borrow()) {
+            conn.setAutoCommit(false);
+            try {
+                LoginReservation reservation;
+                try (PreparedStatement pst = conn.prepareStatement(read)) {
+                    pst.setInt(1, (int) lockoutSeconds);
+                    pst.setString(2, username);
+                    try (ResultSet rs = pst.executeQuery()) {
+                        if (!rs.next()) {
+                            conn.commit();
+                            return Optional.empty();
+                        }
+                        int attempts = rs.getInt(2);
+                        if (maxAttempts > 0 && attempts >= maxAttempts && rs.getBoolean(5)) {
+                            reservation = LoginReservation.locked(attempts);
+                        } else {
+                            Timestamp before = rs.getTimestamp(3);
+                            reservation = new LoginReservation(false, rs.getString(1), attempts + 1,
+                                    rs.getTimestamp(4).toInstant(), (before == null) ? null : before.toInstant());
+                        }
+                    }
+                }
+                if (!reservation.locked()) {
+                    try (PreparedStatement pst = conn.prepareStatement(count)) {
+                        pst.setTimestamp(1, Timestamp.from(reservation.failedAt()));
+                        pst.setString(2, username);
+                        pst.executeUpdate();
+                    }
+                }
+                conn.commit();
+                return Optional.of(reservation);
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void releaseLogin(String username, LoginReservation reservation) throws SQLException {
+        String query = "UPDATE USERS SET login_attempts = GREATEST(login_attempts - 1, 0), "
+                + "last_failed_login = CASE WHEN last_failed_login = ? THEN ? ELSE last_failed_login END "
+                + "WHERE username = ?";
+        try (Connection conn = borrow();
+             PreparedStatement pst = conn.prepareStatement(query)) {
+
+            pst.setTimestamp(1, Timestamp.from(reservation.failedAt()));
+            if (reservation.failedBefore() != null) {
+                pst.setTimestamp(2, Timestamp.from(reservation.failedBefore()));
+            } else {
+                pst.setNull(2, Types.TIMESTAMP);
+            }
+            pst.setString(3, username);
+            pst.executeUpdate();
+        }
+    }
+
+    /**
+     * Borrows a pooled connection, failing with SQLState 08001 if none could be obtained.
+     */
+    private Connection borrow() throws SQLException {
+        Connection conn = dbc.getConnection();
+        if (conn == null) throw new SQLException(DBOperations.NO_CONNECTION, "08001");
+        return conn;
+    }
+
+    // Student reads may be served by a read replica; login state always comes from the primary
+    private Connection borrowForRead() throws SQLException {
+        Connection conn = dbc.getReadConnection();
+        if (conn == null) throw new SQLException(DBOperations.NO_CONNECTION, "08001");
+        return conn;
+    }
+}
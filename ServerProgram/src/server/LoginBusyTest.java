@@ -0,0 +1,92 @@
+package server;
+
+import rmi.OpResult;
+import rmi.ResultCode;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Test class for logins refused because the BCrypt queue is full. The server's own
+ * overload must not count as a failed guess: the attempt reserved before hashing is
+ * taken back, so login_attempts is the same afterwards, with or without write-behind.
+ * Uses the database configured by db.url, like Test.
+ */
+public class LoginBusyTest {
+
+    public static void main(String[] args) throws Exception {
+        // One worker and one queue slot, and hashes slow enough to keep both busy
+        System.setProperty("bcrypt.threads", "1");
+        System.setProperty("bcrypt.queueLimit", "1");
+        System.setProperty("bcrypt.logRounds", "12");
+        System.setProperty("bcrypt.timeoutMillis", "60000");
+        System.setProperty("login.flushIntervalMillis", "100");
+
+        check(new DBOperations(new MemoryStudentStore()), null, "memory store");
+        System.setProperty("login.writeBehind", "false");
+        check(new DBOperations(DBConnection.getDefault()), DBConnection.getDefault(), "JDBC store");
+        System.setProperty("login.writeBehind", "true");
+        check(new DBOperations(DBConnection.getDefault()), DBConnection.getDefault(), "JDBC store, write-behind");
+
+        System.out.println("Login busy test passed.");
+        System.exit(0);
+    }
+
+    private static void check(DBOperations dbo, DBConnection dbc, String name) throws Exception {
+        String user = "busy" + System.nanoTime();
+        System.out.println(dbo.registerUser(user, "right"));
+        System.out.println(dbo.loginUser(user, "wrong"));
+        Thread.sleep(300); // let write-behind flush
+        int before = attempts(dbo, dbc, user);
+
+        PasswordHasher hasher = PasswordHasher.getDefault();
+        for (int i = 0; i < 2; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    hasher.hash("filler");
+                } catch (PasswordHasher.BusyException e) {
+                    throw new AssertionError("filler rejected", e);
+                }
+            });
+            t.setDaemon(true);
+            t.start();
+        }
+        while (hasher.getActiveCount() < 1 || hasher.getQueueDepth() < 1) {
+            Thread.sleep(1);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            OpResult result = dbo.login(user, "right");
+            if (result.code() != ResultCode.BUSY) {
+                throw new AssertionError(name + ": expected BUSY, got " + result.code());
+            }
+        }
+        Thread.sleep(300);
+        int after = attempts(dbo, dbc, user);
+        if (after != before) {
+            throw new AssertionError(name + ": login_attempts went from " + before + " to " + after);
+        }
+        System.out.println("OK: " + name + ", login_attempts stays " + after + " after 10 busy logins");
+
+        while (hasher.getActiveCount() > 0 || hasher.getQueueDepth() > 0) {
+            Thread.sleep(10);
+        }
+        System.out.println(dbo.loginUser(user, "right"));
+    }
+
+    private static int attempts(DBOperations dbo, DBConnection dbc, String user) throws SQLException {
+        if (dbc == null) {
+            return dbo.getStore().findLogin(user, 0).orElseThrow().attempts();
+        }
+        try (Connection conn = dbc.getConnection();
+             PreparedStatement pst = conn.prepareStatement("SELECT login_attempts FROM USERS WHERE username = ?")) {
+            pst.setString(1, user);
+            try (ResultSet rs = pst.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+}
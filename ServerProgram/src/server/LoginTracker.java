@@ -0,0 +1,205 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LoginTracker is a write-behind queue for the login bookkeeping columns of USERS
+ * (login_attempts, last_login, last_failed_login).
+ *
+ * Login outcomes are coalesced per user in memory and written in one batch every
+ * flush interval, so a login costs a single database round trip. Lookups add the
+ * failures not yet committed to the stored count, so lockout is still enforced before
+ * the batch reaches the database. An attempt reserved but not yet checked counts as
+ * failed while in flight, and is only written once its outcome is known. Login times are taken from the database clock when
+ * the batch is written, like the lockout window is.
+ */
+public class LoginTracker {
+
+    private final DBConnection dbc;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    // Outcomes taken by the running flush; they count until its batch commits. Only changed
+    // inside pending.compute for the same user, so reserve sees each outcome exactly once
+    private final Map<String, Pending> flushing = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder written = new LongAdder();
+
+    /**
+     * Outcomes not yet written for one user. If reset is set, a successful login
+     * happened and failures counts the failed attempts made after it. inFlight counts
+     * reserved attempts whose password is still being checked; they are never written.
+     */
+    private record Pending(boolean reset, int failures, int inFlight) {
+
+        Pending then(Pending next) {
+            if (next.reset) return new Pending(true, next.failures, inFlight + next.inFlight);
+            return new Pending(reset, failures + next.failures, inFlight + next.inFlight);
+        }
+
+        boolean writable() {
+            return reset || failures > 0;
+        }
+
+        // Resolves one attempt in flight; null if nothing is left to remember
+        Pending resolve(Pending outcome) {
+            Pending p = new Pending(reset, failures, inFlight - 1).then(outcome);
+            return (p.writable() || p.inFlight > 0) ? p : null;
+        }
+
+        static Pending combine(Pending older, Pending newer) {
+            if (older == null) return newer;
+            return (newer == null) ? older : older.then(newer);
+        }
+    }
+
+    public LoginTracker(DBConnection dbc, long flushIntervalMillis) {
+        this.dbc = dbc;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "login-write-behind");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "login-write-behind-shutdown"));
+    }
+
+    /**
+     * The password of a reserved attempt matched.
+     */
+    public void recordSuccess(String username) {
+        resolve(username, new Pending(true, 0, 0));
+    }
+
+    /**
+     * The password of a reserved attempt did not match.
+     */
+    public void recordFailure(String username) {
+        resolve(username, new Pending(false, 1, 0));
+    }
+
+    /**
+     * The password of a reserved attempt was never checked, so it does not count.
+     */
+    public void release(String username) {
+        resolve(username, new Pending(false, 0, 0));
+    }
+
+    private void resolve(String username, Pending outcome) {
+        recorded.increment();
+        pending.computeIfPresent(username, (name, p) -> p.resolve(outcome));
+    }
+
+    /**
+     * Counts a failed attempt for the user before the password is checked, unless the
+     * account is locked by the stored state and the outcomes not yet written. The check
+     * and the count are one step; recordSuccess resets the count if the password matches.
+     * @param maxAttempts failures that lock the account, 0 for no lockout.
+     */
+    public StudentStore.LoginReservation reserve(String username, StudentStore.LoginState stored, int maxAttempts) {
+        StudentStore.LoginReservation[] reservation = new StudentStore.LoginReservation[1];
+        pending.compute(username, (name, p) -> {
+            Pending unwritten = Pending.combine(flushing.get(name), p);
+            int attempts = (unwritten == null) ? stored.attempts()
+                    : (unwritten.reset ? 0 : stored.attempts()) + unwritten.failures + unwritten.inFlight;
+            boolean recentlyFailed = stored.recentlyFailed()
+                    || (unwritten != null && unwritten.failures + unwritten.inFlight > 0);
+            if (maxAttempts > 0 && attempts >= maxAttempts && recentlyFailed) {
+                reservation[0] = StudentStore.LoginReservation.locked(attempts);
+                return p;
+            }
+            reservation[0] = new StudentStore.LoginReservation(false, stored.passwordHash(), attempts + 1, null, null);
+            Pending reserved = new Pending(false, 0, 1);
+            return (p == null) ? reserved : p.then(reserved);
+        });
+        return reservation[0];
+    }
+
+    /**
+     * Number of users with outcomes not yet committed.
+     */
+    public int getPendingCount() {
+        return pending.size() + flushing.size();
+    }
+
+    /**
+     * Number of login outcomes recorded and number of coalesced rows written so far.
+     */
+    public String getStats() {
+        return String.format("LoginWriteBehind[pending=%d, recorded=%d, written=%d]",
+                getPendingCount(), recorded.sum(), written.sum());
+    }
+
+    /**
+     * Writes all pending outcomes in one transaction. They stay visible to reserve until
+     * it commits; on failure they are merged back for the next flush.
+     */
+    synchronized void flush() {
+        if (pending.isEmpty()) return;
+
+        List<String> users = new ArrayList<>();
+        for (String username : pending.keySet()) {
+            pending.computeIfPresent(username, (name, p) -> {
+                if (!p.writable()) return p;
+                // Attempts still in flight stay behind
+                flushing.put(name, new Pending(p.reset, p.failures, 0));
+                users.add(name);
+                return (p.inFlight > 0) ? new Pending(false, 0, p.inFlight) : null;
+            });
+        }
+        if (users.isEmpty()) return;
+
+        String resetQuery = "UPDATE USERS SET login_attempts = ?, last_login = NOW(), "
+                + "last_failed_login = CASE WHEN ? > 0 THEN NOW() ELSE last_failed_login END WHERE username = ?";
+        String failQuery = "UPDATE USERS SET login_attempts = login_attempts + ?, last_failed_login = NOW() WHERE username = ?";
+
+        boolean committed = false;
+        try (Connection conn = dbc.getConnection()) {
+            if (conn == null) throw new SQLException("Connection not established.");
+
+            conn.setAutoCommit(false);
+            try (PreparedStatement resetPst = conn.prepareStatement(resetQuery);
+                 PreparedStatement failPst = conn.prepareStatement(failQuery)) {
+                for (String username : users) {
+                    Pending p = flushing.get(username);
+                    if (p.reset) {
+                        resetPst.setInt(1, p.failures);
+                        resetPst.setInt(2, p.failures);
+                        resetPst.setString(3, username);
+                        resetPst.addBatch();
+                    } else {
+                        failPst.setInt(1, p.failures);
+                        failPst.setString(2, username);
+                        failPst.addBatch();
+                    }
+                }
+                resetPst.executeBatch();
+                failPst.executeBatch();
+                conn.commit();
+                committed = true;
+                written.add(users.size());
+            }
+        } catch (SQLException e) {
+            System.err.println("Could not write login attempts, will retry: " + e.getMessage());
+        }
+
+        for (String username : users) {
+            boolean keep = !committed;
+            pending.compute(username, (name, p) -> {
+                Pending taken = flushing.remove(name);
+                // Older outcome first so newer ones win
+                return keep ? Pending.combine(taken, p) : p;
+            });
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package server;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * LruCache is a bounded, thread-safe cache with least-recently-used eviction
+ * and a time-to-live per entry.
+ *
+ * Loads happen outside the cache lock. A load that raced with an invalidation of
+ * its key is not stored, so a write going through {@link #invalidate(Object)} can
+ * never be hidden by an older value read from the database. Writes to other keys
+ * do not keep a load from being cached.
+ */
+public class LruCache<K, V> {
+
+    private final int maxSize;
+    private final LinkedHashMap<K, Entry<V>> map;
+    private final Map<K, Load> loads = new HashMap<>(); // keys being loaded, guarded by this
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public LruCache(int maxSize) {
+        this.maxSize = Math.max(1, maxSize);
+        this.map = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Computes the value for a key on a cache miss.
+     */
+    @FunctionalInterface
+    public interface Loader<K, V, E extends Exception> {
+        V load(K key) throws E;
+    }
+
+    /**
+     * Returns the cached value for key, loading it on a miss.
+     * If the loader throws, nothing is cached and the exception propagates.
+     * @param loader computes the value; it runs without holding the cache lock.
+     * @param ttlFor decides how long a freshly loaded value may be kept, in milliseconds.
+     *               A value of zero or less means the value is not cached.
+     */
+    public <E extends Exception> V get(K key, Loader<K, V, E> loader, ToLongFunction<V> ttlFor) throws E {
+        Load load;
+        long version;
+        synchronized (this) {
+            V cached = lookup(key);
+            if (cached != null) {
+                return cached;
+            }
+            load = loads.computeIfAbsent(key, k -> new Load());
+            load.loaders++;
+            version = load.version;
+        }
+        V value;
+        long ttl;
+        try {
+            value = loader.load(key);
+            ttl = (value == null) ? 0 : ttlFor.applyAsLong(value);
+        } catch (Throwable e) {
+            synchronized (this) {
+                finish(key, load);
+            }
+            throw e;
+        }
+        synchronized (this) {
+            finish(key, load);
+            if (value != null && ttl > 0 && load.version == version) {
+                store(key, value, ttl);
+            }
+        }
+        return value;
+    }
+
+    public synchronized V getIfPresent(K key) {
+        return lookup(key);
+    }
+
+    public synchronized void put(K key, V value, long ttlMillis) {
+        invalidateLoads(key);
+        store(key, value, ttlMillis);
+    }
+
+    public synchronized void invalidate(K key) {
+        invalidateLoads(key);
+        map.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        for (Load load : loads.values()) {
+            load.version++;
+        }
+        map.clear();
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    public double getHitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * One-line summary of the cache counters, useful for logging.
+     */
+    public String getStats() {
+        return String.format("Cache[size=%d/%d, hits=%d, misses=%d, hitRatio=%.2f, evictions=%d, expirations=%d]",
+                size(), maxSize, getHitCount(), getMissCount(), getHitRatio(),
+                getEvictionCount(), getExpirationCount());
+    }
+
+    // Caller holds the lock
+    private V lookup(K key) {
+        Entry<V> entry = map.get(key);
+        if (entry != null) {
+            if (entry.expiresAt > System.currentTimeMillis()) {
+                hits.increment();
+                return entry.value;
+            }
+            map.remove(key);
+            expirations.increment();
+        }
+        misses.increment();
+        return null;
+    }
+
+    // Caller holds the lock; loads of key already running will not be stored
+    private void invalidateLoads(K key) {
+        Load load = loads.get(key);
+        if (load != null) {
+            load.version++;
+        }
+    }
+
+    // Caller holds the lock
+    private void finish(K key, Load load) {
+        if (--load.loaders == 0) {
+            loads.remove(key);
+        }
+    }
+
+    // Caller holds the lock
+    private void store(K key, V value, long ttlMillis) {
+        map.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+        if (map.size() > maxSize) {
+            Iterator<Map.Entry<K, Entry<V>>> eldest = map.entrySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    // Loads of one key in progress; invalidating the key bumps version
+    private static final class Load {
+        int loaders;
+        long version;
+    }
+}
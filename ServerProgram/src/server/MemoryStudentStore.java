@@ -0,0 +1,719 @@
+package server;
+
+import rmi.Student;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * MemoryStudentStore keeps students and users in the server's heap. Nothing is
+ * persisted; it is meant for tests, benchmarks and as a baseline for the JDBC store.
+ *
+ * Students live in a hash index split into lock stripes by student_id. Each stripe
+ * is an open-addressing table of parallel arrays (cached hash codes and records),
+ * so a lookup touches no per-entry objects other than the record it returns.
+ * Reads are optimistic and only take the stripe's read lock if a write raced with
+ * them; writes lock one stripe, and batches lock all stripes to stay atomic.
+ *
+ * Two secondary indexes serve the search methods: course to ids, and lower-cased
+ * name plus id in one sorted set for prefix scans. Both are kept up to date while
+ * the record's stripe is locked, but readers see them weakly consistent, so each
+ * hit is checked against the record itself before it is returned. Prefix searches
+ * keep the sorted ids of their matches until a name with that prefix is added,
+ * changed or removed, so paging through them does not walk the whole name range for
+ * every page.
+ */
+public class MemoryStudentStore implements StudentStore {
+
+    private static final float LOAD_FACTOR = 0.75f;
+    private static final int PREFIX_MATCHES_KEPT = 16;
+
+    private final Stripe[] stripes;
+    private final int stripeShift;
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+    private final Map<String, NavigableSet<String>> idsByCourse = new ConcurrentHashMap<>();
+    private final NavigableSet<String> nameIndex = new ConcurrentSkipListSet<>();
+    // The ids whose lower-cased name starts with a prefix, sorted; guarded by itself
+    private final Map<String, String[]> prefixMatches = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+            return size() > PREFIX_MATCHES_KEPT;
+        }
+    };
+    private final List<PrefixLoad> prefixLoads = new ArrayList<>(); // guarded by prefixMatches
+
+    public MemoryStudentStore() {
+        this(ServerConfig.memoryStripes());
+    }
+
+    /**
+     * @param stripeCount number of lock stripes, rounded up to a power of two.
+     */
+    public MemoryStudentStore(int stripeCount) {
+        int bits = 32 - Integer.numberOfLeadingZeros(Math.max(1, stripeCount) - 1);
+        stripes = new Stripe[1 << bits];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+        // Stripes take the high bits of the hash, slots within a stripe the low bits
+        stripeShift = 32 - bits;
+    }
+
+    // Matches of a prefix being looked up; stale once a name with the prefix changed meanwhile
+    private static final class PrefixLoad {
+        final String prefix;
+        boolean stale;
+
+        PrefixLoad(String prefix) {
+            this.prefix = prefix;
+        }
+    }
+
+    // Login times are epoch milliseconds, 0 if never
+    record User(String passwordHash, int attempts, long lastLogin, long lastFailedLogin) {
+    }
+
+    @Override
+    public int insertStudent(Student student) throws SQLException {
+        int hash = hash(checkId(student.id()));
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            if (stripe.get(student.id(), hash) != null) throw duplicate(student.id());
+            stripe.put(student, hash);
+            reindex(null, student);
+            return 1;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Optional<Student> findStudent(String studentId) {
+        if (studentId == null) return Optional.empty();
+        int hash = hash(studentId);
+        return Optional.ofNullable(stripeFor(hash).read(studentId, hash));
+    }
+
+    @Override
+    public Map<String, Student> findStudents(Collection<String> studentIds) {
+        Map<String, Student> found = new HashMap<>();
+        for (String id : studentIds) {
+            findStudent(id).ifPresent(s -> found.put(s.id(), s));
+        }
+        return found;
+    }
+
+    @Override
+    public int updateStudent(Student student) {
+        if (student.id() == null) return 0;
+        int hash = hash(student.id());
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            Student old = stripe.replace(student, hash);
+            if (old == null) return 0;
+            reindex(old, student);
+            return 1;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int deleteStudent(String studentId) {
+        if (studentId == null) return 0;
+        int hash = hash(studentId);
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            Student old = stripe.remove(studentId, hash);
+            if (old == null) return 0;
+            reindex(old, null);
+            return 1;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int[] insertAll(List<Student> students) throws SQLException {
+        return applyBatch(students, (s, undo) -> {
+            int hash = hash(checkId(s.id()));
+            Stripe stripe = stripeFor(hash);
+            if (stripe.get(s.id(), hash) != null) throw duplicate(s.id());
+            stripe.put(s, hash);
+            reindex(null, s);
+            undo.push(() -> {
+                stripe.remove(s.id(), hash);
+                reindex(s, null);
+            });
+            return 1;
+        });
+    }
+
+    @Override
+    public int[] updateAll(List<Student> students) throws SQLException {
+        return applyBatch(students, (s, undo) -> {
+            if (s.id() == null) return 0;
+            int hash = hash(s.id());
+            Stripe stripe = stripeFor(hash);
+            Student old = stripe.replace(s, hash);
+            if (old == null) return 0;
+            reindex(old, s);
+            undo.push(() -> {
+                stripe.replace(old, hash);
+                reindex(s, old);
+            });
+            return 1;
+        });
+    }
+
+    @Override
+    public int[] deleteAll(List<String> studentIds) throws SQLException {
+        return applyBatch(studentIds, (id, undo) -> {
+            if (id == null) return 0;
+            int hash = hash(id);
+            Stripe stripe = stripeFor(hash);
+            Student old = stripe.remove(id, hash);
+            if (old == null) return 0;
+            reindex(old, null);
+            undo.push(() -> {
+                stripe.put(old, hash);
+                reindex(null, old);
+            });
+            return 1;
+        });
+    }
+
+    /**
+     * Applies one row of a batch while all stripes are locked, recording how to undo it.
+     */
+    private interface RowWriter<T> {
+        int apply(T row, Deque<Runnable> undo) throws SQLException;
+    }
+
+    private <T> int[] applyBatch(List<T> rows, RowWriter<T> writer) throws SQLException {
+        int[] counts = new int[rows.size()];
+        Deque<Runnable> undo = new ArrayDeque<>();
+        long[] stamps = new long[stripes.length];
+        // Always locked in index order, so two batches cannot deadlock
+        for (int i = 0; i < stripes.length; i++) {
+            stamps[i] = stripes[i].lock.writeLock();
+        }
+        try {
+            for (int i = 0; i < counts.length; i++) {
+                try {
+                    counts[i] = writer.apply(rows.get(i), undo);
+                } catch (SQLException e) {
+                    undo.forEach(Runnable::run);
+                    throw new BatchUpdateException(e.getMessage(), e.getSQLState(), 0, Arrays.copyOf(counts, i), e);
+                }
+            }
+            return counts;
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                stripes[i].lock.unlockWrite(stamps[i]);
+            }
+        }
+    }
+
+    @Override
+    public List<Student> findByCourse(String course, String afterId, int limit) {
+        NavigableSet<String> ids = (course == null) ? null : idsByCourse.get(course);
+        if (ids == null) return new ArrayList<>();
+        List<Student> page = new ArrayList<>();
+        // Ids are kept sorted, so the page is simply the next ids after afterId
+        for (String id : afterId == null ? ids : ids.tailSet(afterId, false)) {
+            if (page.size() == limit) break;
+            Student s = findStudent(id).orElse(null);
+            if (s != null && course.equals(s.course())) page.add(s);
+        }
+        return page;
+    }
+
+    @Override
+    public List<Student> findByNamePrefix(String prefix, String afterId, int limit) {
+        String lower = prefix.toLowerCase(Locale.ROOT);
+        String[] ids = prefixMatches(lower);
+        // Like the keyset query, each page starts right after afterId
+        int from = 0;
+        if (afterId != null) {
+            int i = Arrays.binarySearch(ids, afterId);
+            from = (i >= 0) ? i + 1 : -i - 1;
+        }
+        List<Student> page = new ArrayList<>(Math.max(0, Math.min(limit, ids.length - from)));
+        for (int i = from; i < ids.length && page.size() < limit; i++) {
+            Student s = findStudent(ids[i]).orElse(null);
+            if (s != null && s.name() != null && s.name().toLowerCase(Locale.ROOT).startsWith(lower)) {
+                page.add(s);
+            }
+        }
+        return page;
+    }
+
+    private String[] prefixMatches(String lower) {
+        PrefixLoad load = new PrefixLoad(lower);
+        synchronized (prefixMatches) {
+            String[] kept = prefixMatches.get(lower);
+            if (kept != null) return kept;
+            prefixLoads.add(load);
+        }
+        // Keys are ordered by name, so the matches form one contiguous range
+        NavigableSet<String> matches = nameIndex.subSet(lower, true, lower + Character.MAX_VALUE, true);
+        String[] ids = matches.stream()
+                .map(key -> key.substring(key.lastIndexOf(NAME_SEPARATOR) + 1))
+                .sorted()
+                .toArray(String[]::new);
+        synchronized (prefixMatches) {
+            prefixLoads.remove(load);
+            if (!load.stale) prefixMatches.put(lower, ids);
+        }
+        return ids;
+    }
+
+    // Forgets the matches of every prefix of the old or the new name, also those being looked up.
+    // Runs after nameIndex changed, so a lookup that started before and missed the change is stale.
+    private void forgetPrefixesOf(Student old, Student now) {
+        String oldName = (old == null || old.name() == null) ? null : old.name().toLowerCase(Locale.ROOT);
+        String newName = (now == null || now.name() == null) ? null : now.name().toLowerCase(Locale.ROOT);
+        synchronized (prefixMatches) {
+            prefixMatches.keySet().removeIf(prefix -> startsWith(oldName, prefix) || startsWith(newName, prefix));
+            for (PrefixLoad load : prefixLoads) {
+                if (startsWith(oldName, load.prefix) || startsWith(newName, load.prefix)) load.stale = true;
+            }
+        }
+    }
+
+    private static boolean startsWith(String name, String prefix) {
+        return name != null && name.startsWith(prefix);
+    }
+
+    /**
+     * Substring matches cannot use the name index, so this scans every stripe.
+     */
+    @Override
+    public List<Student> findByNameContaining(String text, String afterId, int limit) {
+        String lower = text.toLowerCase(Locale.ROOT);
+        PriorityQueue<Student> best = new PriorityQueue<>(Comparator.comparing(Student::id).reversed());
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                for (Student s : stripe.table.values) {
+                    if (s == null || s.name() == null) continue;
+                    if (afterId != null && s.id().compareTo(afterId) <= 0) continue;
+                    if (!s.name().toLowerCase(Locale.ROOT).contains(lower)) continue;
+                    best.add(s);
+                    if (best.size() > limit) best.poll();
+                }
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return sorted(best);
+    }
+
+    /**
+     * There is no index for every order, so this scans every stripe, keeping the first
+     * offset + limit rows after after.
+     */
+    @Override
+    public List<Student> listStudents(SortColumn column, boolean descending, Student after, int offset, int limit) {
+        Comparator<Student> order = column.comparator(descending);
+        int keep = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        PriorityQueue<Student> best = new PriorityQueue<>(order.reversed());
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                for (Student s : stripe.table.values) {
+                    if (s == null) continue;
+                    if (after != null && order.compare(s, after) <= 0) continue;
+                    best.add(s);
+                    if (best.size() > keep) best.poll();
+                }
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        List<Student> rows = sorted(best);
+        return (rows.size() <= offset) ? new ArrayList<>() : new ArrayList<>(rows.subList(offset, rows.size()));
+    }
+
+    @Override
+    public long countStudents() {
+        return getStudentCount();
+    }
+
+    private static <T> List<T> sorted(PriorityQueue<T> queue) {
+        List<T> list = new ArrayList<>(queue.size());
+        while (!queue.isEmpty()) {
+            list.add(queue.poll());
+        }
+        Collections.reverse(list);
+        return list;
+    }
+
+    /**
+     * The cursor copies one stripe at a time, so it sees each stripe as it was when
+     * the cursor reached it rather than a snapshot of the whole store.
+     */
+    @Override
+    public StudentCursor openStudentCursor(int fetchSize) {
+        return new MemoryCursor(Math.max(1, fetchSize));
+    }
+
+    private final class MemoryCursor implements StudentCursor {
+        private final int fetchSize;
+        private final Deque<Student> buffered = new ArrayDeque<>();
+        private int nextStripe;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private boolean exhausted;
+
+        MemoryCursor(int fetchSize) {
+            this.fetchSize = fetchSize;
+        }
+
+        @Override
+        public synchronized List<Student> next() {
+            lastAccess = System.currentTimeMillis();
+            List<Student> chunk = new ArrayList<>(fetchSize);
+            while (!exhausted && chunk.size() < fetchSize) {
+                if (!buffered.isEmpty()) {
+                    chunk.add(buffered.poll());
+                } else if (nextStripe < stripes.length) {
+                    stripes[nextStripe++].copyTo(buffered);
+                } else {
+                    exhausted = true;
+                }
+            }
+            return chunk;
+        }
+
+        @Override
+        public synchronized boolean isExhausted() {
+            return exhausted;
+        }
+
+        @Override
+        public long getLastAccess() {
+            return lastAccess;
+        }
+
+        @Override
+        public synchronized void close() {
+            buffered.clear();
+            exhausted = true;
+        }
+    }
+
+    @Override
+    public void createUser(String username, String passwordHash) throws SQLException {
+        if (users.putIfAbsent(username, new User(passwordHash, 0, 0L, 0L)) != null) {
+            throw new SQLException("duplicate key value violates unique constraint \"users_username_key\"", "23505");
+        }
+    }
+
+    @Override
+    public Optional<LoginState> findLogin(String username, long lockoutSeconds) {
+        User user = users.get(username);
+        if (user == null) return Optional.empty();
+        boolean recentlyFailed = user.lastFailedLogin() > System.currentTimeMillis() - lockoutSeconds * 1000L;
+        return Optional.of(new LoginState(user.passwordHash(), user.attempts(), recentlyFailed));
+    }
+
+    @Override
+    public void recordLoginSuccess(String username) {
+        users.computeIfPresent(username, (name, u) ->
+                new User(u.passwordHash(), 0, System.currentTimeMillis(), u.lastFailedLogin()));
+    }
+
+    @Override
+    public Optional<LoginReservation> reserveLogin(String username, int maxAttempts, long lockoutSeconds) {
+        LoginReservation[] reservation = new LoginReservation[1];
+        users.computeIfPresent(username, (name, u) -> {
+            long now = System.currentTimeMillis();
+            if (maxAttempts > 0 && u.attempts() >= maxAttempts && u.lastFailedLogin() > now - lockoutSeconds * 1000L) {
+                reservation[0] = LoginReservation.locked(u.attempts());
+                return u;
+            }
+            reservation[0] = new LoginReservation(false, u.passwordHash(), u.attempts() + 1, Instant.ofEpochMilli(now),
+                    (u.lastFailedLogin() == 0) ? null : Instant.ofEpochMilli(u.lastFailedLogin()));
+            return new User(u.passwordHash(), u.attempts() + 1, u.lastLogin(), now);
+        });
+        return Optional.ofNullable(reservation[0]);
+    }
+
+    @Override
+    public void releaseLogin(String username, LoginReservation reservation) {
+        long failedAt = reservation.failedAt().toEpochMilli();
+        long before = (reservation.failedBefore() == null) ? 0L : reservation.failedBefore().toEpochMilli();
+        users.computeIfPresent(username, (name, u) -> new User(u.passwordHash(), Math.max(0, u.attempts() - 1),
+                u.lastLogin(), (u.lastFailedLogin() == failedAt) ? before : u.lastFailedLogin()));
+    }
+
+    /**
+     * Number of students stored.
+     */
+    public int getStudentCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                count += stripe.size;
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    // Raw access for EmbeddedStudentStore, which restores state from disk and snapshots it
+
+    // Inserts or replaces a student
+    void putStudent(Student student) {
+        int hash = hash(student.id());
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            Student old = stripe.replace(student, hash);
+            if (old == null) {
+                stripe.put(student, hash);
+            }
+            reindex(old, student);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    User getUser(String username) {
+        return users.get(username);
+    }
+
+    // Replaces a user, or removes it if user is null
+    void putUser(String username, User user) {
+        if (user == null) {
+            users.remove(username);
+        } else {
+            users.put(username, user);
+        }
+    }
+
+    List<Student> copyStudents() {
+        List<Student> all = new ArrayList<>(getStudentCount());
+        for (Stripe stripe : stripes) {
+            stripe.copyTo(all);
+        }
+        return all;
+    }
+
+    Map<String, User> copyUsers() {
+        return new HashMap<>(users);
+    }
+
+    // Moves a student from old to now in the secondary indexes; either may be null.
+    // Caller holds the write lock of the student's stripe.
+    private void reindex(Student old, Student now) {
+        String oldCourse = (old == null) ? null : old.course();
+        String newCourse = (now == null) ? null : now.course();
+        if (!Objects.equals(oldCourse, newCourse)) {
+            if (oldCourse != null) {
+                NavigableSet<String> ids = idsByCourse.get(oldCourse);
+                if (ids != null) ids.remove(old.id());
+            }
+            if (newCourse != null) {
+                idsByCourse.computeIfAbsent(newCourse, c -> new ConcurrentSkipListSet<>()).add(now.id());
+            }
+        }
+        String oldKey = nameKey(old);
+        String newKey = nameKey(now);
+        if (!Objects.equals(oldKey, newKey)) {
+            if (oldKey != null) nameIndex.remove(oldKey);
+            if (newKey != null) nameIndex.add(newKey);
+            forgetPrefixesOf(old, now);
+        }
+    }
+
+    // The separator sorts below any name character, so "ann" + id comes before "anna" + id
+    private static final char NAME_SEPARATOR = '\u0000';
+
+    private static String nameKey(Student s) {
+        if (s == null || s.name() == null) return null;
+        return s.name().toLowerCase(Locale.ROOT) + NAME_SEPARATOR + s.id();
+    }
+
+    // Numeric ids have poorly mixed hash codes; the murmur3 finaliser spreads them
+    // over both the high bits (stripe) and the low bits (slot)
+    private static int hash(String id) {
+        int h = id.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    private Stripe stripeFor(int hash) {
+        return stripeShift == 32 ? stripes[0] : stripes[hash >>> stripeShift];
+    }
+
+    static String checkId(String id) throws SQLException {
+        if (id == null) {
+            throw new SQLException("null value in column \"student_id\" violates not-null constraint", "23502");
+        }
+        return id;
+    }
+
+    static SQLException duplicate(String id) {
+        return new SQLException("duplicate key value violates unique constraint \"students_pkey\": "
+                + "Key (student_id)=(" + id + ") already exists.", "23505");
+    }
+
+    /**
+     * One lock stripe: a linear-probing table guarded by a StampedLock.
+     * The arrays are replaced together on resize, so an optimistic reader that
+     * loaded the table reference always sees arrays of matching length.
+     */
+    private static final class Stripe {
+        final StampedLock lock = new StampedLock();
+        Table table = new Table(16);
+        int size;
+
+        private static final class Table {
+            final int[] hashes;
+            final Student[] values; // null marks a free slot
+
+            Table(int capacity) {
+                hashes = new int[capacity];
+                values = new Student[capacity];
+            }
+        }
+
+        Student read(String id, int hash) {
+            long stamp = lock.tryOptimisticRead();
+            Student found = get(id, hash);
+            if (lock.validate(stamp)) {
+                return found;
+            }
+            stamp = lock.readLock();
+            try {
+                return get(id, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        // Safe without the lock: the probe is bounded and only reads immutable records
+        Student get(String id, int hash) {
+            Table t = table;
+            int mask = t.values.length - 1;
+            for (int i = hash & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                Student s = t.values[i];
+                if (s == null) return null;
+                if (t.hashes[i] == hash && id.equals(s.id())) return s;
+            }
+            return null;
+        }
+
+        // Caller holds the write lock and has checked the id is absent
+        void put(Student student, int hash) {
+            if (size + 1 > table.values.length * LOAD_FACTOR) {
+                resize();
+            }
+            insert(table, student, hash);
+            size++;
+        }
+
+        // Caller holds the write lock; returns the replaced record or null if absent
+        Student replace(Student student, int hash) {
+            Table t = table;
+            int i = indexOf(t, student.id(), hash);
+            if (i < 0) return null;
+            Student old = t.values[i];
+            t.values[i] = student;
+            return old;
+        }
+
+        // Caller holds the write lock; backward-shift deletion keeps probe chains intact
+        Student remove(String id, int hash) {
+            Table t = table;
+            int i = indexOf(t, id, hash);
+            if (i < 0) return null;
+            Student old = t.values[i];
+            int mask = t.values.length - 1;
+            int hole = i;
+            for (int j = (i + 1) & mask; t.values[j] != null; j = (j + 1) & mask) {
+                int home = t.hashes[j] & mask;
+                // Move j into the hole unless its home slot lies cyclically in (hole, j]
+                if (((j - home) & mask) >= ((j - hole) & mask)) {
+                    t.values[hole] = t.values[j];
+                    t.hashes[hole] = t.hashes[j];
+                    hole = j;
+                }
+            }
+            t.values[hole] = null;
+            t.hashes[hole] = 0;
+            size--;
+            return old;
+        }
+
+        void copyTo(Collection<Student> out) {
+            long stamp = lock.readLock();
+            try {
+                for (Student s : table.values) {
+                    if (s != null) out.add(s);
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private static int indexOf(Table t, String id, int hash) {
+            int mask = t.values.length - 1;
+            for (int i = hash & mask; t.values[i] != null; i = (i + 1) & mask) {
+                if (t.hashes[i] == hash && id.equals(t.values[i].id())) return i;
+            }
+            return -1;
+        }
+
+        private static void insert(Table t, Student student, int hash) {
+            int mask = t.values.length - 1;
+            int i = hash & mask;
+            while (t.values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            t.hashes[i] = hash;
+            t.values[i] = student;
+        }
+
+        private void resize() {
+            Table old = table;
+            Table grown = new Table(old.values.length * 2);
+            for (int i = 0; i < old.values.length; i++) {
+                if (old.values[i] != null) {
+                    insert(grown, old.values[i], old.hashes[i]);
+                }
+            }
+            table = grown;
+        }
+    }
+}
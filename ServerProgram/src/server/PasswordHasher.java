@@ -0,0 +1,186 @@
+package server;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * PasswordHasher runs BCrypt hashing and verification on a dedicated pool of
+ * CPU-sized worker threads. The work queue is bounded: when it is full, new
+ * requests are rejected straight away instead of piling up on RMI threads.
+ */
+public class PasswordHasher {
+
+    private static PasswordHasher defaultHasher;
+
+    private final ThreadPoolExecutor executor;
+    private final int logRounds;
+    private final long timeoutMillis;
+
+    // Metrics
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalHashNanos = new LongAdder();
+    private final AtomicLong maxHashNanos = new AtomicLong();
+    private final LongAdder totalQueueNanos = new LongAdder();
+
+    /**
+     * Thrown when the hasher is saturated or a hash did not finish in time.
+     */
+    public static class BusyException extends Exception {
+        public BusyException(String message) {
+            super(message);
+        }
+    }
+
+    public PasswordHasher() {
+        this(ServerConfig.bcryptThreads(), ServerConfig.bcryptQueueLimit(),
+                ServerConfig.bcryptLogRounds(), ServerConfig.bcryptTimeoutMillis());
+    }
+
+    public PasswordHasher(int threads, int queueLimit, int logRounds, long timeoutMillis) {
+        this.logRounds = logRounds;
+        this.timeoutMillis = timeoutMillis;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueLimit)),
+                r -> {
+                    Thread t = new Thread(r, "bcrypt-" + counter.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Returns the hasher shared by the whole server process.
+     */
+    public static synchronized PasswordHasher getDefault() {
+        if (defaultHasher == null) {
+            defaultHasher = new PasswordHasher();
+        }
+        return defaultHasher;
+    }
+
+    /**
+     * Hashes a password with a fresh salt at the configured cost factor.
+     */
+    public String hash(String plainPassword) throws BusyException {
+        return run(() -> BCrypt.hashpw(plainPassword, BCrypt.gensalt(logRounds)));
+    }
+
+    /**
+     * Checks a password against a stored BCrypt hash.
+     */
+    public boolean verify(String plainPassword, String storedHash) throws BusyException {
+        return run(() -> BCrypt.checkpw(plainPassword, storedHash));
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Average CPU time of one hash or verification, in milliseconds.
+     */
+    public double getAverageHashMillis() {
+        long n = completed.sum();
+        return n == 0 ? 0.0 : totalHashNanos.sum() / (n * 1_000_000.0);
+    }
+
+    public double getMaxHashMillis() {
+        return maxHashNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * Average time a request waited in the queue before a worker picked it up, in milliseconds.
+     */
+    public double getAverageQueueMillis() {
+        long n = completed.sum();
+        return n == 0 ? 0.0 : totalQueueNanos.sum() / (n * 1_000_000.0);
+    }
+
+    /**
+     * One-line summary of the hasher metrics, useful for logging.
+     */
+    public String getStats() {
+        return String.format("BCrypt[cost=%d, threads=%d, active=%d, queued=%d, completed=%d, rejected=%d, avgHash=%.1fms, maxHash=%.1fms, avgQueue=%.1fms]",
+                logRounds, executor.getMaximumPoolSize(), getActiveCount(), getQueueDepth(),
+                getCompletedCount(), getRejectedCount(), getAverageHashMillis(), getMaxHashMillis(),
+                getAverageQueueMillis());
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Time the caller waits, queue included, counts as BCrypt time of the remote call
+    private <T> T run(Callable<T> work) throws BusyException {
+        long submitted = System.nanoTime();
+        try {
+            return await(work, submitted);
+        } catch (BusyException e) {
+            RequestMetrics.recordError(RequestMetrics.ErrorCause.BUSY);
+            throw e;
+        } finally {
+            RequestMetrics.addTime(RequestMetrics.Phase.BCRYPT, System.nanoTime() - submitted);
+        }
+    }
+
+    private <T> T await(Callable<T> work, long submitted) throws BusyException {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long start = System.nanoTime();
+                totalQueueNanos.add(start - submitted);
+                try {
+                    return work.call();
+                } finally {
+                    long took = System.nanoTime() - start;
+                    totalHashNanos.add(took);
+                    maxHashNanos.accumulateAndGet(took, Math::max);
+                    completed.increment();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new BusyException("Server busy, please try again.");
+        }
+
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new BusyException("Server busy, please try again.");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new BusyException("Request interrupted.");
+        } catch (ExecutionException e) {
+            // BCrypt only throws for malformed input such as a corrupt stored hash
+            throw new IllegalArgumentException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
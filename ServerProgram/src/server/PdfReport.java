@@ -0,0 +1,156 @@
+package server;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PdfContentByte;
+import com.itextpdf.text.pdf.PdfWriter;
+import rmi.Student;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * PdfReport writes students read from a cursor as a PDF table of ID, name and course,
+ * laid out like the client's own PDF export. Each page is written out as soon as it is
+ * full, so memory use does not grow with the number of students.
+ */
+final class PdfReport {
+
+    private static final float[] COLUMN_WIDTHS = {1f, 2f, 2f};
+
+    private PdfReport() {
+    }
+
+    /**
+     * @return the number of students written.
+     */
+    static long write(String title, StudentCursor cursor, OutputStream out) throws SQLException, IOException {
+        try {
+            Document document = new Document(PageSize.A4);
+            PdfWriter writer = PdfWriter.getInstance(document, out);
+            document.open();
+            TableWriter table = new TableWriter(document, writer);
+            table.startSection(title, false);
+            long rows = 0;
+            for (List<Student> chunk = cursor.next(); !chunk.isEmpty(); chunk = cursor.next()) {
+                for (Student s : chunk) {
+                    table.row(s.id(), s.name(), s.course());
+                }
+                rows += chunk.size();
+            }
+            table.finishPage();
+            document.close();
+            return rows;
+        } catch (DocumentException e) {
+            throw new IOException("Could not write PDF report: " + e.getMessage(), e);
+        }
+    }
+
+    // Draws the table straight onto the page, one line per student, with the header repeated
+    // on every page; text too wide for its column is cut short
+    private static final class TableWriter {
+        private static final float FONT_SIZE = 10;
+        private static final float TITLE_SIZE = 14;
+        private static final float ROW_HEIGHT = 16;
+        private static final float PADDING = 4;
+        private static final String[] HEADER = {"ID", "Name", "Course"};
+
+        private final Document document;
+        private final PdfContentByte canvas;
+        private final BaseFont font;
+        private final BaseFont bold;
+        private final float[] x; // left edge of each column, then the right edge of the table
+        private float top;       // top of the table on this page
+        private float y;         // bottom of the last row drawn
+
+        TableWriter(Document document, PdfWriter writer) throws DocumentException, IOException {
+            this.document = document;
+            this.canvas = writer.getDirectContent();
+            this.font = BaseFont.createFont(BaseFont.HELVETICA, BaseFont.WINANSI, BaseFont.NOT_EMBEDDED);
+            this.bold = BaseFont.createFont(BaseFont.HELVETICA_BOLD, BaseFont.WINANSI, BaseFont.NOT_EMBEDDED);
+            float total = 0;
+            for (float w : COLUMN_WIDTHS) total += w;
+            x = new float[COLUMN_WIDTHS.length + 1];
+            x[0] = document.left();
+            for (int i = 0; i < COLUMN_WIDTHS.length; i++) {
+                x[i + 1] = x[i] + (document.right() - document.left()) * COLUMN_WIDTHS[i] / total;
+            }
+        }
+
+        void startSection(String title, boolean onNewPage) {
+            if (onNewPage) {
+                finishPage();
+                document.newPage();
+            }
+            y = document.top() - TITLE_SIZE;
+            canvas.beginText();
+            canvas.setFontAndSize(bold, TITLE_SIZE);
+            canvas.setTextMatrix(x[0], y);
+            canvas.showText(fit(bold, TITLE_SIZE, title, x[x.length - 1] - x[0]));
+            canvas.endText();
+            y -= 8;
+            header();
+        }
+
+        void row(String... cells) {
+            if (y - ROW_HEIGHT < document.bottom()) {
+                finishPage();
+                document.newPage();
+                y = document.top();
+                header();
+            }
+            y -= ROW_HEIGHT;
+            cells(font, cells);
+        }
+
+        // Outlines the columns of the rows drawn on this page
+        void finishPage() {
+            for (float edge : x) {
+                canvas.moveTo(edge, top);
+                canvas.lineTo(edge, y);
+            }
+            canvas.moveTo(x[0], top);
+            canvas.lineTo(x[x.length - 1], top);
+            canvas.stroke();
+        }
+
+        private void header() {
+            top = y;
+            y -= ROW_HEIGHT;
+            canvas.setLineWidth(0.5f);
+            canvas.setGrayStroke(0.5f);
+            canvas.setGrayFill(0.9f);
+            canvas.rectangle(x[0], y, x[x.length - 1] - x[0], ROW_HEIGHT);
+            canvas.fill();
+            canvas.setGrayFill(0f);
+            cells(bold, HEADER);
+        }
+
+        private void cells(BaseFont cellFont, String[] cells) {
+            canvas.beginText();
+            canvas.setFontAndSize(cellFont, FONT_SIZE);
+            for (int i = 0; i < cells.length; i++) {
+                canvas.setTextMatrix(x[i] + PADDING, y + (ROW_HEIGHT - FONT_SIZE) / 2 + 1);
+                canvas.showText(fit(cellFont, FONT_SIZE, cells[i], x[i + 1] - x[i] - 2 * PADDING));
+            }
+            canvas.endText();
+            canvas.moveTo(x[0], y);
+            canvas.lineTo(x[x.length - 1], y);
+            canvas.stroke();
+        }
+
+        private static String fit(BaseFont f, float size, String text, float width) {
+            if (text == null) return "";
+            if (f.getWidthPoint(text, size) <= width) return text;
+            int end = text.length();
+            while (end > 0 && f.getWidthPoint(text.substring(0, end) + "...", size) > width) {
+                end--;
+            }
+            return text.substring(0, end) + "...";
+        }
+    }
+}
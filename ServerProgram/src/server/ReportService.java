@@ -0,0 +1,267 @@
+package server;
+
+import rmi.ReportInfo;
+import rmi.Student;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ReportService renders reports on the server and keeps them as files, so a report
+ * asked for by many clients is rendered once. A report is identified by its name,
+ * format and the data version of DBOperations it was rendered from: any student write
+ * makes the next request render it again, and requests arriving while it renders wait
+ * for that one rendering. Clients read the file in chunks by offset.
+ *
+ * Writes made on other server nodes do not change this node's data version, so a
+ * report is also rendered again once older than report.maxAgeMillis. A replaced report
+ * stays readable for report.retainMillis after its last read.
+ * Report files go to a directory of their own under report.dir.
+ */
+public class ReportService {
+
+    private static final Set<String> REPORTS = Set.of("students");
+    private static final Set<String> FORMATS = Set.of("pdf", "csv");
+
+    /**
+     * One rendered report file.
+     */
+    private static final class Rendered {
+        final ReportInfo info;
+        final Path file;
+        final FileChannel channel;
+        volatile long lastRead = System.currentTimeMillis();
+
+        Rendered(ReportInfo info, Path file) throws IOException {
+            this.info = info;
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        }
+    }
+
+    // The latest rendering of one report and format, finished or not
+    private record Slot(long dataVersion, long startedAt, CompletableFuture<Rendered> report) {
+    }
+
+    private final DBOperations dbo;
+    private final Path baseDir;
+    private volatile Path dir; // this instance's own directory under baseDir, made on first use
+    private final long maxAgeMillis;
+    private final long retainMillis;
+    private final int maxChunkBytes;
+    private final Map<String, Slot> latest = new ConcurrentHashMap<>();       // by report.format
+    private final Map<String, Rendered> readable = new ConcurrentHashMap<>(); // by report id
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final LongAdder renders = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final ScheduledExecutorService reaper;
+
+    public ReportService(DBOperations dbo) {
+        this.dbo = dbo;
+        this.baseDir = Paths.get(ServerConfig.reportDir());
+        this.maxAgeMillis = ServerConfig.reportMaxAgeMillis();
+        this.retainMillis = ServerConfig.reportRetainMillis();
+        this.maxChunkBytes = Math.max(1, ServerConfig.reportMaxChunkBytes());
+        this.reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "report-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1_000L, Math.min(retainMillis / 2, 60_000L));
+        reaper.scheduleWithFixedDelay(this::dropReplaced, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the report for the current data, rendering it first unless an up-to-date
+     * copy exists or is being rendered.
+     * @throws IllegalArgumentException for an unknown report or format.
+     */
+    public ReportInfo open(String report, String format) throws SQLException, IOException {
+        if (!REPORTS.contains(report)) throw new IllegalArgumentException("Unknown report " + report);
+        if (!FORMATS.contains(format)) throw new IllegalArgumentException("Unknown report format " + format);
+
+        String key = report + "." + format;
+        // Read before rendering, so writes that race with the rendering make it stale
+        long version = dbo.getDataVersion();
+        long now = System.currentTimeMillis();
+        Slot[] created = new Slot[1];
+        Slot slot = latest.compute(key, (k, current) -> {
+            if (current != null && current.dataVersion() >= version
+                    && now - current.startedAt() < maxAgeMillis
+                    && !current.report().isCompletedExceptionally()) {
+                return current;
+            }
+            created[0] = new Slot(version, now, new CompletableFuture<>());
+            return created[0];
+        });
+
+        if (slot != created[0]) {
+            shared.increment();
+            return await(slot).info;
+        }
+        try {
+            Rendered rendered = render(report, format, version);
+            readable.put(rendered.info.reportId(), rendered);
+            slot.report().complete(rendered);
+            return rendered.info;
+        } catch (SQLException | IOException | RuntimeException e) {
+            slot.report().completeExceptionally(e);
+            latest.remove(key, slot);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads up to maxBytes of a report from offset; an empty array past its end.
+     */
+    public byte[] read(String reportId, long offset, int maxBytes) throws IOException {
+        Rendered rendered = readable.get(reportId);
+        if (rendered == null) {
+            throw new IOException("Unknown or expired report " + reportId + ", open it again");
+        }
+        rendered.lastRead = System.currentTimeMillis();
+        long size = rendered.info.size();
+        if (offset < 0) throw new IllegalArgumentException("Negative offset " + offset);
+        if (offset >= size) return new byte[0];
+
+        int length = (int) Math.min(size - offset, Math.max(1, Math.min(maxBytes, maxChunkBytes)));
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (rendered.channel.read(buffer, offset + buffer.position()) < 0) break;
+        }
+        bytesRead.add(buffer.position());
+        return (buffer.position() == length) ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private Rendered render(String report, String format, long version) throws SQLException, IOException {
+        long id = nextId.getAndIncrement();
+        Path file = directory().resolve(report + "-v" + version + "-" + id + "." + format);
+        // A fresh session keeps the scan off replicas that may not have the writes counted in version yet
+        DBConnection.Session recent = new DBConnection.Session();
+        recent.recordWrite();
+        DBConnection.Session previous = DBConnection.bindSession(recent);
+        try (StudentCursor cursor = dbo.openStudentCursor(ServerConfig.cursorFetchSize());
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024)) {
+            if ("pdf".equals(format)) {
+                PdfReport.write("Student Report", cursor, out);
+            } else {
+                writeCsv(cursor, out);
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        } finally {
+            DBConnection.bindSession(previous);
+        }
+        renders.increment();
+        String reportId = report + "." + format + "-v" + version + "-" + id;
+        ReportInfo info = new ReportInfo(reportId, report, format, Files.size(file), version, System.currentTimeMillis());
+        return new Rendered(info, file);
+    }
+
+    // Server nodes on one host may share report.dir, so each keeps its files apart
+    private synchronized Path directory() throws IOException {
+        if (dir == null || !Files.isDirectory(dir)) {
+            Files.createDirectories(baseDir);
+            dir = Files.createTempDirectory(baseDir, "node-");
+        }
+        return dir;
+    }
+
+    private static void writeCsv(StudentCursor cursor, OutputStream out) throws SQLException, IOException {
+        Writer csv = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        csv.write("id,name,course\r\n");
+        for (List<Student> chunk = cursor.next(); !chunk.isEmpty(); chunk = cursor.next()) {
+            for (Student s : chunk) {
+                csv.write(csvField(s.id()));
+                csv.write(',');
+                csv.write(csvField(s.name()));
+                csv.write(',');
+                csv.write(csvField(s.course()));
+                csv.write("\r\n");
+            }
+        }
+        csv.flush();
+    }
+
+    // Quotes a field as RFC 4180 asks when it holds a separator, quote or line break
+    private static String csvField(String value) {
+        if (value == null) return "";
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+        }
+        return value;
+    }
+
+    private static Rendered await(Slot slot) throws SQLException, IOException {
+        try {
+            return slot.report().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the report", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SQLException sql) throw sql;
+            if (e.getCause() instanceof IOException io) throw io;
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IOException("Could not render the report", e.getCause());
+        }
+    }
+
+    // Deletes reports that are no longer the latest and have not been read for retainMillis
+    private void dropReplaced() {
+        long cutoff = System.currentTimeMillis() - retainMillis;
+        for (Rendered rendered : readable.values()) {
+            if (rendered.lastRead < cutoff && !isLatest(rendered)) {
+                readable.remove(rendered.info.reportId());
+                try {
+                    rendered.channel.close();
+                    Files.deleteIfExists(rendered.file);
+                } catch (IOException e) {
+                    System.err.println("Could not delete report " + rendered.file + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private boolean isLatest(Rendered rendered) {
+        Slot slot = latest.get(rendered.info.report() + "." + rendered.info.format());
+        return slot != null && slot.report().isDone() && !slot.report().isCompletedExceptionally()
+                && slot.report().join() == rendered;
+    }
+
+    /**
+     * One-line summary of the reports, useful for logging.
+     */
+    public String getStats() {
+        return String.format("Reports[files=%d, renders=%d, shared=%d, bytesRead=%d]",
+                readable.size(), renders.sum(), shared.sum(), bytesRead.sum());
+    }
+}
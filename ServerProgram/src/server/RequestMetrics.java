@@ -0,0 +1,271 @@
+package server;
+
+import rmi.ServerStats;
+
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * RequestMetrics keeps per remote method counts: calls, errors by cause, a latency
+ * histogram, and how much of each call went to the student store and to BCrypt.
+ *
+ * The RMI layer brackets each call with {@link #begin()} and {@link MethodMetrics#end(long)}.
+ * Code further down reports store time, BCrypt time and errors through the static
+ * hooks, which attach them to the call running on the current thread and do nothing
+ * outside a call (benchmarks, background flushers). The per-thread call record is
+ * reused, so on RMI's pooled threads recording allocates nothing.
+ *
+ * Each method is also published over JMX as simple-distro:type=RemoteMethod,name=method.
+ */
+public class RequestMetrics {
+
+    private static final String JMX_DOMAIN = "simple-distro";
+
+    public enum Phase { STORE, BCRYPT }
+
+    public enum ErrorCause {
+        CONNECTION,  // SQLState 08: no database connection, pool exhausted
+        CONSTRAINT,  // SQLState 23: duplicate id, missing value
+        TIMEOUT,     // statement cancelled or timed out
+        STORAGE,     // SQLState 58: the embedded store could not write
+        DATABASE,    // any other SQLException
+        BUSY,        // BCrypt pool full or too slow
+        EXCEPTION    // the call threw
+    }
+
+    /**
+     * JMX view of one remote method. Latencies are in milliseconds.
+     */
+    public interface MethodMXBean {
+        long getCalls();
+        long getErrors();
+        Map<String, Long> getErrorsByCause();
+        double getMeanMillis();
+        double getP50Millis();
+        double getP90Millis();
+        double getP99Millis();
+        double getP999Millis();
+        double getMaxMillis();
+        double getStoreMillis();
+        double getBcryptMillis();
+        void reset();
+    }
+
+    // What the code below the RMI layer has reported about the call on this thread
+    private static final class Call {
+        boolean active;
+        long storeNanos;
+        long bcryptNanos;
+        ErrorCause error;
+    }
+
+    private static final ThreadLocal<Call> CURRENT = ThreadLocal.withInitial(Call::new);
+
+    private final Map<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+    private final long startedAt = System.currentTimeMillis();
+
+    /**
+     * Metrics of the named remote method, created and registered with JMX on first use.
+     */
+    public MethodMetrics forMethod(String name) {
+        MethodMetrics m = methods.get(name);
+        return (m != null) ? m : methods.computeIfAbsent(name, MethodMetrics::new);
+    }
+
+    public ServerStats snapshot(List<String> components) {
+        List<ServerStats.MethodStats> stats = new ArrayList<>();
+        for (MethodMetrics m : methods.values()) {
+            if (m.getCalls() > 0) stats.add(m.snapshot());
+        }
+        return new ServerStats(System.currentTimeMillis() - startedAt, stats, components);
+    }
+
+    /**
+     * Starts a call on the current thread.
+     * @return the start time to pass to {@link MethodMetrics#end(long)}.
+     */
+    public static long begin() {
+        Call call = CURRENT.get();
+        call.active = true;
+        call.storeNanos = 0;
+        call.bcryptNanos = 0;
+        call.error = null;
+        return System.nanoTime();
+    }
+
+    /**
+     * Adds time spent in phase to the call running on this thread, if any.
+     */
+    public static void addTime(Phase phase, long nanos) {
+        Call call = CURRENT.get();
+        if (!call.active) return;
+        if (phase == Phase.STORE) {
+            call.storeNanos += nanos;
+        } else {
+            call.bcryptNanos += nanos;
+        }
+    }
+
+    /**
+     * Marks the call running on this thread as failed. The first cause reported wins,
+     * so a specific cause is not overwritten by the exception it later turns into.
+     */
+    public static void recordError(ErrorCause cause) {
+        Call call = CURRENT.get();
+        if (call.active && call.error == null) call.error = cause;
+    }
+
+    public static void recordError(SQLException e) {
+        recordError(causeOf(e));
+    }
+
+    static ErrorCause causeOf(SQLException e) {
+        String state = e.getSQLState();
+        if (state == null) return ErrorCause.DATABASE;
+        if (state.startsWith("08")) return ErrorCause.CONNECTION;
+        if (state.startsWith("23")) return ErrorCause.CONSTRAINT;
+        if (state.equals("57014") || state.startsWith("HYT")) return ErrorCause.TIMEOUT;
+        if (state.startsWith("58")) return ErrorCause.STORAGE;
+        return ErrorCause.DATABASE;
+    }
+
+    /**
+     * Counters of one remote method.
+     */
+    public static final class MethodMetrics implements MethodMXBean {
+        private final String name;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder[] errorsByCause = new LongAdder[ErrorCause.values().length];
+        private final LongAdder storeNanos = new LongAdder();
+        private final LongAdder bcryptNanos = new LongAdder();
+
+        MethodMetrics(String name) {
+            this.name = name;
+            for (int i = 0; i < errorsByCause.length; i++) {
+                errorsByCause[i] = new LongAdder();
+            }
+            register();
+        }
+
+        /**
+         * Ends the call begun on this thread and records it.
+         */
+        public void end(long start) {
+            long took = System.nanoTime() - start;
+            Call call = CURRENT.get();
+            latency.record(took);
+            storeNanos.add(call.storeNanos);
+            bcryptNanos.add(call.bcryptNanos);
+            if (call.error != null) {
+                errors.increment();
+                errorsByCause[call.error.ordinal()].increment();
+            }
+            call.active = false;
+        }
+
+        @Override
+        public long getCalls() {
+            return latency.getCount();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        @Override
+        public Map<String, Long> getErrorsByCause() {
+            Map<String, Long> byCause = new LinkedHashMap<>();
+            for (ErrorCause cause : ErrorCause.values()) {
+                long n = errorsByCause[cause.ordinal()].sum();
+                if (n > 0) byCause.put(cause.name(), n);
+            }
+            return byCause;
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return latency.getMeanMillis();
+        }
+
+        @Override
+        public double getP50Millis() {
+            return latency.getPercentileMillis(50);
+        }
+
+        @Override
+        public double getP90Millis() {
+            return latency.getPercentileMillis(90);
+        }
+
+        @Override
+        public double getP99Millis() {
+            return latency.getPercentileMillis(99);
+        }
+
+        @Override
+        public double getP999Millis() {
+            return latency.getPercentileMillis(99.9);
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return latency.getMaxMillis();
+        }
+
+        @Override
+        public double getStoreMillis() {
+            return perCall(storeNanos);
+        }
+
+        @Override
+        public double getBcryptMillis() {
+            return perCall(bcryptNanos);
+        }
+
+        @Override
+        public void reset() {
+            latency.reset();
+            errors.reset();
+            for (LongAdder n : errorsByCause) {
+                n.reset();
+            }
+            storeNanos.reset();
+            bcryptNanos.reset();
+        }
+
+        ServerStats.MethodStats snapshot() {
+            return new ServerStats.MethodStats(name, getCalls(), getErrors(), getErrorsByCause(),
+                    getMeanMillis(), getP50Millis(), getP90Millis(), getP99Millis(), getP999Millis(),
+                    getMaxMillis(), getStoreMillis(), getBcryptMillis());
+        }
+
+        private double perCall(LongAdder nanos) {
+            long n = latency.getCount();
+            return n == 0 ? 0.0 : nanos.sum() / (n * 1_000_000.0);
+        }
+
+        // A second server object in the same JVM (tests, benchmarks) keeps its metrics off JMX
+        private void register() {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=RemoteMethod,name=" + name);
+                if (!server.isRegistered(objectName)) {
+                    server.registerMBean(this, objectName);
+                }
+            } catch (JMException e) {
+                System.err.println("Could not register JMX metrics for " + name + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package server;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * SchemaMigrator brings the database schema up to date with an ordered list of
+ * versioned migrations, recording each one in the schema_version table.
+ *
+ * Once a database is current, startup costs one SELECT of the latest version;
+ * within one JVM each pool is checked only once. Pending migrations run in a
+ * single transaction under a PostgreSQL advisory lock, so servers starting
+ * together wait for each other instead of racing on the same DDL.
+ *
+ * Migrations are never edited once released; a schema change is a new entry
+ * at the end of {@link #MIGRATIONS}.
+ */
+public final class SchemaMigrator {
+
+    // Arbitrary, but fixed: every server of this application must use the same key
+    private static final long ADVISORY_LOCK_KEY = 0x5354_5544_454E_5453L;
+
+    /**
+     * One schema change.
+     * @param postgresOnly skipped (and recorded as skipped) on other databases, e.g. H2 in the benchmarks.
+     * @param optional a failure is logged and recorded as skipped instead of aborting the migration.
+     */
+    private record Migration(int version, String description, boolean postgresOnly, boolean optional,
+                             List<String> statements) {
+    }
+
+    private static Migration required(int version, String description, String... statements) {
+        return new Migration(version, description, false, false, List.of(statements));
+    }
+
+    private static Migration postgres(int version, String description, String... statements) {
+        return new Migration(version, description, true, false, List.of(statements));
+    }
+
+    private static Migration optional(int version, String description, String... statements) {
+        return new Migration(version, description, true, true, List.of(statements));
+    }
+
+    // Every statement is safe to run against a database set up by hand or by the
+    // startup DDL of older releases, which had no schema_version table
+    private static final List<Migration> MIGRATIONS = List.of(
+            required(1, "Create USERS table",
+                    "CREATE TABLE IF NOT EXISTS USERS ("
+                            + "user_id SERIAL PRIMARY KEY, "
+                            + "username VARCHAR(50) UNIQUE NOT NULL, "
+                            + "password VARCHAR(255) NOT NULL)"),
+            required(2, "Add login tracking columns to USERS",
+                    "ALTER TABLE USERS ADD COLUMN IF NOT EXISTS login_attempts INT DEFAULT 0",
+                    "ALTER TABLE USERS ADD COLUMN IF NOT EXISTS last_login TIMESTAMP",
+                    "ALTER TABLE USERS ADD COLUMN IF NOT EXISTS last_failed_login TIMESTAMP"),
+            required(3, "Create STUDENTS table",
+                    "CREATE TABLE IF NOT EXISTS STUDENTS ("
+                            + "student_id VARCHAR(50) PRIMARY KEY, "
+                            + "student_name VARCHAR(100), "
+                            + "student_course VARCHAR(100))"),
+            postgres(4, "Add primary key to a STUDENTS table created without one",
+                    "DO $$ BEGIN "
+                            + "IF NOT EXISTS (SELECT 1 FROM pg_constraint "
+                            + "WHERE conrelid = 'students'::regclass AND contype = 'p') THEN "
+                            + "ALTER TABLE STUDENTS ADD PRIMARY KEY (student_id); "
+                            + "END IF; END $$"),
+            required(5, "Index STUDENTS by course",
+                    "CREATE INDEX IF NOT EXISTS students_course_idx ON STUDENTS (student_course, student_id)"),
+            postgres(6, "Index STUDENTS by lower-cased name for prefix search",
+                    "CREATE INDEX IF NOT EXISTS students_name_prefix_idx "
+                            + "ON STUDENTS (lower(student_name) text_pattern_ops)"),
+            // Needs CREATE on the database; without it substring search still works, unindexed
+            optional(7, "Trigram index on STUDENTS names for substring search",
+                    "CREATE EXTENSION IF NOT EXISTS pg_trgm",
+                    "CREATE INDEX IF NOT EXISTS students_name_trgm_idx "
+                            + "ON STUDENTS USING gin (lower(student_name) gin_trgm_ops)"),
+            required(8, "Index STUDENTS by name for listing in name order",
+                    "CREATE INDEX IF NOT EXISTS students_name_idx ON STUDENTS (student_name, student_id)"),
+            // Shards are merged, and the other stores sort, by String.compareTo; the database's
+            // default collation would page in another order. The indexes are rebuilt with the columns
+            postgres(9, "Compare STUDENTS text columns by code point",
+                    "ALTER TABLE STUDENTS ALTER COLUMN student_id TYPE VARCHAR(50) COLLATE \"C\"",
+                    "ALTER TABLE STUDENTS ALTER COLUMN student_name TYPE VARCHAR(100) COLLATE \"C\"",
+                    "ALTER TABLE STUDENTS ALTER COLUMN student_course TYPE VARCHAR(100) COLLATE \"C\"")
+    );
+
+    private static final Set<DBConnection> migrated = Collections.synchronizedSet(
+            Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Version the schema is at once every migration has run.
+     */
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+
+    /**
+     * Applies the migrations the database behind dbc has not seen yet.
+     * @throws SQLException if a migration fails; it and any later ones are then
+     *         rolled back and retried on the next start.
+     */
+    public static void migrate(DBConnection dbc) throws SQLException {
+        if (migrated.contains(dbc)) return;
+
+        try (Connection conn = dbc.getConnection()) {
+            if (conn == null) throw new SQLException(DBOperations.NO_CONNECTION, "08001");
+
+            if (currentVersion(conn) < latestVersion()) {
+                boolean postgres = "PostgreSQL".equals(conn.getMetaData().getDatabaseProductName());
+                conn.setAutoCommit(false);
+                try {
+                    migrate(conn, postgres);
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        }
+        migrated.add(dbc);
+    }
+
+    // Caller has started a transaction
+    private static void migrate(Connection conn, boolean postgres) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            if (postgres) {
+                // Released when the transaction ends, even if this server dies mid-migration
+                stmt.execute("SELECT pg_advisory_xact_lock(" + ADVISORY_LOCK_KEY + ")");
+            }
+            stmt.executeUpdate("CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "version INT PRIMARY KEY, "
+                    + "description VARCHAR(200) NOT NULL, "
+                    + "applied BOOLEAN NOT NULL, "
+                    + "installed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        }
+
+        // Another server may have migrated while this one waited for the lock
+        int current = currentVersion(conn);
+        for (Migration m : MIGRATIONS) {
+            if (m.version() <= current) continue;
+
+            if (m.postgresOnly() && !postgres) {
+                record(conn, m, false);
+                continue;
+            }
+            Savepoint savepoint = m.optional() ? conn.setSavepoint() : null;
+            try (Statement stmt = conn.createStatement()) {
+                for (String sql : m.statements()) {
+                    stmt.execute(sql);
+                }
+                record(conn, m, true);
+                System.out.println("Applied schema migration " + m.version() + ": " + m.description());
+            } catch (SQLException e) {
+                if (savepoint == null) {
+                    throw new SQLException("Schema migration " + m.version() + " (" + m.description()
+                            + ") failed: " + e.getMessage(), e.getSQLState(), e);
+                }
+                conn.rollback(savepoint);
+                record(conn, m, false);
+                System.err.println("Skipped schema migration " + m.version() + " (" + m.description() + "): "
+                        + e.getMessage() + ". Delete its row from schema_version to retry it.");
+            }
+        }
+    }
+
+    private static void record(Connection conn, Migration m, boolean applied) throws SQLException {
+        try (PreparedStatement pst = conn.prepareStatement(
+                "INSERT INTO schema_version (version, description, applied) VALUES (?, ?, ?)")) {
+            pst.setInt(1, m.version());
+            pst.setString(2, m.description());
+            pst.setBoolean(3, applied);
+            pst.executeUpdate();
+        }
+    }
+
+    // 0 for a database that has never been migrated
+    private static int currentVersion(Connection conn) throws SQLException {
+        // Checked through metadata: a failed SELECT would abort the caller's transaction on PostgreSQL
+        if (!hasVersionTable(conn)) return 0;
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static boolean hasVersionTable(Connection conn) throws SQLException {
+        // Unquoted names are folded to lower case by PostgreSQL and to upper case by H2
+        for (String name : new String[]{"schema_version", "SCHEMA_VERSION"}) {
+            try (ResultSet rs = conn.getMetaData().getTables(null, null, name, new String[]{"TABLE"})) {
+                if (rs.next()) return true;
+            }
+        }
+        return false;
+    }
+}
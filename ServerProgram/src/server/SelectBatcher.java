@@ -0,0 +1,186 @@
+package server;
+
+import rmi.Student;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SelectBatcher looks up students by id for many concurrent callers with one
+ * {@link StudentStore#findStudents} query per batch instead of one query each.
+ *
+ * While fewer than maxConcurrent batches are running, a lookup is sent at once by its
+ * caller, so a quiet server adds no delay. Beyond that, lookups wait in the next batch,
+ * which is sent when a running batch finishes, when it holds maxSize ids, or maxDelay
+ * after its first lookup, whichever comes first. Callers waiting for the same id in a
+ * batch share one result. A batch already sent is not joined: it may have read the
+ * row before a write the new caller has seen.
+ *
+ * A batch runs with the read-your-writes session of whichever of its callers wrote
+ * last, so replicas are only used if they are fresh enough for every caller.
+ */
+public class SelectBatcher {
+
+    // Lookups collected for one query
+    private static final class Batch {
+        final Map<String, CompletableFuture<Optional<Student>>> lookups = new LinkedHashMap<>();
+        DBConnection.Session session;
+        long sessionAge = Long.MAX_VALUE;
+        ScheduledFuture<?> timeout;
+
+        void join(DBConnection.Session caller) {
+            if (caller == null) return;
+            long age = caller.millisSinceWrite();
+            if (session == null || age < sessionAge) {
+                session = caller;
+                sessionAge = age;
+            }
+        }
+    }
+
+    private final StudentStore store;
+    private final int maxSize;
+    private final long maxDelayNanos;
+    private final int maxConcurrent;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService sender = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("select-batch-", 0).factory());
+
+    private Batch collecting; // guarded by this, null while no lookup waits
+    private int running;      // guarded by this
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batched = new LongAdder();
+    private final LongAdder sentByDelay = new LongAdder();
+    private final LongAccumulator largest = new LongAccumulator(Math::max, 0);
+
+    public SelectBatcher(StudentStore store) {
+        this(store, ServerConfig.selectBatchMaxSize(), ServerConfig.selectBatchMaxDelayMicros(),
+                ServerConfig.selectBatchMaxConcurrent());
+    }
+
+    public SelectBatcher(StudentStore store, int maxSize, long maxDelayMicros, int maxConcurrent) {
+        this.store = store;
+        this.maxSize = Math.max(1, maxSize);
+        this.maxDelayNanos = Math.max(0, maxDelayMicros) * 1_000;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "select-batch-timer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * The student with the given id, looked up in the next batch.
+     */
+    public Optional<Student> find(String studentId) throws SQLException {
+        if (studentId == null) return Optional.empty();
+        lookups.increment();
+        CompletableFuture<Optional<Student>> result;
+        Batch send = null;
+        synchronized (this) {
+            if (collecting == null) {
+                collecting = new Batch();
+            }
+            Batch batch = collecting;
+            result = batch.lookups.get(studentId);
+            if (result == null) {
+                result = new CompletableFuture<>();
+                batch.lookups.put(studentId, result);
+            } else {
+                shared.increment();
+            }
+            batch.join(DBConnection.currentSession());
+            if (running < maxConcurrent || batch.lookups.size() >= maxSize) {
+                send = take();
+            } else if (batch.timeout == null) {
+                batch.timeout = timer.schedule(() -> sendLate(batch), maxDelayNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (send != null) {
+            // The caller would only wait, so it runs the query itself
+            run(send);
+        }
+        return await(result);
+    }
+
+    // Caller holds this
+    private Batch take() {
+        Batch batch = collecting;
+        collecting = null;
+        if (batch.timeout != null) batch.timeout.cancel(false);
+        running++;
+        return batch;
+    }
+
+    private void sendLate(Batch batch) {
+        Batch send;
+        synchronized (this) {
+            if (collecting != batch) return; // sent meanwhile
+            send = take();
+        }
+        sentByDelay.increment();
+        sender.execute(() -> run(send));
+    }
+
+    private void run(Batch batch) {
+        batches.increment();
+        batched.add(batch.lookups.size());
+        largest.accumulate(batch.lookups.size());
+        DBConnection.Session previous = DBConnection.bindSession(batch.session);
+        try {
+            Map<String, Student> found = store.findStudents(batch.lookups.keySet());
+            batch.lookups.forEach((id, result) -> result.complete(Optional.ofNullable(found.get(id))));
+        } catch (SQLException | RuntimeException e) {
+            batch.lookups.values().forEach(result -> result.completeExceptionally(e));
+        } finally {
+            DBConnection.bindSession(previous);
+            Batch next;
+            synchronized (this) {
+                running--;
+                next = (collecting != null) ? take() : null;
+            }
+            // Lookups that queued behind this batch go now rather than at their deadline
+            if (next != null) sender.execute(() -> run(next));
+        }
+    }
+
+    private static Optional<Student> await(CompletableFuture<Optional<Student>> result) throws SQLException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a student lookup", "57014", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sql) throw sql;
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            throw new SQLException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * One-line summary of the batcher, useful for logging.
+     */
+    public String getStats() {
+        long n = batches.sum();
+        return String.format("SelectBatcher[lookups=%d, shared=%d, batches=%d, avgBatch=%.1f, maxBatch=%d, "
+                        + "sentByDelay=%d, maxSize=%d, maxDelay=%dus, maxConcurrent=%d]",
+                lookups.sum(), shared.sum(), n, (n == 0) ? 0.0 : (double) batched.sum() / n, largest.get(),
+                sentByDelay.sum(), maxSize, maxDelayNanos / 1_000, maxConcurrent);
+    }
+}
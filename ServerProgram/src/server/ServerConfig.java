@@ -0,0 +1,352 @@
+package server;
+
+/**
+ * ServerConfig centralises the tunable settings of the server.
+ * Each setting is read from a JVM system property (e.g. -Ddb.pool.maxSize=20),
+ * then from the matching environment variable (DB_POOL_MAXSIZE), and finally
+ * falls back to the default given here.
+ */
+public final class ServerConfig {
+
+    private ServerConfig() {
+    }
+
+    // Database connection parameters
+    public static String dbUrl() {
+        return get("db.url", "jdbc:postgresql://localhost:5432/university1");
+    }
+
+    public static String dbUser() {
+        return get("db.user", "postgres");
+    }
+
+    public static String dbPassword() {
+        return get("db.password", "123");
+    }
+
+    // Read replicas of db.url, comma-separated JDBC URLs with the same credentials; empty for none
+    public static String dbReplicas() {
+        return get("db.replicas", "");
+    }
+
+    // Replicas further behind the primary than this get no reads
+    public static long replicaMaxLagMillis() {
+        return getLong("db.replica.maxLagMillis", 5_000L);
+    }
+
+    public static long replicaLagCheckIntervalMillis() {
+        return getLong("db.replica.lagCheckIntervalMillis", 1_000L);
+    }
+
+    // Apply pending schema migrations at startup; turn off where a DBA manages the schema
+    public static boolean schemaMigrate() {
+        return getBoolean("db.migrate", true);
+    }
+
+    // Connection pool sizing and timeouts
+    public static int poolMinSize() {
+        return getInt("db.pool.minSize", 2);
+    }
+
+    public static int poolMaxSize() {
+        return getInt("db.pool.maxSize", 10);
+    }
+
+    public static long poolBorrowTimeoutMillis() {
+        return getLong("db.pool.borrowTimeoutMillis", 5_000L);
+    }
+
+    public static long poolIdleTimeoutMillis() {
+        return getLong("db.pool.idleTimeoutMillis", 600_000L);
+    }
+
+    public static int poolValidationTimeoutSeconds() {
+        return getInt("db.pool.validationTimeoutSeconds", 2);
+    }
+
+    // Prepared statements kept open on each pooled connection for reuse by SQL text; 0 turns this off
+    public static int statementCacheSize() {
+        return getInt("db.statementCache.size", 64);
+    }
+
+    // PostgreSQL only: executions of a statement before the driver prepares it on the server
+    public static int prepareThreshold() {
+        return getInt("db.prepareThreshold", 1);
+    }
+
+    // Server-side student cursors used for bulk export
+    public static int cursorFetchSize() {
+        return getInt("db.cursor.fetchSize", 500);
+    }
+
+    public static int cursorMaxFetchSize() {
+        return getInt("db.cursor.maxFetchSize", 5_000);
+    }
+
+    public static int cursorMaxOpen() {
+        return getInt("db.cursor.maxOpen", Math.max(1, poolMaxSize() / 2));
+    }
+
+    public static long cursorIdleTimeoutMillis() {
+        return getLong("db.cursor.idleTimeoutMillis", 60_000L);
+    }
+
+    // Rows sent to the database per executeBatch call in the bulk write methods
+    public static int batchSize() {
+        return getInt("db.batch.size", 500);
+    }
+
+    // Read-through cache in front of select
+    public static boolean cacheEnabled() {
+        return getBoolean("cache.enabled", true);
+    }
+
+    public static int cacheMaxSize() {
+        return getInt("cache.maxSize", 10_000);
+    }
+
+    public static long cacheTtlMillis() {
+        return getLong("cache.ttlMillis", 60_000L);
+    }
+
+    public static long cacheNegativeTtlMillis() {
+        return getLong("cache.negativeTtlMillis", 5_000L);
+    }
+
+    // Concurrent selects looked up together, one query per batch: a batch is sent once it
+    // holds maxSize ids, maxDelayMicros after its first id, or at once while fewer than
+    // maxConcurrent batches are running
+    public static boolean selectBatchEnabled() {
+        return getBoolean("select.batch.enabled", true);
+    }
+
+    public static int selectBatchMaxSize() {
+        return getInt("select.batch.maxSize", 128);
+    }
+
+    public static long selectBatchMaxDelayMicros() {
+        return getLong("select.batch.maxDelayMicros", 500L);
+    }
+
+    public static int selectBatchMaxConcurrent() {
+        return getInt("select.batch.maxConcurrent", poolMaxSize());
+    }
+
+    // Invalidations pushed to clients that cache students: changed ids are batched per interval,
+    // and more than maxIds of them are sent as "drop everything"
+    public static long invalidationIntervalMillis() {
+        return getLong("invalidation.intervalMillis", 50L);
+    }
+
+    public static long invalidationHeartbeatMillis() {
+        return getLong("invalidation.heartbeatMillis", 5_000L);
+    }
+
+    public static int invalidationMaxIds() {
+        return getInt("invalidation.maxIds", 1_000);
+    }
+
+    // Reports rendered on the server and cached as files, one per report, format and data version
+    public static String reportDir() {
+        return get("report.dir", System.getProperty("java.io.tmpdir") + "/simple-distro-reports");
+    }
+
+    // Re-render after this even without local writes, to pick up writes made on other nodes
+    public static long reportMaxAgeMillis() {
+        return getLong("report.maxAgeMillis", 300_000L);
+    }
+
+    // How long a report replaced by a newer version stays readable for clients still downloading it
+    public static long reportRetainMillis() {
+        return getLong("report.retainMillis", 300_000L);
+    }
+
+    public static int reportMaxChunkBytes() {
+        return getInt("report.maxChunkBytes", 1 << 20);
+    }
+
+    // Password hashing pool; defaults to one thread per core
+    public static int bcryptThreads() {
+        return getInt("bcrypt.threads", Runtime.getRuntime().availableProcessors());
+    }
+
+    public static int bcryptQueueLimit() {
+        return getInt("bcrypt.queueLimit", 64);
+    }
+
+    public static int bcryptLogRounds() {
+        return getInt("bcrypt.logRounds", 10);
+    }
+
+    public static long bcryptTimeoutMillis() {
+        return getLong("bcrypt.timeoutMillis", 5_000L);
+    }
+
+    // Login lockout and attempt bookkeeping
+    public static int loginMaxAttempts() {
+        return getInt("login.maxAttempts", 5);
+    }
+
+    public static long loginLockoutSeconds() {
+        return getLong("login.lockoutSeconds", 900L);
+    }
+
+    public static boolean loginWriteBehind() {
+        return getBoolean("login.writeBehind", true);
+    }
+
+    public static long loginFlushIntervalMillis() {
+        return getLong("login.flushIntervalMillis", 500L);
+    }
+
+    // Where this node is published: rmi://<server.host>:<server.port>/<server.name>.
+    // Run several nodes on one machine by giving each its own port or name.
+    public static String serverHost() {
+        return get("server.host", "");
+    }
+
+    public static int serverPort() {
+        return getInt("server.port", 1099);
+    }
+
+    public static String serviceName() {
+        return get("server.name", "StudentDBService");
+    }
+
+    // Client sessions (read-your-writes) unused for this long are closed
+    public static long sessionIdleTimeoutMillis() {
+        return getLong("server.sessionIdleTimeoutMillis", 1_800_000L);
+    }
+
+    // How remote calls are executed: "platform" (on RMI's own threads, unbounded) or
+    // "limited" (at most server.maxConcurrency at once, the rest wait in arrival order)
+    public static String executionMode() {
+        return get("server.executionMode", "platform");
+    }
+
+    // Calls allowed to run at once in limited mode; defaults to the pool size
+    public static int maxConcurrency() {
+        return getInt("server.maxConcurrency", poolMaxSize());
+    }
+
+    // Page size of the search calls when the client asks for 0, and the most it may ask for
+    public static int queryDefaultLimit() {
+        return getInt("query.defaultLimit", 50);
+    }
+
+    public static int queryMaxLimit() {
+        return getInt("query.maxLimit", 1_000);
+    }
+
+    // Per remote method call counts and latency histograms, also published over JMX
+    public static boolean metricsEnabled() {
+        return getBoolean("metrics.enabled", true);
+    }
+
+    // Storage engine behind DBOperations: "jdbc", "memory" or "embedded"
+    public static String storeEngine() {
+        return get("store.engine", "jdbc");
+    }
+
+    // Students split over several stores by student_id: "name=location,..." where a location
+    // is a JDBC URL, "memory" or "embedded:<dir>". Empty keeps everything in one store.engine store.
+    public static String storeShards() {
+        return get("store.shards", "");
+    }
+
+    // Points per shard on the consistent hash ring; more spread the ids more evenly
+    public static int shardVirtualNodes() {
+        return getInt("store.shards.virtualNodes", 128);
+    }
+
+    // Server nodes routing over the same shards. The layout is only known to each node itself,
+    // so moving rows while the server runs (addShard, rebalance) is refused unless this is 1
+    public static int shardServerNodes() {
+        return getInt("store.shards.serverNodes", 1);
+    }
+
+    // Lock stripes of the in-memory store; rounded up to a power of two
+    public static int memoryStripes() {
+        return getInt("store.memory.stripes", 64);
+    }
+
+    // Embedded engine: data directory, write-ahead log and snapshots
+    public static String storeDir() {
+        return get("store.dir", "data");
+    }
+
+    public static int walSegmentBytes() {
+        return getInt("store.wal.segmentBytes", 64 * 1024 * 1024);
+    }
+
+    // How often the log is forced to disk; 0 forces as soon as a writer waits
+    public static long walSyncIntervalMillis() {
+        return getLong("store.wal.syncIntervalMillis", 2L);
+    }
+
+    // Whether a write waits for its log frame to reach the disk
+    public static boolean walSyncCommit() {
+        return getBoolean("store.wal.syncCommit", true);
+    }
+
+    public static long snapshotIntervalMillis() {
+        return getLong("store.snapshot.intervalMillis", 300_000L);
+    }
+
+    public static boolean snapshotOnClose() {
+        return getBoolean("store.snapshot.onClose", true);
+    }
+
+    // Change feed of student writes for downstream consumers: the last capacity changes are
+    // kept in memory (0 turns the feed off), and also logged in dir when it is set
+    public static int changeFeedCapacity() {
+        return getInt("changefeed.capacity", 100_000);
+    }
+
+    public static String changeFeedDir() {
+        return get("changefeed.dir", "");
+    }
+
+    // Most changes returned by one fetchChanges call
+    public static int changeFeedMaxBatch() {
+        return getInt("changefeed.maxBatch", 1_000);
+    }
+
+    /**
+     * Looks up a setting, first as a system property and then as an environment variable.
+     */
+    public static String get(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = System.getenv(key.toUpperCase().replace('.', '_'));
+        }
+        return (value == null || value.isBlank()) ? defaultValue : value.trim();
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = get(key, null);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = get(key, null);
+        if (value == null) return defaultValue;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key, null);
+        return (value == null) ? defaultValue : Boolean.parseBoolean(value);
+    }
+}
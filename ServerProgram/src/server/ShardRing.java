@@ -0,0 +1,90 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * ShardRing maps student ids to shard names by consistent hashing. Every shard is
+ * placed on a 64-bit ring at virtualNodes points; an id belongs to the shard owning
+ * the first point at or after the id's hash. Adding a shard therefore only moves
+ * the ids that now fall just before its points, about 1/(n+1) of them, all to it.
+ *
+ * The hash is computed from the characters of the key only, so every server node
+ * and every restart routes an id to the same shard. A ring is immutable.
+ */
+final class ShardRing {
+
+    private final List<String> shards;
+    private final int virtualNodes;
+    private final long[] points;   // sorted
+    private final int[] owners;    // index into shards of the shard owning each point
+
+    ShardRing(List<String> shards, int virtualNodes) {
+        if (shards.isEmpty()) throw new IllegalArgumentException("A shard ring needs at least one shard");
+        this.shards = List.copyOf(shards);
+        this.virtualNodes = Math.max(1, virtualNodes);
+
+        int n = this.shards.size() * this.virtualNodes;
+        long[] hashes = new long[n];
+        int[] shardOf = new int[n];
+        for (int s = 0, p = 0; s < this.shards.size(); s++) {
+            for (int v = 0; v < this.virtualNodes; v++, p++) {
+                hashes[p] = hash(this.shards.get(s) + "#" + v);
+                shardOf[p] = s;
+            }
+        }
+        // Sort the points, carrying their owners along
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(hashes[a], hashes[b]));
+        points = new long[n];
+        owners = new int[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = hashes[order[i]];
+            owners[i] = shardOf[order[i]];
+        }
+    }
+
+    /**
+     * The shard the given id belongs to.
+     */
+    String shardFor(String id) {
+        int i = Arrays.binarySearch(points, hash(id));
+        if (i < 0) i = -i - 1;
+        return shards.get(owners[i == points.length ? 0 : i]);
+    }
+
+    /**
+     * The same ring with one more shard.
+     */
+    ShardRing with(String shard) {
+        if (shards.contains(shard)) throw new IllegalArgumentException("Shard " + shard + " is already on the ring");
+        List<String> more = new ArrayList<>(shards);
+        more.add(shard);
+        return new ShardRing(more, virtualNodes);
+    }
+
+    List<String> getShards() {
+        return shards;
+    }
+
+    int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    // FNV-1a over the UTF-16 chars, then MurmurHash3's finaliser to spread nearby keys
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe53e94d3L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
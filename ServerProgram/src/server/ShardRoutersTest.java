@@ -0,0 +1,92 @@
+package server;
+
+import rmi.Student;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Test class for two server nodes routing over the same shards. Each node knows only
+ * its own layout, so adding a shard while both run must be refused; the offline
+ * procedure (one node moves the rows, then every node starts with the new list) must
+ * leave every student where both nodes look for it.
+ */
+public class ShardRoutersTest {
+
+    private static final int ROWS = 2000;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, StudentStore> shards = new LinkedHashMap<>();
+        shards.put("a", new MemoryStudentStore());
+        shards.put("b", new MemoryStudentStore());
+        ShardedStudentStore first = new ShardedStudentStore(shards, 128, 2);
+        ShardedStudentStore second = new ShardedStudentStore(shards, 128, 2);
+
+        for (int i = 0; i < ROWS; i++) {
+            (i % 2 == 0 ? first : second).insertStudent(new Student("S" + i, "Name " + i, "Course"));
+        }
+        check(allFound(first) && allFound(second), "both nodes find the students either one inserted");
+
+        // Online: the other node would go on routing by the old ring
+        MemoryStudentStore added = new MemoryStudentStore();
+        try {
+            first.addShard("c", added);
+            check(false, "shard added while another node runs");
+        } catch (IllegalStateException e) {
+            check(true, "online addShard refused: " + e.getMessage());
+        }
+        try {
+            second.rebalance();
+            check(false, "rebalanced while another node runs");
+        } catch (IllegalStateException e) {
+            check(true, "online rebalance refused");
+        }
+        check(first.getShardStores().keySet().equals(shards.keySet()) && added.countStudents() == 0,
+                "layout and rows unchanged after the refusals");
+
+        // Offline: both nodes stopped, one started alone with the new list moves the rows
+        Map<String, StudentStore> grown = new LinkedHashMap<>(shards);
+        grown.put("c", added);
+        new ShardedStudentStore(grown, 128, 1).rebalance();
+        check(added.countStudents() > 0, "rows moved to the new shard: " + added.countStudents());
+
+        // Then every node starts with the new list
+        first = new ShardedStudentStore(grown, 128, 2);
+        second = new ShardedStudentStore(grown, 128, 2);
+        check(allFound(first) && allFound(second), "both nodes find every student after the move");
+        check(first.countStudents() == ROWS && second.countStudents() == ROWS, "no student lost or duplicated");
+        for (Map.Entry<String, StudentStore> shard : grown.entrySet()) {
+            for (int i = 0; i < ROWS; i++) {
+                boolean owned = first.shardOf("S" + i).equals(shard.getKey());
+                if (shard.getValue().findStudent("S" + i).isPresent() != owned) {
+                    check(false, "S" + i + " on shard " + shard.getKey());
+                }
+            }
+        }
+        check(true, "every student is on the shard that owns it");
+
+        // A write through one node is seen by the other, including on the new shard
+        for (int i = 0; i < ROWS; i += 7) {
+            first.updateStudent(new Student("S" + i, "Renamed " + i, "Course"));
+        }
+        first.insertStudent(new Student("new", "New", "Course"));
+        check(second.findStudent("S0").map(Student::name).equals(Optional.of("Renamed 0"))
+                && second.findStudent("new").isPresent(), "writes through one node seen by the other");
+
+        System.out.println("Shard routers test passed.");
+    }
+
+    private static boolean allFound(StudentStore store) throws SQLException {
+        for (int i = 0; i < ROWS; i++) {
+            if (store.findStudent("S" + i).isEmpty()) return false;
+        }
+        return true;
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) throw new AssertionError("Failed: " + what);
+        System.out.println("OK: " + what);
+    }
+}
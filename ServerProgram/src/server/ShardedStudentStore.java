@@ -0,0 +1,859 @@
+package server;
+
+import rmi.Student;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * ShardedStudentStore spreads students over several stores, one per shard, by
+ * consistent hashing of student_id (see {@link ShardRing}). Single-row calls go to
+ * the owning shard; batches are split by shard and run in parallel; searches and the
+ * full scan ask every shard at once and merge the answers. Users are not sharded
+ * and live on the first shard.
+ *
+ * A shard can be added while the server runs. The rows it now owns are copied over
+ * and then deleted from their old shard, one at a time under a lock striped by id.
+ * Until the move is done, reads look in the old place before the new one, and writes
+ * to a moving id take its lock and go wherever the row is at that moment. The layout
+ * and the locks are this node's alone: other nodes over the same shards would keep
+ * routing by the old ring, so with serverNodes above 1 rows are only moved offline.
+ *
+ * A batch is atomic on each shard. When a batch spans shards and one part fails, the
+ * parts already applied are undone, but other clients may briefly see them.
+ */
+public class ShardedStudentStore implements StudentStore {
+
+    private static final int LOCK_STRIPES = 64;
+
+    /**
+     * JMX view of the shard layout, published as simple-distro:type=Shards.
+     * addShard and rebalance return at once and move rows in the background; both
+     * are refused when store.shards.serverNodes is above 1.
+     */
+    public interface ShardsMXBean {
+        List<String> getShards();
+        String getUserShard();
+        int getVirtualNodes();
+        boolean isRebalancing();
+        long getMovedRows();
+        void addShard(String name, String location);
+        void rebalance();
+    }
+
+    /**
+     * Where ids live. While rebalancing, a row may still sit on the shard that owns it
+     * in previous, or on any shard if previous is null (after an interrupted move).
+     */
+    private record Layout(Map<String, StudentStore> shards, ShardRing ring, ShardRing previous,
+                          boolean rebalancing) {
+    }
+
+    private interface Task {
+        void run() throws SQLException;
+    }
+
+    // A call made against one shard
+    private interface ShardCall<T> {
+        T run(StudentStore shard) throws SQLException;
+    }
+
+    // A write to one id: owner is where the id belongs, holder where the row is now
+    private interface RowCall<T> {
+        T run(StudentStore owner, StudentStore holder) throws SQLException;
+    }
+
+    // The rows of a batch that go to one shard, and their positions in the batch
+    private record Part<T>(StudentStore shard, List<T> rows, int[] positions) {
+    }
+
+    // What applying a part did, enough to undo it
+    private record Applied(int[] counts, List<Student> before) {
+    }
+
+    private final String userShard;
+    private final StudentStore users;
+    private final int serverNodes;
+    private final ReentrantLock[] rowLocks = new ReentrantLock[LOCK_STRIPES];
+    private final StampedLock layoutLock = new StampedLock();
+    private final ReentrantLock rebalanceLock = new ReentrantLock();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final LongAdder movedRows = new LongAdder();
+    private volatile Layout layout;
+
+    public ShardedStudentStore(Map<String, StudentStore> shards, int virtualNodes) {
+        this(shards, virtualNodes, 1);
+    }
+
+    /**
+     * @param shards the shard stores by name, in order; the first also holds the users.
+     * @param virtualNodes points per shard on the hash ring.
+     * @param serverNodes how many server nodes, this one included, route over these shards.
+     */
+    public ShardedStudentStore(Map<String, StudentStore> shards, int virtualNodes, int serverNodes) {
+        this.serverNodes = serverNodes;
+        Map<String, StudentStore> copy = new LinkedHashMap<>(shards);
+        layout = new Layout(copy, new ShardRing(new ArrayList<>(copy.keySet()), virtualNodes), null, false);
+        userShard = copy.keySet().iterator().next();
+        users = copy.get(userShard);
+        for (int i = 0; i < rowLocks.length; i++) {
+            rowLocks[i] = new ReentrantLock();
+        }
+        register();
+    }
+
+    /**
+     * Opens the shards listed in store.shards, see {@link ServerConfig#storeShards()}.
+     */
+    public static ShardedStudentStore fromConfig() {
+        Map<String, StudentStore> shards = new LinkedHashMap<>();
+        for (String entry : ServerConfig.storeShards().split(",")) {
+            if (entry.isBlank()) continue;
+            int eq = entry.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("Expected name=location in store.shards: " + entry);
+            String name = entry.substring(0, eq).trim();
+            if (shards.putIfAbsent(name, openShard(entry.substring(eq + 1).trim())) != null) {
+                throw new IllegalArgumentException("Shard " + name + " is listed twice in store.shards");
+            }
+        }
+        if (shards.isEmpty()) throw new IllegalArgumentException("store.shards lists no shards");
+        return new ShardedStudentStore(shards, ServerConfig.shardVirtualNodes(), ServerConfig.shardServerNodes());
+    }
+
+    /**
+     * Opens the store at a shard location: a JDBC URL (sharing db.user and db.password),
+     * "memory", or "embedded:" followed by a data directory.
+     */
+    public static StudentStore openShard(String location) {
+        if (location.startsWith("jdbc:")) {
+            return new JdbcStudentStore(new DBConnection(location, ServerConfig.dbUser(), ServerConfig.dbPassword()));
+        }
+        if (location.equals("memory")) {
+            return new MemoryStudentStore();
+        }
+        if (location.startsWith("embedded:")) {
+            return EmbeddedStudentStore.open(Path.of(location.substring("embedded:".length())));
+        }
+        throw new IllegalArgumentException("Unknown shard location: " + location);
+    }
+
+    public Map<String, StudentStore> getShardStores() {
+        return layout.shards();
+    }
+
+    public StudentStore getUserStore() {
+        return users;
+    }
+
+    /**
+     * The name of the shard a student id belongs to.
+     */
+    public String shardOf(String studentId) {
+        return layout.ring().shardFor(studentId);
+    }
+
+    @Override
+    public int insertStudent(Student student) throws SQLException {
+        String id = MemoryStudentStore.checkId(student.id());
+        return write(id, (owner, holder) -> {
+            if (holder != owner) throw MemoryStudentStore.duplicate(id);
+            return owner.insertStudent(student);
+        });
+    }
+
+    @Override
+    public Optional<Student> findStudent(String studentId) throws SQLException {
+        if (studentId == null) return Optional.empty();
+        return read(l -> {
+            StudentStore owner = l.shards().get(l.ring().shardFor(studentId));
+            // A moving row is copied to its owner before it is deleted from the old
+            // shard, so looking in the old place first cannot miss it
+            for (StudentStore former : formerHolders(l, studentId, owner)) {
+                Optional<Student> found = former.findStudent(studentId);
+                if (found.isPresent()) return found;
+            }
+            return owner.findStudent(studentId);
+        });
+    }
+
+    @Override
+    public Map<String, Student> findStudents(Collection<String> studentIds) throws SQLException {
+        return read(l -> {
+            Map<String, Student> found = new HashMap<>();
+            Map<StudentStore, List<String>> byOwner = new LinkedHashMap<>();
+            for (String id : studentIds) {
+                if (id == null) continue;
+                StudentStore owner = l.shards().get(l.ring().shardFor(id));
+                Collection<StudentStore> formers = formerHolders(l, id, owner);
+                if (formers.isEmpty()) {
+                    byOwner.computeIfAbsent(owner, k -> new ArrayList<>()).add(id);
+                    continue;
+                }
+                // A moving row is looked up the way findStudent does, old place first
+                for (StudentStore former : formers) {
+                    Optional<Student> s = former.findStudent(id);
+                    if (s.isPresent()) {
+                        found.put(id, s.get());
+                        break;
+                    }
+                }
+                if (!found.containsKey(id)) owner.findStudent(id).ifPresent(s -> found.put(id, s));
+            }
+            List<StudentStore> owners = new ArrayList<>(byOwner.keySet());
+            for (Map<String, Student> part : scatter(owners, shard -> shard.findStudents(byOwner.get(shard)))) {
+                found.putAll(part);
+            }
+            return found;
+        });
+    }
+
+    @Override
+    public int updateStudent(Student student) throws SQLException {
+        if (student.id() == null) return 0;
+        return write(student.id(), (owner, holder) -> holder.updateStudent(student));
+    }
+
+    @Override
+    public int deleteStudent(String studentId) throws SQLException {
+        if (studentId == null) return 0;
+        return write(studentId, (owner, holder) -> holder.deleteStudent(studentId));
+    }
+
+    @Override
+    public int[] insertAll(List<Student> students) throws SQLException {
+        return writeBatch(students, Student::id, true,
+                (shard, rows, undoable) -> new Applied(shard.insertAll(rows), null),
+                (shard, rows, applied) -> shard.deleteAll(rows.stream().map(Student::id).toList()));
+    }
+
+    @Override
+    public int[] updateAll(List<Student> students) throws SQLException {
+        return writeBatch(students, Student::id, false,
+                (shard, rows, undoable) -> {
+                    List<Student> before = undoable ? beforeImages(shard, rows.stream().map(Student::id).toList()) : null;
+                    return new Applied(shard.updateAll(rows), before);
+                },
+                (shard, rows, applied) -> shard.updateAll(applied.before()));
+    }
+
+    @Override
+    public int[] deleteAll(List<String> studentIds) throws SQLException {
+        return writeBatch(studentIds, Function.identity(), false,
+                (shard, rows, undoable) -> {
+                    List<Student> before = undoable ? beforeImages(shard, rows) : null;
+                    return new Applied(shard.deleteAll(rows), before);
+                },
+                (shard, rows, applied) -> shard.insertAll(applied.before()));
+    }
+
+    @Override
+    public List<Student> findByCourse(String course, String afterId, int limit) throws SQLException {
+        return search(shard -> shard.findByCourse(course, afterId, limit), limit);
+    }
+
+    @Override
+    public List<Student> findByNamePrefix(String prefix, String afterId, int limit) throws SQLException {
+        return search(shard -> shard.findByNamePrefix(prefix, afterId, limit), limit);
+    }
+
+    @Override
+    public List<Student> findByNameContaining(String text, String afterId, int limit) throws SQLException {
+        return search(shard -> shard.findByNameContaining(text, afterId, limit), limit);
+    }
+
+    /**
+     * Each shard lists its first offset + limit rows; the merged rows are skipped and
+     * cut the same way, so deep offsets cost every shard.
+     */
+    @Override
+    public List<Student> listStudents(SortColumn column, boolean descending, Student after, int offset, int limit)
+            throws SQLException {
+        int keep = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+        return search(shard -> shard.listStudents(column, descending, after, 0, keep),
+                column.comparator(descending), offset, limit);
+    }
+
+    @Override
+    public long countStudents() throws SQLException {
+        return read(l -> {
+            long total = 0;
+            for (long n : scatter(new ArrayList<>(l.shards().values()), StudentStore::countStudents)) {
+                total += n;
+            }
+            return total;
+        });
+    }
+
+    /**
+     * Opens a cursor on every shard and reads them all at once, one chunk ahead each.
+     * Chunks are handed out in the order they arrive. A scan that overlaps a rebalance
+     * may miss or repeat rows that move while it runs.
+     */
+    @Override
+    public StudentCursor openStudentCursor(int fetchSize) throws SQLException {
+        List<StudentCursor> cursors = new ArrayList<>();
+        try {
+            for (StudentStore shard : layout.shards().values()) {
+                cursors.add(shard.openStudentCursor(fetchSize));
+            }
+        } catch (SQLException | RuntimeException e) {
+            cursors.forEach(StudentCursor::close);
+            throw e;
+        }
+        return new ScatterCursor(cursors);
+    }
+
+    @Override
+    public void createUser(String username, String passwordHash) throws SQLException {
+        users.createUser(username, passwordHash);
+    }
+
+    @Override
+    public Optional<LoginState> findLogin(String username, long lockoutSeconds) throws SQLException {
+        return users.findLogin(username, lockoutSeconds);
+    }
+
+    @Override
+    public void recordLoginSuccess(String username) throws SQLException {
+        users.recordLoginSuccess(username);
+    }
+
+    @Override
+    public Optional<LoginReservation> reserveLogin(String username, int maxAttempts, long lockoutSeconds)
+            throws SQLException {
+        return users.reserveLogin(username, maxAttempts, lockoutSeconds);
+    }
+
+    @Override
+    public void releaseLogin(String username, LoginReservation reservation) throws SQLException {
+        users.releaseLogin(username, reservation);
+    }
+
+    /**
+     * Adds a shard and moves the rows it now owns onto it, blocking until they are moved.
+     * Reads and writes carry on meanwhile. If the move fails, the shard stays on the
+     * ring and {@link #rebalance()} finishes the move.
+     * @throws IllegalStateException if other server nodes route over these shards.
+     */
+    public void addShard(String name, StudentStore shard) throws SQLException {
+        checkOnlyNode("Adding a shard");
+        rebalanceLock.lock();
+        try {
+            Layout l = layout;
+            if (l.shards().containsKey(name)) throw new IllegalArgumentException("Shard " + name + " already exists");
+            Map<String, StudentStore> shards = new LinkedHashMap<>(l.shards());
+            shards.put(name, shard);
+            setLayout(new Layout(shards, l.ring().with(name), l.ring(), true));
+            System.out.println("Adding shard " + name + ", moving its rows from " + l.shards().keySet());
+            moveMisplacedRows();
+        } finally {
+            rebalanceLock.unlock();
+        }
+    }
+
+    /**
+     * Moves every row that is not on the shard owning it, e.g. after a move was
+     * interrupted by a failure or a restart. Scans all shards.
+     * @throws IllegalStateException if other server nodes route over these shards.
+     */
+    public void rebalance() throws SQLException {
+        checkOnlyNode("Rebalancing");
+        rebalanceLock.lock();
+        try {
+            Layout l = layout;
+            if (!l.rebalancing()) {
+                setLayout(new Layout(l.shards(), l.ring(), null, true));
+            }
+            moveMisplacedRows();
+        } finally {
+            rebalanceLock.unlock();
+        }
+    }
+
+    // Another node would not see the rows move: it reads only the owner by its own ring and writes there
+    private void checkOnlyNode(String what) {
+        if (serverNodes > 1) {
+            throw new IllegalStateException(what + " while " + serverNodes + " server nodes use these shards "
+                    + "would leave the others routing by the old layout; stop them and restart this node with "
+                    + "store.shards.serverNodes=1");
+        }
+    }
+
+    private void moveMisplacedRows() throws SQLException {
+        Layout l = layout;
+        long start = System.nanoTime();
+        long before = movedRows.sum();
+        for (Map.Entry<String, StudentStore> entry : l.shards().entrySet()) {
+            String name = entry.getKey();
+            // A shard that was not on the previous ring has nothing to give away
+            if (l.previous() != null && !l.previous().getShards().contains(name)) continue;
+            try (StudentCursor cursor = entry.getValue().openStudentCursor(ServerConfig.cursorFetchSize())) {
+                while (!cursor.isExhausted()) {
+                    for (Student s : cursor.next()) {
+                        String owner = l.ring().shardFor(s.id());
+                        if (!owner.equals(name)) {
+                            move(s.id(), entry.getValue(), l.shards().get(owner));
+                        }
+                    }
+                }
+            }
+        }
+        setLayout(new Layout(l.shards(), l.ring(), null, false));
+        System.out.printf("Rebalanced shards %s: moved %d rows in %d ms%n", l.shards().keySet(),
+                movedRows.sum() - before, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void move(String id, StudentStore from, StudentStore to) throws SQLException {
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            // Re-read under the lock: the cursor's copy may be older than a write since
+            Optional<Student> current = from.findStudent(id);
+            if (current.isEmpty()) return;
+            boolean copied = false;
+            try {
+                to.insertStudent(current.get());
+                copied = true;
+            } catch (SQLException e) {
+                // Left by a move that died between copy and delete; writes since went to the owner
+                if (!"23505".equals(e.getSQLState())) throw e;
+            }
+            try {
+                from.deleteStudent(id);
+            } catch (SQLException e) {
+                if (copied) to.deleteStudent(id);
+                throw e;
+            }
+            movedRows.increment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Waits for writes under the old layout to finish, so none of them lands behind the mover
+    private void setLayout(Layout l) {
+        long stamp = layoutLock.writeLock();
+        try {
+            layout = l;
+        } finally {
+            layoutLock.unlockWrite(stamp);
+        }
+    }
+
+    private interface LayoutCall<T> {
+        T run(Layout l) throws SQLException;
+    }
+
+    /**
+     * Runs a read against the current layout, again if the layout changed meanwhile.
+     */
+    private <T> T read(LayoutCall<T> call) throws SQLException {
+        long stamp = layoutLock.tryOptimisticRead();
+        if (stamp != 0) {
+            T result = call.run(layout);
+            if (layoutLock.validate(stamp)) return result;
+        }
+        stamp = layoutLock.readLock();
+        try {
+            return call.run(layout);
+        } finally {
+            layoutLock.unlockRead(stamp);
+        }
+    }
+
+    private <T> T write(String id, RowCall<T> call) throws SQLException {
+        long stamp = layoutLock.readLock();
+        try {
+            Layout l = layout;
+            StudentStore owner = l.shards().get(l.ring().shardFor(id));
+            if (!l.rebalancing()) return call.run(owner, owner);
+            ReentrantLock lock = lockFor(id);
+            lock.lock();
+            try {
+                return call.run(owner, holder(l, id, owner));
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            layoutLock.unlockRead(stamp);
+        }
+    }
+
+    // The shard holding id now; the caller holds the id's lock
+    private StudentStore holder(Layout l, String id, StudentStore owner) throws SQLException {
+        for (StudentStore former : formerHolders(l, id, owner)) {
+            if (former.findStudent(id).isPresent()) return former;
+        }
+        return owner;
+    }
+
+    // Shards other than the owner that may still hold id
+    private static Collection<StudentStore> formerHolders(Layout l, String id, StudentStore owner) {
+        if (!l.rebalancing()) return List.of();
+        if (l.previous() != null) {
+            StudentStore former = l.shards().get(l.previous().shardFor(id));
+            return (former == owner) ? List.of() : List.of(former);
+        }
+        List<StudentStore> others = new ArrayList<>(l.shards().values());
+        others.remove(owner);
+        return others;
+    }
+
+    private ReentrantLock lockFor(String id) {
+        return rowLocks[(int) ShardRing.hash(id) & (LOCK_STRIPES - 1)];
+    }
+
+    private interface PartCall<T> {
+        // undoable: also keep what the undo will need; only asked for when the batch spans shards
+        Applied run(StudentStore shard, List<T> rows, boolean undoable) throws SQLException;
+    }
+
+    private interface UndoCall<T> {
+        void run(StudentStore shard, List<T> rows, Applied applied) throws SQLException;
+    }
+
+    /**
+     * Splits a batch by shard and applies the parts in parallel. During a rebalance the
+     * locks of all its ids are held, in stripe order, and each row goes to its holder.
+     */
+    private <T> int[] writeBatch(List<T> rows, Function<T, String> idOf, boolean inserting,
+                                 PartCall<T> apply, UndoCall<T> undo) throws SQLException {
+        if (rows.isEmpty()) return new int[0];
+        long stamp = layoutLock.readLock();
+        List<ReentrantLock> held = new ArrayList<>();
+        try {
+            Layout l = layout;
+            if (l.rebalancing()) {
+                int[] stripes = rows.stream()
+                        .map(idOf).filter(id -> id != null)
+                        .mapToInt(id -> (int) ShardRing.hash(id) & (LOCK_STRIPES - 1))
+                        .distinct().sorted().toArray();
+                for (int stripe : stripes) {
+                    rowLocks[stripe].lock();
+                    held.add(rowLocks[stripe]);
+                }
+            }
+
+            Map<StudentStore, List<Integer>> positions = new LinkedHashMap<>();
+            for (int i = 0; i < rows.size(); i++) {
+                String id = idOf.apply(rows.get(i));
+                // Rows without an id fail on whichever shard gets them, as they would unsharded
+                StudentStore owner = l.shards().get(l.ring().shardFor(id == null ? "" : id));
+                StudentStore target = owner;
+                if (l.rebalancing() && id != null) {
+                    target = holder(l, id, owner);
+                    if (inserting && target != owner) throw failedAt(rows.size(), i, MemoryStudentStore.duplicate(id));
+                }
+                positions.computeIfAbsent(target, k -> new ArrayList<>()).add(i);
+            }
+
+            if (positions.size() == 1) {
+                return apply.run(positions.keySet().iterator().next(), rows, false).counts();
+            }
+            List<Part<T>> parts = new ArrayList<>();
+            positions.forEach((shard, at) -> {
+                int[] pos = at.stream().mapToInt(Integer::intValue).toArray();
+                List<T> partRows = new ArrayList<>(pos.length);
+                for (int p : pos) partRows.add(rows.get(p));
+                parts.add(new Part<>(shard, partRows, pos));
+            });
+            return applyParts(rows.size(), parts, apply, undo);
+        } finally {
+            for (ReentrantLock lock : held) {
+                lock.unlock();
+            }
+            layoutLock.unlockRead(stamp);
+        }
+    }
+
+    private <T> int[] applyParts(int size, List<Part<T>> parts, PartCall<T> apply, UndoCall<T> undo)
+            throws SQLException {
+        List<Future<Applied>> futures = new ArrayList<>(parts.size());
+        for (Part<T> part : parts) {
+            futures.add(executor.submit(DBConnection.inSession(() -> apply.run(part.shard(), part.rows(), true))));
+        }
+
+        int[] counts = new int[size];
+        List<Integer> done = new ArrayList<>();
+        List<Applied> results = new ArrayList<>();
+        SQLException failure = null;
+        int failedRow = -1;
+        for (int i = 0; i < parts.size(); i++) {
+            try {
+                Applied applied = await(futures.get(i));
+                int[] positions = parts.get(i).positions();
+                for (int j = 0; j < positions.length; j++) {
+                    counts[positions[j]] = applied.counts()[j];
+                }
+                done.add(i);
+                results.add(applied);
+            } catch (SQLException e) {
+                if (failure == null) {
+                    failure = e;
+                    int row = DBOperations.failedRow(e);
+                    int[] positions = parts.get(i).positions();
+                    failedRow = (row >= 0) ? positions[Math.min(row, positions.length - 1)] : -1;
+                }
+            }
+        }
+        if (failure == null) return counts;
+
+        for (int k = 0; k < done.size(); k++) {
+            Part<T> part = parts.get(done.get(k));
+            try {
+                undo.run(part.shard(), part.rows(), results.get(k));
+            } catch (SQLException e) {
+                System.err.println("Could not undo part of a failed batch on one shard: " + e.getMessage());
+            }
+        }
+        if (failedRow < 0) throw failure;
+        throw failedAt(size, failedRow, failure);
+    }
+
+    // The rows of ids present on shard, read before a batch changes them
+    private static List<Student> beforeImages(StudentStore shard, List<String> ids) throws SQLException {
+        List<Student> before = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            if (id != null) shard.findStudent(id).ifPresent(before::add);
+        }
+        return before;
+    }
+
+    // A failure of the whole batch, pinned on one row the way DBOperations reads it
+    private static BatchUpdateException failedAt(int size, int row, SQLException cause) {
+        int[] counts = new int[size];
+        counts[row] = Statement.EXECUTE_FAILED;
+        BatchUpdateException e = new BatchUpdateException(cause.getMessage(), cause.getSQLState(),
+                cause.getErrorCode(), counts, cause);
+        e.setNextException(cause.getNextException() != null ? cause.getNextException() : cause);
+        return e;
+    }
+
+    /**
+     * Asks every shard for one page and keeps the first limit rows by id. Each shard
+     * pages by id in the same order, the code point order of schema migration 9, so the
+     * merged pages are the pages of the whole table.
+     * While a shard is being filled, the other shards are asked first: a row moving
+     * meanwhile is then found either in its old shard or already in the new one.
+     */
+    private List<Student> search(ShardCall<List<Student>> call, int limit) throws SQLException {
+        return search(call, SortColumn.ID.comparator(false), 0, limit);
+    }
+
+    // The same for pages in any order, skipping the first offset merged rows
+    private List<Student> search(ShardCall<List<Student>> call, Comparator<Student> order, int offset, int limit)
+            throws SQLException {
+        return read(l -> {
+            List<StudentStore> first = new ArrayList<>(l.shards().values());
+            List<StudentStore> last = new ArrayList<>();
+            if (l.rebalancing() && l.previous() != null) {
+                for (Map.Entry<String, StudentStore> e : l.shards().entrySet()) {
+                    if (!l.previous().getShards().contains(e.getKey())) {
+                        first.remove(e.getValue());
+                        last.add(e.getValue());
+                    }
+                }
+            }
+            Map<String, Student> merged = new HashMap<>();
+            for (List<Student> page : scatter(first, call)) {
+                for (Student s : page) merged.putIfAbsent(s.id(), s);
+            }
+            for (List<Student> page : scatter(last, call)) {
+                for (Student s : page) merged.putIfAbsent(s.id(), s);
+            }
+            List<Student> rows = new ArrayList<>(merged.values());
+            rows.sort(order);
+            if (rows.size() <= offset) return new ArrayList<>();
+            return new ArrayList<>(rows.subList(offset, Math.min(rows.size(), offset + limit)));
+        });
+    }
+
+    private <T> List<T> scatter(List<StudentStore> shards, ShardCall<T> call) throws SQLException {
+        if (shards.isEmpty()) return List.of();
+        if (shards.size() == 1) return List.of(call.run(shards.get(0)));
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (StudentStore shard : shards) {
+            futures.add(executor.submit(DBConnection.inSession(() -> call.run(shard))));
+        }
+        List<T> results = new ArrayList<>(shards.size());
+        for (Future<T> f : futures) {
+            results.add(await(f));
+        }
+        return results;
+    }
+
+    private static <T> T await(Future<T> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a shard", "57014", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sql) throw sql;
+            if (cause instanceof RuntimeException runtime) throw runtime;
+            throw new SQLException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * One-line summary of the shard layout, useful for logging.
+     */
+    public String getStats() {
+        Layout l = layout;
+        return String.format("ShardedStore[shards=%s, virtualNodes=%d, rebalancing=%b, moved=%d]",
+                l.shards().keySet(), l.ring().getVirtualNodes(), l.rebalancing(), movedRows.sum());
+    }
+
+    // A chunk read from one shard's cursor
+    private record Fetched(StudentCursor cursor, List<Student> rows) {
+    }
+
+    private final class ScatterCursor implements StudentCursor {
+        private final List<StudentCursor> cursors;
+        private final CompletionService<Fetched> fetches = new ExecutorCompletionService<>(executor);
+        private int pending;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private boolean exhausted;
+
+        ScatterCursor(List<StudentCursor> cursors) {
+            this.cursors = cursors;
+            cursors.forEach(this::fetch);
+        }
+
+        private void fetch(StudentCursor cursor) {
+            fetches.submit(DBConnection.inSession(() -> new Fetched(cursor, cursor.next())));
+            pending++;
+        }
+
+        @Override
+        public synchronized List<Student> next() throws SQLException {
+            lastAccess = System.currentTimeMillis();
+            while (pending > 0) {
+                Fetched fetched = await(take());
+                pending--;
+                // Ask for the shard's next chunk before handing this one out
+                if (!fetched.cursor().isExhausted()) fetch(fetched.cursor());
+                if (!fetched.rows().isEmpty()) {
+                    exhausted = (pending == 0);
+                    return fetched.rows();
+                }
+            }
+            exhausted = true;
+            return List.of();
+        }
+
+        private Future<Fetched> take() throws SQLException {
+            try {
+                return fetches.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a shard", "57014", e);
+            }
+        }
+
+        @Override
+        public synchronized boolean isExhausted() {
+            return exhausted;
+        }
+
+        @Override
+        public long getLastAccess() {
+            return lastAccess;
+        }
+
+        // A fetch still running finishes first: the shard cursors close under their own lock
+        @Override
+        public synchronized void close() {
+            exhausted = true;
+            cursors.forEach(StudentCursor::close);
+        }
+    }
+
+    private final class Admin implements ShardsMXBean {
+        @Override
+        public List<String> getShards() {
+            return new ArrayList<>(layout.shards().keySet());
+        }
+
+        @Override
+        public String getUserShard() {
+            return userShard;
+        }
+
+        @Override
+        public int getVirtualNodes() {
+            return layout.ring().getVirtualNodes();
+        }
+
+        @Override
+        public boolean isRebalancing() {
+            return layout.rebalancing();
+        }
+
+        @Override
+        public long getMovedRows() {
+            return movedRows.sum();
+        }
+
+        @Override
+        public void addShard(String name, String location) {
+            checkOnlyNode("Adding a shard");
+            StudentStore shard = openShard(location);
+            inBackground("Adding shard " + name, () -> ShardedStudentStore.this.addShard(name, shard));
+        }
+
+        @Override
+        public void rebalance() {
+            checkOnlyNode("Rebalancing");
+            inBackground("Rebalancing", ShardedStudentStore.this::rebalance);
+        }
+
+        private void inBackground(String what, Task task) {
+            Thread.ofPlatform().name("shard-rebalance").daemon().start(() -> {
+                try {
+                    task.run();
+                } catch (SQLException | RuntimeException e) {
+                    System.err.println(what + " failed: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    // A second sharded store in the same JVM (benchmarks) stays off JMX
+    private void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName("simple-distro:type=Shards");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new Admin(), name);
+            }
+        } catch (JMException e) {
+            System.err.println("Could not register JMX shard admin: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package server;
+
+import rmi.Student;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * StoreSnapshot is a compact binary image of an embedded store taken at a log
+ * position (LSN): every frame before that LSN is reflected in it, so recovery
+ * loads the newest valid snapshot and replays the log from its LSN.
+ *
+ * Course names are stored once in a dictionary and referenced by index. The file
+ * ends with a CRC32 of its contents; it is written under a temporary name, synced
+ * and then renamed, so a crash never leaves a half-written snapshot in place.
+ */
+record StoreSnapshot(long lsn, List<Student> students, Map<String, MemoryStudentStore.User> users) {
+
+    private static final int MAGIC = 0x53444253; // "SDBS"
+    private static final int VERSION = 1;
+
+    /**
+     * Writes this snapshot to dir.
+     * @return the file written.
+     */
+    public Path write(Path dir) throws IOException {
+        Path target = dir.resolve(String.format("snapshot-%016x.snap", lsn));
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+
+        CRC32 crc = new CRC32();
+        try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new CheckedOutputStream(file, crc), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lsn);
+
+            Map<String, Integer> courses = new LinkedHashMap<>();
+            for (Student s : students) {
+                if (s.course() != null) courses.putIfAbsent(s.course(), courses.size());
+            }
+            out.writeInt(courses.size());
+            for (String course : courses.keySet()) {
+                out.writeUTF(course);
+            }
+
+            out.writeInt(students.size());
+            for (Student s : students) {
+                out.writeUTF(s.id());
+                writeString(out, s.name());
+                out.writeInt(s.course() == null ? -1 : courses.get(s.course()));
+            }
+
+            out.writeInt(users.size());
+            for (Map.Entry<String, MemoryStudentStore.User> entry : users.entrySet()) {
+                out.writeUTF(entry.getKey());
+                writeUser(out, entry.getValue());
+            }
+            out.flush();
+            // The checksum itself is not part of what it covers
+            new DataOutputStream(file).writeLong(crc.getValue());
+            file.getFD().sync();
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return target;
+    }
+
+    /**
+     * Reads the newest snapshot in dir that is intact, skipping damaged ones.
+     * @return the snapshot, or null if there is none.
+     */
+    public static StoreSnapshot readLatest(Path dir) throws IOException {
+        List<Path> files = list(dir);
+        for (int i = files.size() - 1; i >= 0; i--) {
+            try {
+                return read(files.get(i));
+            } catch (IOException e) {
+                System.err.println("Skipping unreadable snapshot " + files.get(i) + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Deletes the snapshots older than lsn, and leftovers of interrupted writes.
+     */
+    public static void deleteOlderThan(Path dir, long lsn) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) files::iterator) {
+                String name = p.getFileName().toString();
+                if (!name.startsWith("snapshot-")) continue;
+                if (name.endsWith(".tmp") || (name.endsWith(".snap") && lsnOf(name) < lsn)) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    static StoreSnapshot read(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            DataInputStream in = new DataInputStream(new CheckedInputStream(raw, crc));
+            if (in.readInt() != MAGIC) throw new IOException("not a snapshot file");
+            if (in.readInt() != VERSION) throw new IOException("unsupported snapshot version");
+            long lsn = in.readLong();
+
+            String[] courses = new String[in.readInt()];
+            for (int i = 0; i < courses.length; i++) {
+                courses[i] = in.readUTF();
+            }
+
+            int studentCount = in.readInt();
+            List<Student> students = new ArrayList<>(studentCount);
+            for (int i = 0; i < studentCount; i++) {
+                String id = in.readUTF();
+                String name = readString(in);
+                int course = in.readInt();
+                students.add(new Student(id, name, course < 0 ? null : courses[course]));
+            }
+
+            int userCount = in.readInt();
+            Map<String, MemoryStudentStore.User> users = new HashMap<>(userCount * 2);
+            for (int i = 0; i < userCount; i++) {
+                users.put(in.readUTF(), readUser(in));
+            }
+
+            long expected = crc.getValue();
+            if (new DataInputStream(raw).readLong() != expected) {
+                throw new IOException("checksum mismatch");
+            }
+            return new StoreSnapshot(lsn, students, users);
+        }
+    }
+
+    // Fields that may be null are prefixed with a presence flag
+
+    static void writeString(DataOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) out.writeUTF(s);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    static void writeUser(DataOutput out, MemoryStudentStore.User user) throws IOException {
+        out.writeUTF(user.passwordHash());
+        out.writeInt(user.attempts());
+        out.writeLong(user.lastLogin());
+        out.writeLong(user.lastFailedLogin());
+    }
+
+    static MemoryStudentStore.User readUser(DataInput in) throws IOException {
+        return new MemoryStudentStore.User(in.readUTF(), in.readInt(), in.readLong(), in.readLong());
+    }
+
+    private static List<Path> list(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> p.getFileName().toString().startsWith("snapshot-")
+                            && p.getFileName().toString().endsWith(".snap"))
+                    .sorted((a, b) -> Long.compareUnsigned(lsnOf(a.getFileName().toString()),
+                            lsnOf(b.getFileName().toString())))
+                    .toList();
+        }
+    }
+
+    private static long lsnOf(String name) {
+        return Long.parseUnsignedLong(name.substring("snapshot-".length(), name.length() - ".snap".length()), 16);
+    }
+}
@@ -0,0 +1,32 @@
+package server;
+
+import rmi.Student;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * StudentCursor reads all student records in chunks, so the whole table is never
+ * materialised on the server at once.
+ */
+public interface StudentCursor extends AutoCloseable {
+
+    /**
+     * Reads up to fetchSize further records.
+     * @return the next chunk, empty once the cursor is exhausted.
+     */
+    List<Student> next() throws SQLException;
+
+    boolean isExhausted();
+
+    /**
+     * Time of the last read, used to close cursors abandoned by their client.
+     */
+    long getLastAccess();
+
+    /**
+     * Releases whatever the cursor holds, e.g. its pooled connection.
+     */
+    @Override
+    void close();
+}
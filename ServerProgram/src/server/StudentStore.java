@@ -0,0 +1,208 @@
+package server;
+
+import rmi.Student;
+
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * StudentStore is the storage engine behind DBOperations: student records, user
+ * accounts and a bulk scan over all students. DBOperations keeps the business
+ * rules (password hashing, lockout, result messages); a store only keeps data.
+ *
+ * Failures are reported as SQLException with the SQLState PostgreSQL would use
+ * (08001 no connection, 23505 duplicate key), so callers handle every engine alike.
+ * The engine is chosen with the store.engine setting, see {@link #fromConfig()}.
+ */
+public interface StudentStore {
+
+    /**
+     * What login needs to know about a user.
+     * @param recentlyFailed true if the last failed login lies within the lockout window.
+     */
+    record LoginState(String passwordHash, int attempts, boolean recentlyFailed) {
+    }
+
+    /**
+     * The outcome of {@link #reserveLogin}.
+     * @param locked true if the account was locked and no attempt was counted.
+     * @param attempts the failed attempt count, including the one just counted.
+     * @param failedAt the last failed login time the reservation set.
+     * @param failedBefore the one it replaced, null if none; releaseLogin puts it back.
+     */
+    record LoginReservation(boolean locked, String passwordHash, int attempts, Instant failedAt, Instant failedBefore) {
+
+        static LoginReservation locked(int attempts) {
+            return new LoginReservation(true, null, attempts, null, null);
+        }
+    }
+
+    /**
+     * @return the number of rows inserted.
+     * @throws SQLException with SQLState 23505 if the id is taken.
+     */
+    int insertStudent(Student student) throws SQLException;
+
+    Optional<Student> findStudent(String studentId) throws SQLException;
+
+    /**
+     * The students with the given ids, by id, in one lookup; ids without a student are left out.
+     */
+    Map<String, Student> findStudents(Collection<String> studentIds) throws SQLException;
+
+    /**
+     * Replaces the name and course of the student with the same id.
+     * @return the number of rows updated, 0 if there is no such student.
+     */
+    int updateStudent(Student student) throws SQLException;
+
+    /**
+     * @return the number of rows deleted, 0 if there is no such student.
+     */
+    int deleteStudent(String studentId) throws SQLException;
+
+    /**
+     * Batch forms of the above. Each batch is all-or-nothing: if one row fails
+     * nothing is applied, and the failing row is identified by the update counts
+     * of the BatchUpdateException thrown.
+     * @return one update count per row, in input order.
+     */
+    int[] insertAll(List<Student> students) throws SQLException;
+
+    int[] updateAll(List<Student> students) throws SQLException;
+
+    int[] deleteAll(List<String> studentIds) throws SQLException;
+
+    /**
+     * Students taking the given course, at most limit of them, ordered by id.
+     * @param afterId id of the last student of the previous page, or null for the first page.
+     */
+    List<Student> findByCourse(String course, String afterId, int limit) throws SQLException;
+
+    /**
+     * Students whose name starts with prefix, ignoring case; paged like findByCourse.
+     */
+    List<Student> findByNamePrefix(String prefix, String afterId, int limit) throws SQLException;
+
+    /**
+     * Students whose name contains text, ignoring case; paged like findByCourse.
+     */
+    List<Student> findByNameContaining(String text, String afterId, int limit) throws SQLException;
+
+    /**
+     * Columns students can be listed in order of. Rows with the same value are ordered
+     * by id; rows without a value come last (first when descending). Values compare as
+     * String.compareTo does in every store; for a database this takes the "C" collation,
+     * which schema migration 9 gives the STUDENTS columns on PostgreSQL (it differs from
+     * compareTo only in placing characters beyond U+FFFF after U+E000 to U+FFFF).
+     */
+    enum SortColumn {
+        ID("student_id", Student::id),
+        NAME("student_name", Student::name),
+        COURSE("student_course", Student::course);
+
+        private final String sqlName;
+        private final Function<Student, String> value;
+
+        SortColumn(String sqlName, Function<Student, String> value) {
+            this.sqlName = sqlName;
+            this.value = value;
+        }
+
+        public String sqlName() {
+            return sqlName;
+        }
+
+        public String valueOf(Student s) {
+            return value.apply(s);
+        }
+
+        /**
+         * The order listStudents returns rows in, in every store: value, nulls last,
+         * then id, all reversed when descending.
+         */
+        public Comparator<Student> comparator(boolean descending) {
+            Comparator<Student> ascending = (this == ID)
+                    ? Comparator.comparing(Student::id)
+                    : Comparator.comparing(value, Comparator.nullsLast(Comparator.<String>naturalOrder()))
+                            .thenComparing(Student::id);
+            return descending ? ascending.reversed() : ascending;
+        }
+    }
+
+    /**
+     * All students in order of column, at most limit of them.
+     * @param after the last student of the previous page, whose column value and id
+     *              are where this page starts; null to start from the first student.
+     * @param offset rows to skip first. Skipped rows are still read, so paging on with
+     *               after is cheaper than a large offset.
+     */
+    List<Student> listStudents(SortColumn column, boolean descending, Student after, int offset, int limit)
+            throws SQLException;
+
+    long countStudents() throws SQLException;
+
+    /**
+     * Opens a cursor over all students, read in chunks of fetchSize.
+     */
+    StudentCursor openStudentCursor(int fetchSize) throws SQLException;
+
+    /**
+     * @throws SQLException with SQLState 23505 if the username is taken.
+     */
+    void createUser(String username, String passwordHash) throws SQLException;
+
+    /**
+     * Looks up the login state of a user.
+     * @param lockoutSeconds how far back a failed login counts as recent.
+     */
+    Optional<LoginState> findLogin(String username, long lockoutSeconds) throws SQLException;
+
+    /**
+     * Resets the failed attempt count and records the login time.
+     */
+    void recordLoginSuccess(String username) throws SQLException;
+
+    /**
+     * Counts a login attempt as failed before its password is checked, unless the account
+     * is locked: maxAttempts or more failures, the last within lockoutSeconds. The check
+     * and the count are one atomic step, so concurrent attempts cannot all get past the
+     * lockout; {@link #recordLoginSuccess} resets the count if the password matches.
+     * @param maxAttempts failures that lock the account, 0 for no lockout.
+     * @return empty if there is no such user.
+     */
+    Optional<LoginReservation> reserveLogin(String username, int maxAttempts, long lockoutSeconds) throws SQLException;
+
+    /**
+     * Takes back a reservation whose password was never checked, e.g. because the hasher
+     * was busy: the attempt count goes down again and, unless another attempt set it
+     * since, the last failed login time is restored.
+     */
+    void releaseLogin(String username, LoginReservation reservation) throws SQLException;
+
+    /**
+     * Creates the store selected by store.engine: "jdbc" (the default, PostgreSQL
+     * through the shared connection pool), "memory" (in-process, not persisted) or
+     * "embedded" (in-process, persisted to store.dir). If store.shards is set, students
+     * are split over the stores listed there instead, see {@link ShardedStudentStore}.
+     */
+    static StudentStore fromConfig() {
+        if (!ServerConfig.storeShards().isBlank()) {
+            return ShardedStudentStore.fromConfig();
+        }
+        String engine = ServerConfig.storeEngine();
+        return switch (engine.toLowerCase()) {
+            case "jdbc" -> new JdbcStudentStore(DBConnection.getDefault());
+            case "memory" -> new MemoryStudentStore();
+            case "embedded" -> EmbeddedStudentStore.open(Path.of(ServerConfig.storeDir()));
+            default -> throw new IllegalArgumentException("Unknown store.engine: " + engine);
+        };
+    }
+}
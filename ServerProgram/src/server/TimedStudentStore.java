@@ -0,0 +1,257 @@
+package server;
+
+import rmi.Student;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * TimedStudentStore reports the time spent in each call to the store it wraps
+ * to the remote call being served, see {@link RequestMetrics}.
+ */
+final class TimedStudentStore implements StudentStore {
+
+    private final StudentStore store;
+
+    TimedStudentStore(StudentStore store) {
+        this.store = store;
+    }
+
+    private static void done(long start) {
+        RequestMetrics.addTime(RequestMetrics.Phase.STORE, System.nanoTime() - start);
+    }
+
+    @Override
+    public int insertStudent(Student student) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return store.insertStudent(student);
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public Optional<Student> findStudent(String studentId) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return store.findStudent(studentId);
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public Map<String, Student> findStudents(Collection<String> studentIds) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return store.findStudents(studentIds);
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public int updateStudent(Student student) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return store.updateStudent(student);
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public int deleteStudent(String studentId) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return store.deleteStudent(studentId);
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public int[] insertAll(List<Student> students) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return store.insertAll(students);
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public int[] updateAll(List<Student> students) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return store.updateAll(students);
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public int[] deleteAll(List<String> studentIds) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return store.deleteAll(studentIds);
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public List<Student> findByCourse(String course, String afterId, int limit) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return store.findByCourse(course, afterId, limit);
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public List<Student> findByNamePrefix(String prefix, String afterId, int limit) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return store.findByNamePrefix(prefix, afterId, limit);
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public List<Student> findByNameContaining(String text, String afterId, int limit) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return store.findByNameContaining(text, afterId, limit);
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public List<Student> listStudents(SortColumn column, boolean descending, Student after, int offset, int limit)
+            throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return store.listStudents(column, descending, after, offset, limit);
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public long countStudents() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return store.countStudents();
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public StudentCursor openStudentCursor(int fetchSize) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return new TimedCursor(store.openStudentCursor(fetchSize));
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public void createUser(String username, String passwordHash) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            store.createUser(username, passwordHash);
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public Optional<LoginState> findLogin(String username, long lockoutSeconds) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return store.findLogin(username, lockoutSeconds);
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public void recordLoginSuccess(String username) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            store.recordLoginSuccess(username);
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public Optional<LoginReservation> reserveLogin(String username, int maxAttempts, long lockoutSeconds)
+            throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return store.reserveLogin(username, maxAttempts, lockoutSeconds);
+        } finally {
+            done(start);
+        }
+    }
+
+    @Override
+    public void releaseLogin(String username, LoginReservation reservation) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            store.releaseLogin(username, reservation);
+        } finally {
+            done(start);
+        }
+    }
+
+    // Cursor reads happen in later remote calls (fetchStudents), which they are timed against
+    private static final class TimedCursor implements StudentCursor {
+        private final StudentCursor cursor;
+
+        TimedCursor(StudentCursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public List<Student> next() throws SQLException {
+            long start = System.nanoTime();
+            try {
+                return cursor.next();
+            } finally {
+                done(start);
+            }
+        }
+
+        @Override
+        public boolean isExhausted() {
+            return cursor.isExhausted();
+        }
+
+        @Override
+        public long getLastAccess() {
+            return cursor.getLastAccess();
+        }
+
+        @Override
+        public void close() {
+            long start = System.nanoTime();
+            try {
+                cursor.close();
+            } finally {
+                done(start);
+            }
+        }
+    }
+}
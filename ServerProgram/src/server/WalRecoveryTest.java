@@ -0,0 +1,137 @@
+package server;
+
+import rmi.Student;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Test class for crash recovery of the embedded store. A store is abandoned without
+ * being closed, as in a crash, and the directory opened again must hold every write
+ * that returned; a write whose log frame could not be appended must not be kept.
+ */
+public class WalRecoveryTest {
+
+    public static void main(String[] args) throws Exception {
+        // Small segments so the log spans several files; no snapshots unless asked for
+        System.setProperty("store.wal.segmentBytes", "4096");
+        System.setProperty("store.wal.syncCommit", "true");
+        System.setProperty("store.snapshot.intervalMillis", "0");
+        System.setProperty("store.snapshot.onClose", "false");
+
+        Path dir = Files.createTempDirectory("wal-recovery");
+        try {
+            // Crash with every change only in the log
+            EmbeddedStudentStore crashed = new EmbeddedStudentStore(dir);
+            writeSome(crashed, 0);
+            EmbeddedStudentStore recovered = new EmbeddedStudentStore(dir);
+            check(sameStudents(crashed, recovered), "students replayed from the log");
+            check(recovered.findLogin("user0", 60).map(StudentStore.LoginState::attempts).equals(Optional.of(1)),
+                    "login attempts replayed from the log");
+
+            // Crash after a snapshot: the snapshot plus the log written after it
+            recovered.snapshot();
+            writeSome(recovered, 1000);
+            EmbeddedStudentStore again = new EmbeddedStudentStore(dir);
+            check(sameStudents(recovered, again), "students restored from snapshot and log");
+            check(again.findLogin("user1000", 60).isPresent(), "user created after the snapshot");
+            System.out.println("Recovered " + again.getStudentCount() + " students after two crashes.");
+
+            // A name the log cannot encode fails the write and leaves memory as it was
+            String tooLong = "x".repeat(70_000);
+            try {
+                again.insertStudent(new Student("long", tooLong, "Course"));
+                check(false, "insert of an unloggable name succeeded");
+            } catch (SQLException e) {
+                check("22001".equals(e.getSQLState()) && again.findStudent("long").isEmpty(),
+                        "insert that could not be encoded is undone");
+            }
+            try {
+                again.updateStudent(new Student("S1000", tooLong, null));
+                check(false, "update to an unloggable name succeeded");
+            } catch (SQLException e) {
+                check(again.findStudent("S1000").equals(recovered.findStudent("S1000")),
+                        "update that could not be encoded is undone");
+            }
+            try {
+                again.insertAll(List.of(new Student("fine", "Fine", "Course"), new Student("long", tooLong, null)));
+                check(false, "batch with an unloggable name succeeded");
+            } catch (SQLException e) {
+                check(again.findStudent("fine").isEmpty(), "batch that could not be encoded is undone");
+            }
+            again.insertStudent(new Student("after", "After", "Course"));
+            check(sameStudents(again, new EmbeddedStudentStore(dir)), "store still writable and recoverable");
+        } finally {
+            deleteTree(dir);
+        }
+
+        // Take the log's directory away, so the next segment cannot be created
+        Path lost = Files.createTempDirectory("wal-lost");
+        EmbeddedStudentStore store = new EmbeddedStudentStore(lost);
+        store.insertStudent(new Student("kept", "Kept", "Course"));
+        deleteTree(lost);
+        int id = 0;
+        try {
+            while (true) {
+                store.insertStudent(new Student("S" + id, "Name " + id, "Course"));
+                id++;
+            }
+        } catch (SQLException e) {
+            check("58030".equals(e.getSQLState()), "storage failure reported: " + e.getMessage());
+        }
+        check(store.findStudent("S" + id).isEmpty(), "insert that was not logged is undone");
+        check(store.findStudent("S0").isPresent(), "logged inserts are kept");
+        try {
+            store.updateStudent(new Student("kept", "Changed", "Course"));
+            check(false, "update succeeded without a log");
+        } catch (SQLException e) {
+            check(store.findStudent("kept").map(Student::name).equals(Optional.of("Kept")),
+                    "update that was not logged is undone");
+        }
+
+        System.out.println("WAL recovery test passed.");
+    }
+
+    // Inserts, updates, deletes, batches and login bookkeeping, ids starting at base
+    private static void writeSome(EmbeddedStudentStore store, int base) throws SQLException {
+        for (int i = base; i < base + 200; i++) {
+            store.insertStudent(new Student("S" + i, "Name " + i, "Course " + (i % 7)));
+        }
+        for (int i = base; i < base + 200; i += 3) {
+            store.updateStudent(new Student("S" + i, "Renamed " + i, null));
+        }
+        for (int i = base + 1; i < base + 200; i += 5) {
+            store.deleteStudent("S" + i);
+        }
+        store.insertAll(List.of(new Student("B" + base, "Batch", "Course"), new Student("C" + base, "Batch", null)));
+        store.deleteAll(List.of("B" + base));
+        store.createUser("user" + base, "hash");
+        store.reserveLogin("user" + base, 5, 60);
+    }
+
+    private static boolean sameStudents(StudentStore a, StudentStore b) throws SQLException {
+        int n = Integer.MAX_VALUE;
+        return a.countStudents() == b.countStudents()
+                && a.listStudents(StudentStore.SortColumn.ID, false, null, 0, n)
+                        .equals(b.listStudents(StudentStore.SortColumn.ID, false, null, 0, n));
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) throw new AssertionError("Failed: " + what);
+        System.out.println("OK: " + what);
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package server;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * WriteAheadLog is an append-only log of opaque frames, kept in memory-mapped
+ * segment files named after the log position (LSN) they start at.
+ *
+ * Each frame is its payload length, a CRC32 of the payload and the payload.
+ * Appends only copy into the mapped segment; durability comes from a group commit:
+ * one force() covers every frame appended since the previous one, so many writers
+ * share each fsync. With a sync interval of zero the first waiter forces at once;
+ * otherwise a background thread forces every interval.
+ *
+ * On open the log is replayed from a given LSN. A torn frame at the tail (a crash
+ * mid-append) ends the log; damage anywhere else is reported as an IOException.
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+    private static final int HEADER_BYTES = 8;
+
+    /**
+     * Receives the payload of each frame during replay.
+     */
+    @FunctionalInterface
+    public interface FrameHandler {
+        void apply(ByteBuffer payload) throws IOException;
+    }
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final long syncIntervalMillis;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Object durableMonitor = new Object();
+    private final CRC32 crc = new CRC32(); // guarded by appendLock
+
+    private MappedByteBuffer segment; // guarded by appendLock
+    private long segmentBase;         // guarded by appendLock
+    private volatile long writtenLsn;
+    private volatile long durableLsn;
+    private volatile IOException failure;
+    private volatile boolean closed;
+    private final Thread flusher;
+
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder appendedBytes = new LongAdder();
+    private final LongAdder syncs = new LongAdder();
+
+    /**
+     * Opens the log in dir, first replaying every frame at or after fromLsn.
+     * @param segmentBytes size of each segment file; larger frames get a segment of their own.
+     * @param syncIntervalMillis how often appended frames are forced to disk, 0 to force on demand.
+     */
+    public WriteAheadLog(Path dir, int segmentBytes, long syncIntervalMillis,
+                         long fromLsn, FrameHandler replay) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.syncIntervalMillis = syncIntervalMillis;
+        Files.createDirectories(dir);
+
+        long end = recover(fromLsn, replay);
+        writtenLsn = end;
+        durableLsn = end;
+
+        if (syncIntervalMillis > 0) {
+            flusher = new Thread(this::runFlusher, "wal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Appends one frame.
+     * @return the LSN just past the frame, to pass to {@link #awaitDurable(long)}.
+     */
+    public long append(byte[] payload) throws IOException {
+        int frameBytes = HEADER_BYTES + payload.length;
+        appendLock.lock();
+        try {
+            checkUsable();
+            if (segment.remaining() < frameBytes) {
+                roll(frameBytes);
+            }
+            crc.reset();
+            crc.update(payload);
+            segment.putInt(payload.length);
+            segment.putInt((int) crc.getValue());
+            segment.put(payload);
+            writtenLsn = segmentBase + segment.position();
+            appends.increment();
+            appendedBytes.add(frameBytes);
+            return writtenLsn;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until every frame up to lsn has been forced to disk.
+     */
+    public void awaitDurable(long lsn) throws IOException {
+        if (durableLsn >= lsn) return;
+        if (flusher == null) {
+            // Whoever gets the lock forces for everyone queued behind it
+            syncLock.lock();
+            try {
+                if (durableLsn < lsn) sync();
+            } finally {
+                syncLock.unlock();
+            }
+            return;
+        }
+        synchronized (durableMonitor) {
+            // Not checkUsable(): close() syncs what was appended, so waiters finish normally
+            while (durableLsn < lsn) {
+                if (failure != null) throw new IOException("Write-ahead log sync failed: " + failure.getMessage(), failure);
+                try {
+                    durableMonitor.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for the log to sync.");
+                }
+            }
+        }
+    }
+
+    /**
+     * LSN just past the last appended frame.
+     */
+    public long position() {
+        return writtenLsn;
+    }
+
+    /**
+     * Deletes segments that only hold frames before lsn, e.g. once a snapshot covers them.
+     * A segment that cannot be deleted yet (still mapped on Windows) is retried next time.
+     */
+    public void deleteSegmentsBefore(long lsn) {
+        List<Long> bases;
+        long current;
+        appendLock.lock();
+        try {
+            bases = segmentBases();
+            current = segmentBase;
+        } catch (IOException e) {
+            System.err.println("Could not list log segments: " + e.getMessage());
+            return;
+        } finally {
+            appendLock.unlock();
+        }
+        for (int i = 0; i + 1 < bases.size() && bases.get(i) < current; i++) {
+            if (bases.get(i + 1) <= lsn) {
+                try {
+                    Files.deleteIfExists(segmentPath(bases.get(i)));
+                } catch (IOException e) {
+                    System.err.println("Could not delete log segment: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * One-line summary of the log, useful for logging.
+     */
+    public String getStats() {
+        long n = appends.sum();
+        return String.format("WAL[written=%d, durable=%d, appends=%d, syncs=%d, framesPerSync=%.1f, avgFrame=%dB]",
+                writtenLsn, durableLsn, n, syncs.sum(),
+                syncs.sum() == 0 ? 0.0 : (double) n / syncs.sum(),
+                n == 0 ? 0 : appendedBytes.sum() / n);
+    }
+
+    /**
+     * Forces everything appended so far and stops the flusher.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (flusher != null) {
+            flusher.interrupt();
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        syncLock.lock();
+        try {
+            sync();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        while (!closed) {
+            try {
+                Thread.sleep(syncIntervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            syncLock.lock();
+            try {
+                sync();
+            } catch (IOException e) {
+                System.err.println("Write-ahead log sync failed: " + e.getMessage());
+            } finally {
+                syncLock.unlock();
+            }
+        }
+    }
+
+    // Caller holds syncLock
+    private void sync() throws IOException {
+        long target;
+        MappedByteBuffer current;
+        appendLock.lock();
+        try {
+            target = writtenLsn;
+            current = segment;
+        } finally {
+            appendLock.unlock();
+        }
+        if (target > durableLsn) {
+            try {
+                current.force();
+            } catch (UncheckedIOException e) {
+                fail(e.getCause());
+            }
+            syncs.increment();
+        }
+        markDurable(target);
+    }
+
+    private void markDurable(long lsn) {
+        synchronized (durableMonitor) {
+            if (lsn > durableLsn) durableLsn = lsn;
+            durableMonitor.notifyAll();
+        }
+    }
+
+    // Once the log could not be written, every later write fails rather than risk a gap
+    private void fail(IOException e) throws IOException {
+        if (failure == null) failure = e;
+        synchronized (durableMonitor) {
+            durableMonitor.notifyAll();
+        }
+        throw e;
+    }
+
+    /**
+     * Throws if the log can no longer be appended to, because it failed or was closed.
+     */
+    public void checkUsable() throws IOException {
+        if (failure != null) throw new IOException("Write-ahead log failed earlier: " + failure.getMessage(), failure);
+        if (closed) throw new IOException("Write-ahead log is closed.");
+    }
+
+    // Caller holds appendLock. The full segment is forced before the next one starts.
+    private void roll(int frameBytes) throws IOException {
+        long nextBase = segmentBase + segment.position();
+        try {
+            segment.force();
+        } catch (UncheckedIOException e) {
+            fail(e.getCause());
+        }
+        markDurable(nextBase);
+        map(nextBase, 0, Math.max(segmentBytes, frameBytes), false);
+    }
+
+    private void map(long base, int position, int minSize, boolean zeroTail) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(base),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = Math.max(minSize, channel.size());
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        segmentBase = base;
+        if (zeroTail) {
+            // Clear a torn frame so it cannot be mistaken for data once overwritten in part
+            for (int i = position; i < segment.capacity(); i++) {
+                segment.put(i, (byte) 0);
+            }
+        }
+        segment.position(position);
+    }
+
+    /**
+     * Replays frames from fromLsn and maps the segment to continue appending in.
+     * @return the LSN just past the last valid frame.
+     */
+    private long recover(long fromLsn, FrameHandler replay) throws IOException {
+        List<Long> bases = segmentBases();
+        long end = fromLsn;
+        for (int i = 0; i < bases.size(); i++) {
+            long base = bases.get(i);
+            boolean last = (i == bases.size() - 1);
+            if (!last && bases.get(i + 1) <= fromLsn) continue;
+
+            ByteBuffer data;
+            try (FileChannel channel = FileChannel.open(segmentPath(base), StandardOpenOption.READ)) {
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            int pos = (int) Math.max(0, fromLsn - base);
+            boolean torn = false;
+            while (pos + HEADER_BYTES <= data.capacity()) {
+                int length = data.getInt(pos);
+                if (length == 0) break;
+                if (length < 0 || pos + HEADER_BYTES + length > data.capacity()
+                        || !crcMatches(data, pos, length)) {
+                    torn = true;
+                    break;
+                }
+                replay.apply(data.slice(pos + HEADER_BYTES, length));
+                pos += HEADER_BYTES + length;
+            }
+            if (torn && !last) {
+                throw new IOException("Write-ahead log segment " + segmentPath(base)
+                        + " is damaged at offset " + pos + "; later segments cannot be replayed.");
+            }
+            if (torn) {
+                System.err.println("Discarding torn write-ahead log frame at LSN " + (base + pos));
+            }
+            end = Math.max(end, base + pos);
+            if (last && end == base + pos) {
+                map(base, pos, segmentBytes, torn);
+                return end;
+            }
+        }
+        map(end, 0, segmentBytes, false);
+        return end;
+    }
+
+    private static boolean crcMatches(ByteBuffer data, int pos, int length) {
+        CRC32 check = new CRC32();
+        check.update(data.slice(pos + HEADER_BYTES, length));
+        return (int) check.getValue() == data.getInt(pos + 4);
+    }
+
+    private List<Long> segmentBases() throws IOException {
+        List<Long> bases = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(p -> p.getFileName().toString())
+                    .filter(name -> name.startsWith("wal-") && name.endsWith(".log"))
+                    .forEach(name -> bases.add(Long.parseUnsignedLong(name.substring(4, name.length() - 4), 16)));
+        }
+        bases.sort(null);
+        return bases;
+    }
+
+    private Path segmentPath(long base) {
+        return dir.resolve(String.format("wal-%016x.log", base));
+    }
+}